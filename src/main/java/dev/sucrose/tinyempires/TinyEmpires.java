@@ -1,5 +1,6 @@
 package dev.sucrose.tinyempires;
 
+import com.mongodb.MongoException;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoDatabase;
@@ -8,7 +9,10 @@ import dev.sucrose.tinyempires.commands.Nick;
 import dev.sucrose.tinyempires.commands.ProximityChat;
 import dev.sucrose.tinyempires.commands.debug.CloseBot;
 import dev.sucrose.tinyempires.commands.debug.DumpCache;
+import dev.sucrose.tinyempires.commands.debug.RedrawMap;
 import dev.sucrose.tinyempires.commands.debug.RefreshCaches;
+import dev.sucrose.tinyempires.commands.debug.ReloadTerritories;
+import dev.sucrose.tinyempires.commands.debug.Stats;
 import dev.sucrose.tinyempires.commands.arena.Atlantis;
 import dev.sucrose.tinyempires.commands.arena.Yggdrasil;
 import dev.sucrose.tinyempires.commands.economy.Convert;
@@ -24,8 +28,12 @@ import dev.sucrose.tinyempires.listeners.*;
 import dev.sucrose.tinyempires.listeners.WorldBorder;
 import dev.sucrose.tinyempires.models.TEPlayer;
 import dev.sucrose.tinyempires.models.Warp;
+import dev.sucrose.tinyempires.utils.BoundUtils;
+import dev.sucrose.tinyempires.utils.CacheLoader;
 import dev.sucrose.tinyempires.utils.DrawEmpire;
 import dev.sucrose.tinyempires.utils.ErrorUtils;
+import dev.sucrose.tinyempires.utils.SpecialTerritories;
+import dev.sucrose.tinyempires.utils.WriteBehindQueue;
 import org.bukkit.*;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.entity.Player;
@@ -62,9 +70,18 @@ public final class TinyEmpires extends JavaPlugin {
     @Override
     public void onEnable() {
         instance = this;
-        System.out.println("" + ChatColor.GREEN + ChatColor.BOLD + "+=== Initialized Tiny Empires ===+");
-        DrawEmpire.draw();
-        DrawEmpire.drawBorders(WORLD_BORDER_LEFT_X, WORLD_BORDER_RIGHT_X, WORLD_BORDER_BOTTOM_Z, WORLD_BORDER_TOP_Z);
+        saveDefaultConfig();
+        SpecialTerritories.load(getConfig());
+        WriteBehindQueue.start();
+        Bukkit.getScheduler().runTaskAsynchronously(this, () -> {
+            try {
+                TEPlayer.createIndexes();
+            } catch (MongoException err) {
+                System.out.println(ChatColor.DARK_RED + "Failed to create player indexes, players will be loaded " +
+                    "without them");
+                err.printStackTrace();
+            }
+        });
         // assign to variable so same instance is assigned as event listener and command executor
         final Atlantis atlantis = new Atlantis();
         final Yggdrasil yggdrasil = new Yggdrasil();
@@ -76,10 +93,13 @@ public final class TinyEmpires extends JavaPlugin {
             new ChestShopListener(),
             new EndPortal(),
             new PlayerChat(),
+            new PlayerLogin(), // blocks logins until caches are loaded
             new PlayerJoin(),
-            new PlayerMove(),
+            new MovementDispatcher(), // the only move listener, consumers are registered below
+            new ChunkOccupancy(),
             new TerritoryProtection(),
             new PreventForeignTNTAndPistons(),
+            new ExplosionProtection(),
             new PlayerLeave(),
             new TempleBurnListener(),
             new CreateEmpireLaw(),
@@ -92,6 +112,21 @@ public final class TinyEmpires extends JavaPlugin {
             new DiscordBot() // to broadcast death, join and other event messages
         );
 
+        // movement consumers, called in stage order then the order registered here
+        MovementDispatcher.onPositionChanged("atlantis freeze", atlantis::onPositionChanged);
+        MovementDispatcher.onPositionChanged("home countdown", Home::onPositionChanged);
+        MovementDispatcher.onBlockChanged("end portal pit", EndPortal::onBlockChanged);
+        MovementDispatcher.onBorderCrossed("world border", WorldBorder::onBorderCrossed);
+        MovementDispatcher.onPlaneEntered("atlantis entrance", Atlantis.getEntrancePlane(),
+            atlantis::onEntrancePlaneEntered);
+        MovementDispatcher.onPlaneEntered("yggdrasil entrance", Yggdrasil.getEntrancePlane(),
+            yggdrasil::onEntrancePlaneEntered);
+        MovementDispatcher.onRegionEntered("pit message", BoundUtils.PIT, EndPortal::onPitEntered);
+        // occupancy first so contests started by the territory consumer count the player in the chunk
+        MovementDispatcher.onChunkChanged("war occupancy", ChunkOccupancy::onChunkChanged);
+        MovementDispatcher.onChunkChanged("territory", PlayerMove::onChunkChanged);
+        ChunkOccupancy.seedOnlinePlayers();
+
         // load worlds
         getServer().createWorld(new WorldCreator("chess"));
 
@@ -104,6 +139,9 @@ public final class TinyEmpires extends JavaPlugin {
         registerCommand("take", new Take());
         registerCommand("refreshcaches", new RefreshCaches());
         registerCommand("dumpcaches", new DumpCache());
+        registerCommand("redrawmap", new RedrawMap());
+        registerCommand("stats", new Stats());
+        registerCommand("reloadterritories", new ReloadTerritories());
         registerCommand("dimension", new Dimension());
         registerCommand("flyspeed", new Flyspeed());
         registerCommand("invisible", new Invisible());
@@ -118,6 +156,33 @@ public final class TinyEmpires extends JavaPlugin {
 //        registerCommand("tpreject", new RejectTeleportRequest());
         registerCommand("nick", new Nick());
 
+        // create recipe
+        addHoneyStickyPistonRecipe();
+        addEnchantedGoldenAppleRecipe();
+
+        // caches load in the background, everything depending on them runs once they're ready
+        CacheLoader.load(TinyEmpires::onCachesLoaded);
+    }
+
+    /**
+     * Reloads every model cache, finishing startup first if caches failed to load when the plugin was enabled
+     * @param onReloaded Run on the main thread once caches are built
+     * @throws IllegalStateException If caches are already being loaded
+     */
+    public static void reloadCaches(Runnable onReloaded) {
+        final boolean startingUp = !CacheLoader.isReady();
+        CacheLoader.load(() -> {
+            if (startingUp)
+                onCachesLoaded();
+            onReloaded.run();
+        });
+    }
+
+    private static void onCachesLoaded() {
+        System.out.println("" + ChatColor.GREEN + ChatColor.BOLD + "+=== Initialized Tiny Empires ===+");
+        DrawEmpire.draw(null);
+        DrawEmpire.drawBorders(WORLD_BORDER_LEFT_X, WORLD_BORDER_RIGHT_X, WORLD_BORDER_BOTTOM_Z, WORLD_BORDER_TOP_Z);
+
         try {
             DiscordBot.init();
         } catch (Exception e) {
@@ -125,7 +190,7 @@ public final class TinyEmpires extends JavaPlugin {
             e.printStackTrace();
         }
 
-        // update player scoreboards
+        // update player scoreboards for players online across a reload
         for (final Player player : Bukkit.getOnlinePlayers()) {
             final TEPlayer tePlayer = TEPlayer.getTEPlayer(player.getUniqueId());
             if (tePlayer == null)
@@ -133,21 +198,22 @@ public final class TinyEmpires extends JavaPlugin {
             tePlayer.updatePlayerScoreboard();
         }
 
-        // create recipe
-        addHoneyStickyPistonRecipe();
-        addEnchantedGoldenAppleRecipe();
-
         DiscordBot.sendMessageInBridgeChat("**The server has started up!**");
     }
 
     @Override
     public void onDisable() {
-        DiscordBot.sendMessageInBridgeChat("**The server has shut down!**");
         System.out.println("" + ChatColor.RED + ChatColor.BOLD + "+=== Disabled Tiny Empires ===+");
-        DiscordBot.close();
-        System.out.println(ChatColor.GREEN + "Shut down Pixel Empires Discord Bot");
+        // bot is only started once caches have loaded
+        if (CacheLoader.isReady()) {
+            DiscordBot.sendMessageInBridgeChat("**The server has shut down!**");
+            DiscordBot.close();
+            System.out.println(ChatColor.GREEN + "Shut down Pixel Empires Discord Bot");
+        }
         Yggdrasil.removeYggdrasilScoreboardTeams();
         System.out.println(ChatColor.GREEN + "Unregistered Yggdrasil scoreboard teams");
+        WriteBehindQueue.drain();
+        System.out.println(ChatColor.GREEN + "Flushed queued database writes");
     }
 
     public static Plugin getDynmapPlugin() {
@@ -488,95 +488,97 @@ public class Atlantis implements CommandExecutor, Listener {
             event.setCancelled(true);
     }
 
-    @EventHandler
-    public void onPlayerMove(PlayerMoveEvent event) {
-        final Location to = event.getTo();
-        final Location from = event.getFrom();
-        // #getFrom is not null if #getTo isn't
-        if (to == null)
-            throw new NullPointerException("Could not get player location");
-
-        final ArenaPlayerEntry ArenaPlayerEntry = playerArenaEntries.get(event.getPlayer().getUniqueId());
-        if (ArenaPlayerEntry != null) {
-            if (!arena.isActive()
-                    && (to.getX() != from.getX()
-                    || to.getY() != from.getY()
-                    || to.getZ() != from.getZ()))
-                event.setCancelled(true);
-            return;
-        }
-
-        if (arena.getEntrancePlane().isInPlane(to.getBlockX(), to.getBlockY(), to.getBlockZ())) {
-            final int playerLimit = arena.getPlayerLimit();
-            final Set<UUID> playersInArena = arena.getPlayers();
-            final Player player = event.getPlayer();
-            if (playersInArena.size() == playerLimit) {
-                player.sendMessage(ChatColor.RED + String.format(
-                    "The %s arena is full! (%d/%d)",
-                    "" + ChatColor.AQUA + ChatColor.BOLD + "atlantis" + ChatColor.RED,
-                    playerLimit,
-                    playerLimit
-                ));
-                player.teleport(arena.getStartLocation());
-                return;
-            }
-
-            if (arena.isActive()
-                    || arena.isCountingDown()) {
-                player.sendMessage(ChatColor.RED + "You cannot join while the match is currently ongoing!");
-                player.teleport(arena.getStartLocation());
-                return;
-            }
+    /**
+     * Keeps players in place until the match starts, called by
+     * {@link dev.sucrose.tinyempires.listeners.MovementDispatcher}
+     */
+    public void onPositionChanged(PlayerMoveEvent event) {
+        if (!arena.isActive()
+                && playerArenaEntries.containsKey(event.getPlayer().getUniqueId()))
+            event.setCancelled(true);
+    }
 
-            // cost
-            final UUID uuid = player.getUniqueId();
-            final TEPlayer tePlayer = TEPlayer.getTEPlayer(uuid);
-            if (tePlayer == null)
-                throw new NullPointerException(ErrorUtils.YOU_DO_NOT_EXIST_IN_THE_DATABASE);
+    public static BoundsPlane getEntrancePlane() {
+        return arena.getEntrancePlane();
+    }
 
-            // teleport
-            player.teleport(arena.getRandomSpawnLocationForPlayer(uuid));
+    /**
+     * Joins the arena, called by {@link dev.sucrose.tinyempires.listeners.MovementDispatcher} when a player steps
+     * into the entrance
+     */
+    public void onEntrancePlaneEntered(PlayerMoveEvent event) {
+        if (playerArenaEntries.containsKey(event.getPlayer().getUniqueId()))
+            return;
 
-            // health
-            player.setHealth(20);
-            player.setFoodLevel(20);
+        final int playerLimit = arena.getPlayerLimit();
+        final Set<UUID> playersInArena = arena.getPlayers();
+        final Player player = event.getPlayer();
+        if (playersInArena.size() == playerLimit) {
+            player.sendMessage(ChatColor.RED + String.format(
+                "The %s arena is full! (%d/%d)",
+                "" + ChatColor.AQUA + ChatColor.BOLD + "atlantis" + ChatColor.RED,
+                playerLimit,
+                playerLimit
+            ));
+            player.teleport(arena.getStartLocation());
+            return;
+        }
 
-            // adventure mode
-            player.setGameMode(GameMode.ADVENTURE);
+        if (arena.isActive()
+                || arena.isCountingDown()) {
+            player.sendMessage(ChatColor.RED + "You cannot join while the match is currently ongoing!");
+            player.teleport(arena.getStartLocation());
+            return;
+        }
 
-            // put original player data before teleporting, inventory, exp, location
-            playerArenaEntries.put(
-                uuid,
-                new ArenaPlayerEntry(
-                    player.getInventory().getContents(),
-                    player.getTotalExperience()
-                )
-            );
+        // cost
+        final UUID uuid = player.getUniqueId();
+        final TEPlayer tePlayer = TEPlayer.getTEPlayer(uuid);
+        if (tePlayer == null)
+            throw new NullPointerException(ErrorUtils.YOU_DO_NOT_EXIST_IN_THE_DATABASE);
 
-            // delete trident if they threw one before game begun
-            deleteLastTridentFromPlayerIfExists(uuid);
+        // teleport
+        player.teleport(arena.getRandomSpawnLocationForPlayer(uuid));
 
-            // set arena inventory and exp
-            setPlayerArenaInventory(player);
-            player.setLevel(0);
-            player.setExp(0.99F);
+        // health
+        player.setHealth(20);
+        player.setFoodLevel(20);
+
+        // adventure mode
+        player.setGameMode(GameMode.ADVENTURE);
+
+        // put original player data before teleporting, inventory, exp, location
+        playerArenaEntries.put(
+            uuid,
+            new ArenaPlayerEntry(
+                player.getInventory().getContents(),
+                player.getTotalExperience()
+            )
+        );
 
-            // add player
-            arena.addPlayer(player.getUniqueId());
+        // delete trident if they threw one before game begun
+        deleteLastTridentFromPlayerIfExists(uuid);
 
-            // broadcast join message in arena
-            broadcastToPlayerUUIDList(playersInArena, ChatColor.GREEN + String.format(
-                "%s has joined the %s arena! (%d/%d)",
-                ChatColor.BOLD + player.getName() + ChatColor.GREEN,
-                "" + ChatColor.AQUA + ChatColor.BOLD + "atlantis" + ChatColor.GREEN,
-                playersInArena.size(),
-                arena.getPlayerLimit()
-            ));
+        // set arena inventory and exp
+        setPlayerArenaInventory(player);
+        player.setLevel(0);
+        player.setExp(0.99F);
+
+        // add player
+        arena.addPlayer(player.getUniqueId());
+
+        // broadcast join message in arena
+        broadcastToPlayerUUIDList(playersInArena, ChatColor.GREEN + String.format(
+            "%s has joined the %s arena! (%d/%d)",
+            ChatColor.BOLD + player.getName() + ChatColor.GREEN,
+            "" + ChatColor.AQUA + ChatColor.BOLD + "atlantis" + ChatColor.GREEN,
+            playersInArena.size(),
+            arena.getPlayerLimit()
+        ));
 
-            // send player list of arena participants
-            player.sendMessage("" + ChatColor.GREEN + ChatColor.BOLD + "Players in arena:");
-            sendArenaPlayerListMessage(player);
-        }
+        // send player list of arena participants
+        player.sendMessage("" + ChatColor.GREEN + ChatColor.BOLD + "Players in arena:");
+        sendArenaPlayerListMessage(player);
     }
 
-}
\ No newline at end of file
+}
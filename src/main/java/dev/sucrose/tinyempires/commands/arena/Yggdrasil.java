@@ -618,62 +618,57 @@ public class Yggdrasil implements Listener, CommandExecutor {
             event.setCancelled(true);
     }
 
-    @EventHandler
-    public void onPlayerMove(PlayerMoveEvent event) {
-        final Location location = event.getTo();
-        final Location from = event.getFrom();
-        if (location == null)
-            throw new NullPointerException("Location found as null when fetching from PlayerMoveEvent");
-        // return if player didn't change location (e.g. looks around)
-        if (from.getBlockX() == location.getBlockX()
-                && from.getBlockY() == location.getBlockY()
-                && from.getBlockZ() == location.getBlockZ())
-            return;
+    public static BoundsPlane getEntrancePlane() {
+        return entrancePlane;
+    }
 
+    /**
+     * Joins a random team, called by {@link dev.sucrose.tinyempires.listeners.MovementDispatcher} when a player
+     * steps into the entrance
+     */
+    public void onEntrancePlaneEntered(PlayerMoveEvent event) {
         final Player player = event.getPlayer();
-        if (entrancePlane.isInPlane(location.getBlockX(), location.getBlockY(), location.getBlockZ())) {
-            if (teamOptionsLeft.size() == 0)
-                teamOptionsLeft.addAll(teams.keySet());
-            final int index = random.nextInt(teamOptionsLeft.size());
-            final YggdrasilTeam team = teamOptionsLeft.get(index);
-            teamOptionsLeft.remove(index);
-            final UUID uuid = player.getUniqueId();
-            if (!teams.containsKey(team))
-                teams.put(team, new ArrayList<>());
-            teams.get(team).add(uuid);
-            player.teleport(spawnLocations.get(team));
-            arenaPlayerEntryMap.put(
-                uuid,
-                new YggdrasilPlayerEntry(
-                    team,
-                    player.getInventory().getContents(),
-                    player.getTotalExperience()
-                )
-            );
-
-            setPlayerInventory(team, player);
-
-            // add player to scoreboard team for colored glowing effect
-            scoreboardTeams.get(team).addEntry(player.getName());
-            player.setScoreboard(yggdrasilScoreboard);
-
-            // add ChatColor.RESET so player name color doesn't change
-            player.setDisplayName(ChatColor.RESET + player.getName());
-
-            // health and hunger
-            player.setHealth(20);
-            player.setFoodLevel(20);
-            player.setSaturation(20);
+        if (teamOptionsLeft.size() == 0)
+            teamOptionsLeft.addAll(teams.keySet());
+        final int index = random.nextInt(teamOptionsLeft.size());
+        final YggdrasilTeam team = teamOptionsLeft.get(index);
+        teamOptionsLeft.remove(index);
+        final UUID uuid = player.getUniqueId();
+        if (!teams.containsKey(team))
+            teams.put(team, new ArrayList<>());
+        teams.get(team).add(uuid);
+        player.teleport(spawnLocations.get(team));
+        arenaPlayerEntryMap.put(
+            uuid,
+            new YggdrasilPlayerEntry(
+                team,
+                player.getInventory().getContents(),
+                player.getTotalExperience()
+            )
+        );
+
+        setPlayerInventory(team, player);
+
+        // add player to scoreboard team for colored glowing effect
+        scoreboardTeams.get(team).addEntry(player.getName());
+        player.setScoreboard(yggdrasilScoreboard);
+
+        // add ChatColor.RESET so player name color doesn't change
+        player.setDisplayName(ChatColor.RESET + player.getName());
+
+        // health and hunger
+        player.setHealth(20);
+        player.setFoodLevel(20);
+        player.setSaturation(20);
 
-            // glowing
-            player.setGlowing(true);
+        // glowing
+        player.setGlowing(true);
 
-            broadcast(ChatColor.GREEN + String.format(
-                "%s joined the arena in %s team!",
-                ChatColor.BOLD + player.getName() + ChatColor.GREEN,
-                "" + yggdrasilTeamToChatColor(team) + ChatColor.BOLD + team.name() + ChatColor.GREEN
-            ));
-        }
+        broadcast(ChatColor.GREEN + String.format(
+            "%s joined the arena in %s team!",
+            ChatColor.BOLD + player.getName() + ChatColor.GREEN,
+            "" + yggdrasilTeamToChatColor(team) + ChatColor.BOLD + team.name() + ChatColor.GREEN
+        ));
     }
 
     public static boolean isPlayerInGame(UUID uuid) {
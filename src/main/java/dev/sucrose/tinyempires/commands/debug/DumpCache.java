@@ -1,20 +1,27 @@
 package dev.sucrose.tinyempires.commands.debug;
 
+import dev.sucrose.tinyempires.TinyEmpires;
 import dev.sucrose.tinyempires.models.Empire;
 import dev.sucrose.tinyempires.models.TEChest;
 import dev.sucrose.tinyempires.models.TEChunk;
 import dev.sucrose.tinyempires.models.TEPlayer;
+import dev.sucrose.tinyempires.utils.CacheDump;
 import dev.sucrose.tinyempires.utils.ErrorUtils;
+import dev.sucrose.tinyempires.utils.WriteBehindQueue;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
-import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class DumpCache implements CommandExecutor {
 
+    private static boolean isDumping = false;
+
     @Override
     public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String[] args) {
         // dumps plugin cache into Mongo
@@ -23,18 +30,91 @@ public class DumpCache implements CommandExecutor {
             return false;
         }
 
+        if (isDumping) {
+            sender.sendMessage(ChatColor.RED + "A cache dump is already running");
+            return false;
+        }
+
+        // /dumpcaches [full]
+        final boolean full = args.length > 0
+            && args[0].equalsIgnoreCase("full");
+
+        // documents are encoded on the main thread so the models aren't read while being mutated
+        final List<CacheDump> dumps = new ArrayList<>();
         try {
-            Empire.writeCache();
-            TEPlayer.writeCache();
-            TEChest.writeCache();
-            TEChunk.writeCache();
+            dumps.add(Empire.prepareCacheDump(full));
+            dumps.add(TEPlayer.prepareCacheDump(full));
+            dumps.add(TEChest.prepareCacheDump(full));
+            dumps.add(TEChunk.prepareCacheDump(full));
         } catch (Exception err) {
             err.printStackTrace();
-            sender.sendMessage(ChatColor.RED + "Failed to encode and write caches, check the server logs");
+            sender.sendMessage(ChatColor.RED + "Failed to encode caches, check the server logs");
+            return false;
         }
 
-        sender.sendMessage(ChatColor.GREEN + "Wrote caches to disk");
+        int total = 0;
+        for (final CacheDump dump : dumps)
+            total += dump.size();
+        if (total == 0) {
+            sender.sendMessage(ChatColor.GREEN + "No cached documents have changed since the last dump");
+            return true;
+        }
+
+        // queued in this tick, so every write queued before is applied before the dump and every write after it after
+        for (final CacheDump dump : dumps)
+            dump.queue();
+        final long ticket = WriteBehindQueue.getWriteTicket();
+        sender.sendMessage(ChatColor.GREEN + String.format(
+            "Dumping %d %sdocument%s to Mongo...",
+            total,
+            full ? "" : "changed ",
+            total == 1 ? "" : "s"
+        ));
+        isDumping = true;
+        Bukkit.getScheduler().runTaskAsynchronously(TinyEmpires.getInstance(), () -> awaitDumps(sender, dumps, ticket));
         return true;
     }
 
+    private static void awaitDumps(CommandSender sender, List<CacheDump> dumps, long ticket) {
+        final long start = System.currentTimeMillis();
+        // failed writes are retried until they're written, report progress while waiting
+        while (!WriteBehindQueue.awaitWritten(ticket))
+            message(sender, ChatColor.YELLOW + String.format(
+                "Still writing, %d queued writes pending",
+                WriteBehindQueue.getPendingWriteCount()
+            ));
+
+        final long duration = System.currentTimeMillis() - start;
+        Bukkit.getScheduler().runTask(TinyEmpires.getInstance(), () -> {
+            isDumping = false;
+            final List<String> failed = new ArrayList<>();
+            for (final CacheDump dump : dumps) {
+                if (dump.size() == 0)
+                    continue;
+                if (dump.hasFailed()) {
+                    failed.add(dump.getName());
+                    continue;
+                }
+                sender.sendMessage(ChatColor.GREEN + String.format(
+                    "%s: %d upserted, %d deleted",
+                    dump.getName(),
+                    dump.getUpserts(),
+                    dump.getDeletes()
+                ));
+            }
+            if (failed.isEmpty()) {
+                sender.sendMessage(ChatColor.GREEN + String.format("Wrote caches to disk in %dms", duration));
+                return;
+            }
+            sender.sendMessage(ChatColor.RED + String.format(
+                "Failed to write %s, check the server logs (changes will be retried on the next dump)",
+                String.join(", ", failed)
+            ));
+        });
+    }
+
+    private static void message(CommandSender sender, String message) {
+        Bukkit.getScheduler().runTask(TinyEmpires.getInstance(), () -> sender.sendMessage(message));
+    }
+
 }
@@ -0,0 +1,25 @@
+package dev.sucrose.tinyempires.commands.debug;
+
+import dev.sucrose.tinyempires.utils.DrawEmpire;
+import dev.sucrose.tinyempires.utils.ErrorUtils;
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.jetbrains.annotations.NotNull;
+
+public class RedrawMap implements CommandExecutor {
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String[] args) {
+        if (!sender.isOp()) {
+            sender.sendMessage(ErrorUtils.INSUFFICIENT_PERMS);
+            return false;
+        }
+
+        sender.sendMessage(ChatColor.GREEN + "Erased empire markers, redrawing map...");
+        DrawEmpire.redraw(sender);
+        return true;
+    }
+
+}
@@ -1,8 +1,6 @@
 package dev.sucrose.tinyempires.commands.debug;
 
-import dev.sucrose.tinyempires.models.Empire;
-import dev.sucrose.tinyempires.models.TEChest;
-import dev.sucrose.tinyempires.models.TEChunk;
+import dev.sucrose.tinyempires.TinyEmpires;
 import dev.sucrose.tinyempires.models.TEPlayer;
 import dev.sucrose.tinyempires.utils.ErrorUtils;
 import org.bukkit.Bukkit;
@@ -13,8 +11,6 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.UUID;
-
 public class RefreshCaches implements CommandExecutor {
 
     @Override
@@ -24,19 +20,23 @@ public class RefreshCaches implements CommandExecutor {
             return false;
         }
 
-        Empire.fillCache();
-        TEPlayer.fillCache();
-        TEChest.fillCache();
-        TEChunk.fillCache();
-
-        for (final Player player : Bukkit.getOnlinePlayers()) {
-            final TEPlayer tePlayer = TEPlayer.getTEPlayer(player.getUniqueId());
-            if (tePlayer == null)
-                return false;
-            tePlayer.updatePlayerScoreboard();
+        try {
+            TinyEmpires.reloadCaches(() -> {
+                for (final Player player : Bukkit.getOnlinePlayers()) {
+                    final TEPlayer tePlayer = TEPlayer.getTEPlayer(player.getUniqueId());
+                    if (tePlayer != null)
+                        tePlayer.updatePlayerScoreboard();
+                }
+                sender.sendMessage(ChatColor.GREEN + "Reloaded empire, player, chest-to-player mapping, chunk and " +
+                    "censor caches");
+            });
+        } catch (IllegalStateException err) {
+            sender.sendMessage(ChatColor.RED + "Caches are already being loaded");
+            return false;
         }
 
-        sender.sendMessage(ChatColor.GREEN + "Cleared empire, player, chest-to-player mapping and chunk caches");
+        sender.sendMessage(ChatColor.GREEN + "Reloading caches, changes made until they're rebuilt will be " +
+            "discarded...");
         return true;
     }
 
@@ -0,0 +1,33 @@
+package dev.sucrose.tinyempires.commands.debug;
+
+import dev.sucrose.tinyempires.TinyEmpires;
+import dev.sucrose.tinyempires.utils.ErrorUtils;
+import dev.sucrose.tinyempires.utils.SpecialTerritories;
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+
+public class ReloadTerritories implements CommandExecutor {
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String[] args) {
+        if (!sender.isOp()) {
+            sender.sendMessage(ErrorUtils.INSUFFICIENT_PERMS);
+            return false;
+        }
+
+        final Plugin plugin = TinyEmpires.getInstance();
+        plugin.reloadConfig();
+        final int regions = SpecialTerritories.load(plugin.getConfig());
+        sender.sendMessage(ChatColor.GREEN + String.format(
+            "Reloaded %d special territor%s from config",
+            regions,
+            regions == 1 ? "y" : "ies"
+        ));
+        return true;
+    }
+
+}
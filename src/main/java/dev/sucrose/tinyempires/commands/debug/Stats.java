@@ -0,0 +1,38 @@
+package dev.sucrose.tinyempires.commands.debug;
+
+import dev.sucrose.tinyempires.discord.BridgeQueue;
+import dev.sucrose.tinyempires.listeners.MovementDispatcher;
+import dev.sucrose.tinyempires.models.TEPlayer;
+import dev.sucrose.tinyempires.models.TerritoryBatch;
+import dev.sucrose.tinyempires.utils.ErrorUtils;
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.jetbrains.annotations.NotNull;
+
+public class Stats implements CommandExecutor {
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String[] args) {
+        if (!sender.isOp()) {
+            sender.sendMessage(ErrorUtils.INSUFFICIENT_PERMS);
+            return false;
+        }
+
+        sender.sendMessage("" + ChatColor.GOLD + ChatColor.BOLD + "Discord bridge");
+        for (final String line : BridgeQueue.getStats())
+            sender.sendMessage(ChatColor.YELLOW + line);
+        sender.sendMessage("" + ChatColor.GOLD + ChatColor.BOLD + "Territory batches");
+        for (final String line : TerritoryBatch.getStats())
+            sender.sendMessage(ChatColor.YELLOW + line);
+        sender.sendMessage("" + ChatColor.GOLD + ChatColor.BOLD + "Movement");
+        for (final String line : MovementDispatcher.getStats())
+            sender.sendMessage(ChatColor.YELLOW + line);
+        sender.sendMessage("" + ChatColor.GOLD + ChatColor.BOLD + "Player cache");
+        for (final String line : TEPlayer.getStats())
+            sender.sendMessage(ChatColor.YELLOW + line);
+        return true;
+    }
+
+}
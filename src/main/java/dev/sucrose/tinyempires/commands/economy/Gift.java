@@ -44,29 +44,32 @@ public class Gift implements CommandExecutor {
             return false;
         }
 
-        // check player exists
-        final TEPlayer receiver = TEPlayer.getTEPlayer(receiverName);
-        if (receiver == null) {
-            player.sendMessage(ChatColor.RED + String.format(
-                "'%s' is not an existing player",
+        // receivers outside empires may have to be loaded from the database first
+        TEPlayer.load(receiverName, receiver -> {
+            // check player exists
+            if (receiver == null) {
+                player.sendMessage(ChatColor.RED + String.format(
+                    "'%s' is not an existing player.%s",
+                    receiverName,
+                    ErrorUtils.didYouMean(TEPlayer.suggestName(receiverName))
+                ));
+                return;
+            }
+
+            receiver.giveCoins(amount);
+            player.sendMessage(ChatColor.GREEN + String.format(
+                "Gifted %.1f coins to %s",
+                amount,
                 receiverName
             ));
-            return false;
-        }
 
-        receiver.giveCoins(amount);
-        player.sendMessage(ChatColor.GREEN + String.format(
-            "Gifted %.1f coins to %s",
-            amount,
-            receiverName
-        ));
-
-        final Player receiverPlayer = Bukkit.getPlayer(receiverName);
-        if (receiverPlayer != null)
-            receiverPlayer.sendMessage(ChatColor.GREEN + String.format(
-                "You have been gifted %.1f coins from the gods!",
-                amount
-            ));
+            final Player receiverPlayer = Bukkit.getPlayer(receiverName);
+            if (receiverPlayer != null)
+                receiverPlayer.sendMessage(ChatColor.GREEN + String.format(
+                    "You have been gifted %.1f coins from the gods!",
+                    amount
+                ));
+        });
         return true;
     }
 
@@ -38,37 +38,41 @@ public class Pay implements CommandExecutor {
             return false;
         }
 
-        // check player exists
-        final TEPlayer receiver = TEPlayer.getTEPlayer(receiverName);
-        if (receiver == null) {
-            player.sendMessage(ChatColor.RED + String.format(
-                "'%s' is not an existing player",
-                receiverName
-            ));
-            return false;
-        }
-
         final TEPlayer senderTEPlayer = TEPlayer.getTEPlayer(player.getUniqueId());
         if (senderTEPlayer == null) {
             player.sendMessage(ErrorUtils.YOU_DO_NOT_EXIST_IN_THE_DATABASE);
             return false;
         }
 
-        if (senderTEPlayer.getBalance() < amount) {
-            player.sendMessage(ChatColor.RED + String.format(
-                "You need %.1f more coins to make this transaction (%.1f in balance)",
-                amount - senderTEPlayer.getBalance(),
-                senderTEPlayer.getBalance()
-            ));
-            return false;
-        }
+        // receivers outside empires may have to be loaded from the database first
+        TEPlayer.load(receiverName, receiver -> {
+            // check player exists
+            if (receiver == null) {
+                player.sendMessage(ChatColor.RED + String.format(
+                    "'%s' is not an existing player.%s",
+                    receiverName,
+                    ErrorUtils.didYouMean(TEPlayer.suggestName(receiverName))
+                ));
+                return;
+            }
+
+            // balance may have changed while loading
+            if (senderTEPlayer.getBalance() < amount) {
+                player.sendMessage(ChatColor.RED + String.format(
+                    "You need %.1f more coins to make this transaction (%.1f in balance)",
+                    amount - senderTEPlayer.getBalance(),
+                    senderTEPlayer.getBalance()
+                ));
+                return;
+            }
 
-        senderTEPlayer.pay(receiver, amount);
-        player.sendMessage(ChatColor.GREEN + String.format(
-            "Paid %.1f coins to %s",
-            amount,
-            receiverName
-        ));
+            senderTEPlayer.pay(receiver, amount);
+            player.sendMessage(ChatColor.GREEN + String.format(
+                "Paid %.1f coins to %s",
+                amount,
+                receiverName
+            ));
+        });
         return true;
     }
 
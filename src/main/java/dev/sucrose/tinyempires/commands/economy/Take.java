@@ -1,6 +1,7 @@
 package dev.sucrose.tinyempires.commands.economy;
 
 import dev.sucrose.tinyempires.models.TEPlayer;
+import dev.sucrose.tinyempires.utils.ErrorUtils;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
@@ -42,29 +43,32 @@ public class Take implements CommandExecutor {
             return false;
         }
 
-        // check player exists
-        final TEPlayer receiver = TEPlayer.getTEPlayer(receiverName);
-        if (receiver == null) {
-            player.sendMessage(ChatColor.RED + String.format(
-                "'%s' is not an existing player",
+        // receivers outside empires may have to be loaded from the database first
+        TEPlayer.load(receiverName, receiver -> {
+            // check player exists
+            if (receiver == null) {
+                player.sendMessage(ChatColor.RED + String.format(
+                    "'%s' is not an existing player.%s",
+                    receiverName,
+                    ErrorUtils.didYouMean(TEPlayer.suggestName(receiverName))
+                ));
+                return;
+            }
+
+            receiver.takeCoins(amount);
+            player.sendMessage(ChatColor.GREEN + String.format(
+                "Taken %.1f coins from %s",
+                amount,
                 receiverName
             ));
-            return false;
-        }
 
-        receiver.takeCoins(amount);
-        player.sendMessage(ChatColor.GREEN + String.format(
-            "Taken %.1f coins from %s",
-            amount,
-            receiverName
-        ));
-
-        final Player receiverPlayer = Bukkit.getPlayer(receiverName);
-        if (receiverPlayer != null)
-            receiverPlayer.sendMessage(ChatColor.DARK_RED + String.format(
-                "The gods have taken away %.1f coins from you!",
-                amount
-            ));
+            final Player receiverPlayer = Bukkit.getPlayer(receiverName);
+            if (receiverPlayer != null)
+                receiverPlayer.sendMessage(ChatColor.DARK_RED + String.format(
+                    "The gods have taken away %.1f coins from you!",
+                    amount
+                ));
+        });
         return true;
     }
 
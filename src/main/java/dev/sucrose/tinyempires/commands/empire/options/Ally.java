@@ -55,8 +55,9 @@ public class Ally implements CommandOption {
         final Empire empireToAlly = Empire.getEmpire(empireName);
         if (empireToAlly == null) {
             sender.sendMessage(ChatColor.RED + String.format(
-                "'%s' is not an existing empire",
-                empireName
+                "'%s' is not an existing empire.%s",
+                empireName,
+                ErrorUtils.didYouMean(Empire.suggestName(empireName))
             ));
             return;
         }
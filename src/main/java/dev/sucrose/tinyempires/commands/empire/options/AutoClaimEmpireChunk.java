@@ -2,7 +2,6 @@ package dev.sucrose.tinyempires.commands.empire.options;
 
 import dev.sucrose.tinyempires.models.*;
 import dev.sucrose.tinyempires.utils.BoundUtils;
-import dev.sucrose.tinyempires.utils.DrawEmpire;
 import dev.sucrose.tinyempires.utils.ErrorUtils;
 import org.bukkit.ChatColor;
 import org.bukkit.Chunk;
@@ -20,8 +19,9 @@ public class AutoClaimEmpireChunk implements CommandOption {
     private static final Set<UUID> autoclaimers = new HashSet<>();
 
     public static void claimChunkForEmpire(String claimer, String world, int x, int z, Empire empire) {
-        TEChunk.createTEChunk(world, x, z, empire);
-        DrawEmpire.drawChunk(empire, world, x, z);
+        new TerritoryBatch()
+            .claim(world, x, z, empire)
+            .commit();
         empire.takeReserveCoins(TEChunk.CHUNK_COST);
         empire.broadcast(ChatColor.GREEN, String.format(
             "%s claimed a new chunk for %.1f coins at %d, %d",
@@ -1,12 +1,10 @@
 package dev.sucrose.tinyempires.commands.empire.options;
 
-import dev.sucrose.tinyempires.TinyEmpires;
 import dev.sucrose.tinyempires.models.*;
 import dev.sucrose.tinyempires.utils.BoundUtils;
 import dev.sucrose.tinyempires.utils.DrawEmpire;
 import dev.sucrose.tinyempires.utils.ErrorUtils;
 import dev.sucrose.tinyempires.utils.StringUtils;
-import me.xdrop.fuzzywuzzy.FuzzySearch;
 import org.bson.types.ObjectId;
 import org.bukkit.*;
 import org.bukkit.entity.Player;
@@ -77,11 +75,7 @@ public class CreateEmpire implements CommandOption {
                 location.getZ(),
                 tePlayer,
                 id -> {
-                    // run on main Spigot thread to avoid running asynchronously
-                    Bukkit.getScheduler().runTask(
-                        TinyEmpires.getInstance(),
-                        () -> tePlayer.setEmpireId(id)
-                    );
+                    tePlayer.setEmpireId(id);
 
                     // insert initial empire chunk
                     final Empire empire = Empire.getEmpire(id);
@@ -62,8 +62,9 @@ public class DeclareWar implements CommandOption {
         final Empire defender = Empire.getEmpire(empireName);
         if (defender == null) {
             sender.sendMessage(ChatColor.RED + String.format(
-                "Empire '%s' does not exist",
-                empireName
+                "Empire '%s' does not exist.%s",
+                empireName,
+                ErrorUtils.didYouMean(Empire.suggestName(empireName))
             ));
             return;
         }
@@ -1,10 +1,12 @@
 package dev.sucrose.tinyempires.commands.empire.options;
 
+import dev.sucrose.tinyempires.TinyEmpires;
 import dev.sucrose.tinyempires.models.*;
 import dev.sucrose.tinyempires.utils.BoundUtils;
-import dev.sucrose.tinyempires.utils.DrawEmpire;
+import dev.sucrose.tinyempires.utils.ChunkMap;
 import dev.sucrose.tinyempires.utils.ErrorUtils;
 import dev.sucrose.tinyempires.utils.StringUtils;
+import org.bson.types.ObjectId;
 import org.bukkit.*;
 import org.bukkit.entity.Player;
 
@@ -12,7 +14,7 @@ import java.util.*;
 
 public class EmpireClaimFill implements CommandOption {
 
-    private static final int CLAIM_FILL_LIMIT = 1000;
+    private static final int CLAIM_FILL_LIMIT = 5000;
 
     private enum FloodFillStatus {
         // chunks successfully calculated and valid
@@ -27,40 +29,31 @@ public class EmpireClaimFill implements CommandOption {
 
     private static class ChunkFloodFillResult {
 
-        private final List<Chunk> chunks;
+        private final long[] chunks;
         private final FloodFillStatus status;
+        private final long durationNanos;
 
-        public ChunkFloodFillResult(Set<String> chunks, FloodFillStatus status) {
-            if (chunks == null) {
-                this.chunks = null;
-            } else {
-                this.chunks = new ArrayList<>();
-                for (final String c : chunks)
-                    this.chunks.add(stringToChunk(c));
-            }
+        public ChunkFloodFillResult(long[] chunks, FloodFillStatus status, long durationNanos) {
+            this.chunks = chunks;
             this.status = status;
+            this.durationNanos = durationNanos;
         }
 
         public FloodFillStatus getStatus() {
             return status;
         }
 
-        public List<Chunk> getChunks() {
+        /**
+         * @return Packed coordinates of chunks to claim, null unless successful
+         */
+        public long[] getChunks() {
             return chunks;
         }
 
-    }
-
-    private static final World world = Bukkit.getWorld("world");
-    private static Chunk stringToChunk(String chunk) {
-        final String[] words = chunk.split(" ");
-        if (world == null)
-            throw new NullPointerException("Could not fetch world '" + words[0] + "'");
+        public long getDurationNanos() {
+            return durationNanos;
+        }
 
-        return world.getChunkAt(
-            Integer.parseInt(words[1]),
-            Integer.parseInt(words[2])
-        );
     }
 
     private static final int MAX_WORLD_X =  10752;
@@ -76,73 +69,205 @@ public class EmpireClaimFill implements CommandOption {
             && worldZ >= MIN_WORLD_Z;
     }
 
+    // cell kinds met while filling
+    private static final int FILLABLE = 0;
+    // claiming empire's chunk or off the map, bounds the fill
+    private static final int WALL = 1;
+    // outside the claiming empire's bounding box so cannot be encircled
+    private static final int ESCAPED = 2;
+    private static final int FOREIGN = 3;
+    private static final int SPECIAL = 4;
+
     /**
-     * Calculates chunks to be claimed in claim-fill and status
-     * @param empire Empire trying to claim-fill
-     * @param chunk Chunks to be claimed
-     * @return Chunks to be claimed + flood-fill status if empire does not encircle area trying to claim or if
-     * chunks go over chunk maximum
+     * Read-only copy of the territory in the claiming empire's bounding box, taken on the main thread so the fill can
+     * run asynchronously. Chunks are bits indexed by their offset in the box
      */
+    private static class TerritorySnapshot {
+
+        private final ObjectId empire;
+        private final String world;
+        private final int minX;
+        private final int minZ;
+        private final int width;
+        private final int height;
+        private final BitSet owned;
+        private final BitSet foreign;
+        private final long durationNanos;
+
+        private TerritorySnapshot(Empire empire, String world) {
+            final long start = System.nanoTime();
+            this.empire = empire.getId();
+            this.world = world;
+
+            final List<TEChunk> ownedChunks = new ArrayList<>();
+            int minX = Integer.MAX_VALUE;
+            int minZ = Integer.MAX_VALUE;
+            int maxX = Integer.MIN_VALUE;
+            int maxZ = Integer.MIN_VALUE;
+            for (final TEChunk chunk : TEChunk.getEmpireChunks(this.empire)) {
+                if (!chunk.getWorld().equals(world))
+                    continue;
+                ownedChunks.add(chunk);
+                minX = Math.min(minX, chunk.getX());
+                minZ = Math.min(minZ, chunk.getZ());
+                maxX = Math.max(maxX, chunk.getX());
+                maxZ = Math.max(maxZ, chunk.getZ());
+            }
 
-    private ChunkFloodFillResult floodFill(Empire empire, Chunk chunk) {
-        // iterative flood-fill
-        final Stack<String> stack = new Stack<>();
-        final Set<String> chunks = new HashSet<>();
-        stack.add(TEChunk.serialize(chunk.getWorld().getName(), chunk.getX(), chunk.getZ()));
-
-        int i = 0;
-        long startTimeTotal, endTimeTotal;
-        double duration;
-        while (!stack.empty()) {
-            startTimeTotal = System.nanoTime();
-            if (chunks.size() > CLAIM_FILL_LIMIT)
-                return new ChunkFloodFillResult(null, FloodFillStatus.OVER_LIMIT);
-
-            // pop stack
-            final String cSerialized = stack.pop();
+            this.minX = minX;
+            this.minZ = minZ;
+            this.width = ownedChunks.isEmpty() ? 0 : maxX - minX + 1;
+            this.height = ownedChunks.isEmpty() ? 0 : maxZ - minZ + 1;
+            this.owned = new BitSet();
+            this.foreign = new BitSet();
+            for (final TEChunk chunk : ownedChunks)
+                owned.set(index(chunk.getX(), chunk.getZ()));
+            if (!ownedChunks.isEmpty()) {
+                for (final TEChunk chunk : TEChunk.getChunks()) {
+                    if (chunk.getWorld().equals(world)
+                            && inBox(chunk.getX(), chunk.getZ())
+                            && !chunk.getEmpire().getId().equals(this.empire))
+                        foreign.set(index(chunk.getX(), chunk.getZ()));
+                }
+            }
+            this.durationNanos = System.nanoTime() - start;
+        }
 
-            final String[] words = cSerialized.split(" ");
-            final String world = words[0];
-            final int x = Integer.parseInt(words[1]);
-            final int z = Integer.parseInt(words[2]);
+        private boolean inBox(int x, int z) {
+            return x >= minX
+                && x < minX + width
+                && z >= minZ
+                && z < minZ + height;
+        }
 
-            if (BoundUtils.isChunkInBoundsOfSpecialTerritory(chunk))
-                return new ChunkFloodFillResult(null, FloodFillStatus.UNCLAIMABLE_CHUNK);
+        private int index(int x, int z) {
+            return (z - minZ) * width + (x - minX);
+        }
 
-            // if over-world check map limits
+        private int classify(int x, int z) {
+            // map edges bound the fill like the empire's own chunks
             if (world.equals("world")
                     && !chunkCoordsInOverworld(x, z))
-                continue;
+                return WALL;
+            if (!inBox(x, z))
+                return ESCAPED;
+            final int index = index(x, z);
+            if (owned.get(index))
+                return WALL;
+            if (foreign.get(index))
+                return FOREIGN;
+            if (BoundUtils.isChunkInBoundsOfSpecialTerritory(world, x, z))
+                return SPECIAL;
+            return FILLABLE;
+        }
 
-            final TEChunk teChunk = TEChunk.getChunk(world, x, z);
-            if (teChunk != null) {
-                if (teChunk.getEmpire().getId().equals(empire.getId()))
+        private static FloodFillStatus failure(int kind) {
+            return kind == SPECIAL
+                ? FloodFillStatus.UNCLAIMABLE_CHUNK
+                : FloodFillStatus.UNOWNED_BORDER;
+        }
+
+        /**
+         * Scanline flood-fill from the chunk, each row span is claimed whole and only one seed is pushed per run of
+         * fillable chunks above and below it so no chunk is visited twice. Safe to call off the main thread
+         * @return Chunks to be claimed + flood-fill status if empire does not encircle area trying to claim or if
+         * chunks go over chunk maximum
+         */
+        private ChunkFloodFillResult fill(int originX, int originZ) {
+            final long start = System.nanoTime();
+            final int originKind = classify(originX, originZ);
+            if (originKind != FILLABLE)
+                return new ChunkFloodFillResult(null, failure(originKind), System.nanoTime() - start);
+
+            final BitSet visited = new BitSet(width * height);
+            int[] stack = new int[64];
+            int size = 0;
+            stack[size++] = index(originX, originZ);
+            int filled = 0;
+            while (size > 0) {
+                final int seed = stack[--size];
+                if (visited.get(seed))
                     continue;
-                // not entire perimeter is owned by claiming empire
-                return new ChunkFloodFillResult(chunks, FloodFillStatus.UNOWNED_BORDER);
+                final int z = minZ + seed / width;
+                int left = minX + seed % width;
+                int right = left;
+
+                // widen span to the walls either side
+                int kind;
+                while ((kind = classify(left - 1, z)) == FILLABLE
+                        && !visited.get(index(left - 1, z)))
+                    left--;
+                if (kind != FILLABLE && kind != WALL)
+                    return new ChunkFloodFillResult(null, failure(kind), System.nanoTime() - start);
+                while ((kind = classify(right + 1, z)) == FILLABLE
+                        && !visited.get(index(right + 1, z)))
+                    right++;
+                if (kind != FILLABLE && kind != WALL)
+                    return new ChunkFloodFillResult(null, failure(kind), System.nanoTime() - start);
+
+                filled += right - left + 1;
+                if (filled > CLAIM_FILL_LIMIT)
+                    return new ChunkFloodFillResult(null, FloodFillStatus.OVER_LIMIT, System.nanoTime() - start);
+                visited.set(index(left, z), index(right, z) + 1);
+
+                // seed each run of unvisited fillable chunks in the rows above and below
+                for (int dz = -1; dz <= 1; dz += 2) {
+                    boolean inRun = false;
+                    for (int x = left; x <= right; x++) {
+                        kind = classify(x, z + dz);
+                        if (kind == FILLABLE
+                                && !visited.get(index(x, z + dz))) {
+                            if (!inRun) {
+                                if (size == stack.length)
+                                    stack = Arrays.copyOf(stack, size * 2);
+                                stack[size++] = index(x, z + dz);
+                                inRun = true;
+                            }
+                        } else if (kind == FILLABLE || kind == WALL) {
+                            inRun = false;
+                        } else {
+                            return new ChunkFloodFillResult(null, failure(kind), System.nanoTime() - start);
+                        }
+                    }
+                }
             }
 
-            final String rightChunk = TEChunk.serialize(world, x + 1, z);
-            if (!chunks.contains(rightChunk))
-                stack.add(rightChunk);
-
-            final String leftChunk = TEChunk.serialize(world, x - 1, z);
-            if (!chunks.contains(leftChunk))
-                stack.add(leftChunk);
-
-            final String upChunk = TEChunk.serialize(world, x, z - 1);
-            if (!chunks.contains(upChunk))
-                stack.add(upChunk);
-
-            final String downChunk = TEChunk.serialize(world, x, z + 1);
-            if (!chunks.contains(downChunk))
-                stack.add(downChunk);
+            final long[] chunks = new long[filled];
+            int i = 0;
+            for (int index = visited.nextSetBit(0); index >= 0; index = visited.nextSetBit(index + 1))
+                chunks[i++] = ChunkMap.pack(minX + index % width, minZ + index / width);
+            return new ChunkFloodFillResult(chunks, FloodFillStatus.SUCCESS, System.nanoTime() - start);
+        }
 
-            chunks.add(cSerialized);
+        /**
+         * Checks on the main thread that the territory the fill was calculated against has not changed in a way that
+         * invalidates it
+         * @return Whether the snapshot's own chunks are still owned and no filled chunk has been claimed by another
+         * empire or made special
+         */
+        private boolean isStillValid(long[] chunks) {
+            for (int index = owned.nextSetBit(0); index >= 0; index = owned.nextSetBit(index + 1)) {
+                final TEChunk chunk = TEChunk.getChunk(world, minX + index % width, minZ + index / width);
+                if (chunk == null
+                        || !chunk.getEmpire().getId().equals(empire))
+                    return false;
+            }
+            for (final long key : chunks) {
+                final int x = ChunkMap.unpackX(key);
+                final int z = ChunkMap.unpackZ(key);
+                final TEChunk chunk = TEChunk.getChunk(world, x, z);
+                if ((chunk != null && !chunk.getEmpire().getId().equals(empire))
+                        || BoundUtils.isChunkInBoundsOfSpecialTerritory(world, x, z))
+                    return false;
+            }
+            return true;
         }
-        return new ChunkFloodFillResult(chunks, FloodFillStatus.SUCCESS);
+
     }
 
+    // empires with a claim-fill being calculated
+    private static final Set<ObjectId> pendingFills = new HashSet<>();
+
     @Override
     public void execute(Player sender, String[] args) {
         // /e claim
@@ -164,6 +289,17 @@ public class EmpireClaimFill implements CommandOption {
             return;
         }
 
+        final boolean confirm;
+        if (args.length > 0) {
+            if (!args[0].equals("confirm")) {
+                sender.sendMessage(ChatColor.RED + "/e claimfill [confirm]");
+                return;
+            }
+            confirm = true;
+        } else {
+            confirm = false;
+        }
+
         final Location location = sender.getLocation();
         final Chunk chunk = location.getChunk();
         final World world = location.getWorld();
@@ -171,8 +307,9 @@ public class EmpireClaimFill implements CommandOption {
             throw new NullPointerException("World when getting player location is undefined");
 
         final String worldName = world.getName();
-        if (TEChunk.getChunk(worldName, chunk.getX(), chunk.getZ()) != null) {
-            if (TEChunk.getChunk(chunk).getEmpire().getId().equals(empire.getId())) {
+        final TEChunk teChunk = TEChunk.getChunk(worldName, chunk.getX(), chunk.getZ());
+        if (teChunk != null) {
+            if (teChunk.getEmpire().getId().equals(empire.getId())) {
                 sender.sendMessage(ChatColor.RED + "Claim-fill must be called in an unclaimed chunk");
                 return;
             }
@@ -181,7 +318,46 @@ public class EmpireClaimFill implements CommandOption {
             return;
         }
 
-        final ChunkFloodFillResult result = floodFill(empire, chunk);
+        if (!pendingFills.add(empire.getId())) {
+            sender.sendMessage(ChatColor.RED + "A claim-fill is already being calculated for your empire");
+            return;
+        }
+
+        final int chunkX = chunk.getX();
+        final int chunkZ = chunk.getZ();
+        final TerritorySnapshot snapshot = new TerritorySnapshot(empire, worldName);
+        Bukkit.getScheduler().runTaskAsynchronously(TinyEmpires.getInstance(), () -> {
+            final ChunkFloodFillResult result = snapshot.fill(chunkX, chunkZ);
+            Bukkit.getScheduler().runTask(TinyEmpires.getInstance(), () -> {
+                pendingFills.remove(snapshot.empire);
+                finish(sender, snapshot, result, chunkX, chunkZ, confirm);
+            });
+        });
+    }
+
+    /**
+     * Re-validates a calculated claim-fill on the main thread then reports or claims it
+     */
+    private static void finish(Player sender,
+                               TerritorySnapshot snapshot,
+                               ChunkFloodFillResult result,
+                               int chunkX,
+                               int chunkZ,
+                               boolean confirm) {
+        final long start = System.nanoTime();
+        if (!sender.isOnline())
+            return;
+
+        // sender may have left, lost permissions or had their empire deleted while calculating
+        final TEPlayer tePlayer = TEPlayer.getTEPlayer(sender.getUniqueId());
+        final Empire empire = tePlayer == null ? null : tePlayer.getEmpire();
+        if (empire == null
+                || !empire.getId().equals(snapshot.empire)
+                || !tePlayer.hasPermission(Permission.CHUNKS)) {
+            sender.sendMessage(ChatColor.RED + "Your empire or permissions changed while calculating claim-fill");
+            return;
+        }
+
         if (result.getStatus() != FloodFillStatus.SUCCESS) {
             final String message =
                 result.getStatus() == FloodFillStatus.OVER_LIMIT
@@ -190,56 +366,89 @@ public class EmpireClaimFill implements CommandOption {
                         ? "Your claim-fill selection contains an un-claimable chunk"
                         : "Your empire does not fully encircle the area you're trying to claim-fill (check the map!)";
             sender.sendMessage(ChatColor.RED + message);
+            reportTiming(sender, snapshot, result, 0, start);
+            return;
+        }
+
+        if (!snapshot.isStillValid(result.getChunks())) {
+            sender.sendMessage(ChatColor.RED + "Territory changed while calculating claim-fill, try again");
             return;
         }
-        
-        int size = result.getChunks().size();
+
+        // only charge for chunks the empire hasn't claimed itself since the snapshot
+        final TerritoryBatch batch = new TerritoryBatch();
+        int size = 0;
+        for (final long key : result.getChunks()) {
+            final int x = ChunkMap.unpackX(key);
+            final int z = ChunkMap.unpackZ(key);
+            if (TEChunk.getChunk(snapshot.world, x, z) != null)
+                continue;
+            batch.claim(snapshot.world, x, z, empire);
+            size++;
+        }
+        if (size == 0) {
+            sender.sendMessage(ChatColor.RED + "Your empire has already claimed every chunk in the claim-fill");
+            return;
+        }
+
         double discountMultiplier = 1;
         if(size >= 1000) discountMultiplier = 0.3;
         else if(size >= 500) discountMultiplier = 0.5;
         else if(size >= 300) discountMultiplier = 0.7;
-        
-        final double cost = result.getChunks().size() * TEChunk.CHUNK_COST * discountMultiplier;
-        if (args.length > 0) {
-            final String option = args[0];
-            if (option.equals("confirm")) {
-                if (empire.getReserve() < cost) {
-                    sender.sendMessage(ChatColor.RED + String.format(
-                        "Empire requires %.1f more coins to run claim fill (%d chunks, %.1f coins required)",
-                        cost - empire.getReserve(),
-                        result.getChunks().size(),
-                        cost
-                    ));
-                    return;
-                }
-                for (final Chunk c : result.getChunks()) {
-                    TEChunk.createTEChunk(worldName, c.getX(), c.getZ(), empire);
-                    DrawEmpire.drawChunk(empire, worldName, c.getX(), c.getZ());
-                }
-                empire.takeReserveCoins(cost);
-                empire.broadcast(ChatColor.GREEN, String.format(
-                    "%s claim-filled %d chunks for %.1f coins (%d%% discount), %.1f left in reserve.",
-                    sender.getName(),
-                    result.getChunks().size(),
-                    cost,
-                    (int) ((1 - discountMultiplier) * 100),
-                    empire.getReserve()
-                ));
-                return;
-            }
-            sender.sendMessage(ChatColor.RED + "/e claimfill [confirm]");
+
+        final double cost = size * TEChunk.CHUNK_COST * discountMultiplier;
+        if (!confirm) {
+            sender.sendMessage(ChatColor.GREEN + String.format(
+                "Claim-fill at %d, %d in the %s would claim %d chunks for %.1f coins (%.1f in reserve)",
+                chunkX * 16,
+                chunkZ * 16,
+                StringUtils.worldDirToName(snapshot.world),
+                size,
+                cost,
+                empire.getReserve()
+            ));
+            reportTiming(sender, snapshot, result, 0, start);
+            return;
+        }
+
+        if (empire.getReserve() < cost) {
+            sender.sendMessage(ChatColor.RED + String.format(
+                "Empire requires %.1f more coins to run claim fill (%d chunks, %.1f coins required)",
+                cost - empire.getReserve(),
+                size,
+                cost
+            ));
             return;
         }
 
-        sender.sendMessage(ChatColor.GREEN + String.format(
-            "Claim-fill at %d, %d in the %s would claim %d chunks for %.1f coins (%.1f in reserve)",
-            chunk.getX() * 16,
-            chunk.getZ() * 16,
-            StringUtils.worldDirToName(chunk.getWorld().getName()),
-            result.getChunks().size(),
+        final int claimed = batch.commit();
+        empire.takeReserveCoins(cost);
+        empire.broadcast(ChatColor.GREEN, String.format(
+            "%s claim-filled %d chunks for %.1f coins (%d%% discount), %.1f left in reserve.",
+            sender.getName(),
+            size,
             cost,
+            (int) ((1 - discountMultiplier) * 100),
             empire.getReserve()
         ));
+        reportTiming(sender, snapshot, result, claimed, start);
+    }
+
+    private static void reportTiming(Player sender,
+                                     TerritorySnapshot snapshot,
+                                     ChunkFloodFillResult result,
+                                     int claimed,
+                                     long finishStart) {
+        if (!sender.isOp())
+            return;
+        sender.sendMessage(ChatColor.GRAY + String.format(
+            "Claim-fill: snapshot %.2fms, fill %.2fms (async, %s), validate and claim %.2fms (%d claimed)",
+            snapshot.durationNanos / 1e6,
+            result.getDurationNanos() / 1e6,
+            result.getStatus().name().toLowerCase(),
+            (System.nanoTime() - finishStart) / 1e6,
+            claimed
+        ));
     }
 
     @Override
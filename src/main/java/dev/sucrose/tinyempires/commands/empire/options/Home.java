@@ -90,19 +90,13 @@ public class Home implements CommandOption, Listener {
         cancelPlayerTeleport(uuid);
     }
 
-    @EventHandler
-    public static void onPlayerMove(PlayerMoveEvent event) {
+    /**
+     * Called by {@link dev.sucrose.tinyempires.listeners.MovementDispatcher} whenever the player's position changes
+     */
+    public static void onPositionChanged(PlayerMoveEvent event) {
         final Player player = event.getPlayer();
         final UUID uuid = player.getUniqueId();
-        final Location from = event.getFrom();
-        final Location to = event.getTo();
-        if (to == null)
-            return;
-
-        if ((from.getX() != to.getX()
-                || from.getY() != to.getY()
-                || from.getZ() != to.getZ())
-                && playerToTeleportationTask.containsKey(uuid)) {
+        if (playerToTeleportationTask.containsKey(uuid)) {
             cancelPlayerTeleport(uuid);
             player.sendMessage(ChatColor.RED + "You moved! Cancelling teleport...");
         }
@@ -2,7 +2,6 @@ package dev.sucrose.tinyempires.commands.empire.options;
 
 import dev.sucrose.tinyempires.models.*;
 import dev.sucrose.tinyempires.utils.ErrorUtils;
-import me.xdrop.fuzzywuzzy.FuzzySearch;
 import org.bson.types.ObjectId;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
@@ -27,7 +26,7 @@ public class Info implements CommandOption {
         if(args.length == 0) selfEmpireInfo(sender);
         else {
             Empire e = Empire.getEmpire(args[0]);
-            if(e == null) sender.sendMessage(ChatColor.GRAY + "We couldn't find that empire. Did you mean: \"" + ChatColor.ITALIC + FuzzySearch.extractTop(args[0], Empire.getEmpireNames(), 1).get(0).getString() + "\"");
+            if(e == null) sender.sendMessage(ChatColor.GRAY + "We couldn't find that empire." + ErrorUtils.didYouMean(Empire.suggestName(args[0])));
             else empireInfo(sender, e);
         }
     }
@@ -112,18 +111,13 @@ public class Info implements CommandOption {
         if (debtors.size() > 0) {
             sender.sendMessage("");
             sender.sendMessage("" + ChatColor.BOLD + "Debt");
-            for (final Map.Entry<UUID, Double> debtor : debtors) {
-                final TEPlayer debtorTEPlayer = TEPlayer.getTEPlayer(debtor.getKey());
-                if (debtorTEPlayer == null)
-                    throw new NullPointerException(String.format(
-                            "Could not find TEPlayer instance for %s", debtor.getKey()
-                    ));
+            for (final Map.Entry<UUID, Double> debtor : debtors)
+                // debt outlives membership so former members may not be cached
                 sender.sendMessage(ChatColor.RED + String.format(
                         " - %s: %.1f",
-                        debtorTEPlayer.getName(),
+                        TEPlayer.getName(debtor.getKey()),
                         debtor.getValue()
                 ));
-            }
         }
     }
 
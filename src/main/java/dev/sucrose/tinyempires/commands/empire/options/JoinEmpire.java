@@ -51,8 +51,9 @@ public class JoinEmpire implements CommandOption {
         final Empire empireToJoin = Empire.getEmpire(empireToJoinName);
         if (empireToJoin == null) {
             sender.sendMessage(ChatColor.RED + String.format(
-                "Empire with name '%s' does not exist",
-                empireToJoinName
+                "Empire with name '%s' does not exist.%s",
+                empireToJoinName,
+                ErrorUtils.didYouMean(Empire.suggestName(empireToJoinName))
             ));
             return;
         }
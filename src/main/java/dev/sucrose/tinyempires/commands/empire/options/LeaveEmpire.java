@@ -76,10 +76,9 @@ public class LeaveEmpire implements CommandOption {
             }
 
             // erase chunk markers + delete in mongo
-            for (final TEChunk chunk : TEChunk.getEmpireChunks(empire.getId())) {
-                TEChunk.deleteChunk(chunk);
-                DrawEmpire.removeChunk(chunk, empire);
-            }
+            new TerritoryBatch()
+                .unclaimAll(empire)
+                .commit();
 
             // delete flag marker
             DrawEmpire.deleteEmpireHomeMarker(empire.getId());
@@ -53,8 +53,9 @@ public class Unally implements CommandOption {
         final Empire empireToUnally = Empire.getEmpire(empireName);
         if (empireToUnally == null) {
             sender.sendMessage(ChatColor.RED + String.format(
-                "'%s' is not an existing empire",
-                empireName
+                "'%s' is not an existing empire.%s",
+                empireName,
+                ErrorUtils.didYouMean(Empire.suggestName(empireName))
             ));
             return;
         }
@@ -8,7 +8,6 @@ import dev.sucrose.tinyempires.models.Empire;
 import dev.sucrose.tinyempires.models.Permission;
 import dev.sucrose.tinyempires.models.TEPlayer;
 import dev.sucrose.tinyempires.utils.ErrorUtils;
-import me.xdrop.fuzzywuzzy.FuzzySearch;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
@@ -54,8 +53,9 @@ public class TeleportRequest implements CommandExecutor {
         final Player requestReceiver = Bukkit.getPlayer(requestReceiverName);
         if (requestReceiver == null) {
             sender.sendMessage(ChatColor.RED + String.format(
-                "%s is not currently online",
-                ChatColor.BOLD + requestReceiverName
+                "%s is not currently online.%s",
+                ChatColor.BOLD + requestReceiverName + ChatColor.RED,
+                ErrorUtils.didYouMean(TEPlayer.suggestOnlineName(requestReceiverName))
             ));
             return false;
         }
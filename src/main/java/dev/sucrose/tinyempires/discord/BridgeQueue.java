@@ -0,0 +1,219 @@
+package dev.sucrose.tinyempires.discord;
+
+import net.dv8tion.jda.api.entities.TextChannel;
+import org.bukkit.ChatColor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outbound queue for the bridge channel. Messages queued within a flush interval are joined into one post of at most
+ * 2000 characters and only one post is in flight at a time, so a busy server backs up here (bounded) instead of in
+ * the rate-limited JDA request queue. System events are posted before chat, on overflow the oldest messages are
+ * dropped and the next post says how many were skipped
+ */
+public class BridgeQueue {
+
+    private static final int MAX_POST_LENGTH = 2000;
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+    private static final int MAX_QUEUED_SYSTEM_MESSAGES = 100;
+    private static final int MAX_QUEUED_CHAT_MESSAGES = 200;
+
+    private static class QueuedMessage {
+
+        private final String content;
+        private final long queuedAt = System.nanoTime();
+
+        QueuedMessage(String content) {
+            // a single message over the limit could never be posted
+            this.content = content.length() > MAX_POST_LENGTH
+                ? content.substring(0, MAX_POST_LENGTH - 3) + "..."
+                : content;
+        }
+
+    }
+
+    private static final Deque<QueuedMessage> systemMessages = new ArrayDeque<>();
+    private static final Deque<QueuedMessage> chatMessages = new ArrayDeque<>();
+    private static TextChannel channel;
+    private static ScheduledExecutorService flusher;
+    private static boolean inFlight = false;
+    // dropped since the last post, reported in the next one
+    private static int droppedSystem = 0;
+    private static int droppedChat = 0;
+
+    // metrics
+    private static long postedMessages = 0;
+    private static long posts = 0;
+    private static long failedPosts = 0;
+    private static long totalDropped = 0;
+    private static long lastLatencyMillis = 0;
+    private static long maxLatencyMillis = 0;
+    private static long totalLatencyMillis = 0;
+
+    public static synchronized void start(TextChannel bridgeChannel) {
+        channel = bridgeChannel;
+        if (flusher != null)
+            return;
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "TinyEmpires-BridgeQueue");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(
+            BridgeQueue::flush,
+            FLUSH_INTERVAL_MILLIS,
+            FLUSH_INTERVAL_MILLIS,
+            TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * Stops flushing and queues everything left with JDA, call before shutting the bot down
+     */
+    public static synchronized void stop() {
+        if (flusher == null)
+            return;
+        flusher.shutdownNow();
+        flusher = null;
+        while (hasQueued()) {
+            final String post = buildPost(new long[1]);
+            if (channel != null)
+                channel.sendMessage(post).queue();
+        }
+    }
+
+    /**
+     * Queues a join, death, war or other server event, posted ahead of chat
+     */
+    public static synchronized void enqueueSystem(String content) {
+        if (systemMessages.size() >= MAX_QUEUED_SYSTEM_MESSAGES) {
+            systemMessages.poll();
+            droppedSystem++;
+            totalDropped++;
+        }
+        systemMessages.add(new QueuedMessage(content));
+    }
+
+    public static synchronized void enqueueChat(String content) {
+        if (chatMessages.size() >= MAX_QUEUED_CHAT_MESSAGES) {
+            chatMessages.poll();
+            droppedChat++;
+            totalDropped++;
+        }
+        chatMessages.add(new QueuedMessage(content));
+    }
+
+    private static boolean hasQueued() {
+        return !systemMessages.isEmpty()
+            || !chatMessages.isEmpty()
+            || droppedSystem > 0
+            || droppedChat > 0;
+    }
+
+    private static synchronized void flush() {
+        if (inFlight
+                || channel == null
+                || !hasQueued())
+            return;
+
+        final long[] oldestQueuedAt = new long[1];
+        final int messages = systemMessages.size() + chatMessages.size();
+        final String post = buildPost(oldestQueuedAt);
+        final int included = messages - systemMessages.size() - chatMessages.size();
+        inFlight = true;
+        try {
+            channel.sendMessage(post).queue(
+                response -> onPosted(included, oldestQueuedAt[0]),
+                BridgeQueue::onFailed
+            );
+        } catch (RuntimeException err) {
+            onFailed(err);
+        }
+    }
+
+    private static synchronized void onPosted(int messages, long oldestQueuedAt) {
+        inFlight = false;
+        posts++;
+        postedMessages += messages;
+        lastLatencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldestQueuedAt);
+        maxLatencyMillis = Math.max(maxLatencyMillis, lastLatencyMillis);
+        totalLatencyMillis += lastLatencyMillis;
+    }
+
+    private static synchronized void onFailed(Throwable err) {
+        inFlight = false;
+        failedPosts++;
+        System.out.println(ChatColor.RED + "Failed to post to the Discord bridge channel: " + err.getMessage());
+    }
+
+    /**
+     * Removes as many queued messages as fit into one post, system messages first
+     * @param oldestQueuedAt Set to when the oldest included message was queued
+     */
+    private static String buildPost(long[] oldestQueuedAt) {
+        final List<String> lines = new ArrayList<>();
+        if (droppedSystem > 0 || droppedChat > 0) {
+            lines.add(String.format(
+                "*[Bridge overloaded, skipped %d event%s and %d chat message%s]*",
+                droppedSystem,
+                droppedSystem == 1 ? "" : "s",
+                droppedChat,
+                droppedChat == 1 ? "" : "s"
+            ));
+            droppedSystem = 0;
+            droppedChat = 0;
+        }
+
+        oldestQueuedAt[0] = System.nanoTime();
+        int length = lines.isEmpty() ? 0 : lines.get(0).length();
+        for (final Deque<QueuedMessage> queue : Arrays.asList(systemMessages, chatMessages)) {
+            while (!queue.isEmpty()) {
+                final QueuedMessage message = queue.peek();
+                // newline separator unless first line
+                final int added = message.content.length() + (lines.isEmpty() ? 0 : 1);
+                if (length + added > MAX_POST_LENGTH)
+                    return String.join("\n", lines);
+                queue.poll();
+                lines.add(message.content);
+                length += added;
+                oldestQueuedAt[0] = Math.min(oldestQueuedAt[0], message.queuedAt);
+            }
+        }
+        return String.join("\n", lines);
+    }
+
+    /**
+     * @return Queue depth, throughput and latency as lines for /stats
+     */
+    public static synchronized List<String> getStats() {
+        final List<String> stats = new ArrayList<>();
+        stats.add(String.format(
+            "Queued: %d events, %d chat messages%s",
+            systemMessages.size(),
+            chatMessages.size(),
+            inFlight ? " (post in flight)" : ""
+        ));
+        stats.add(String.format(
+            "Posted: %d messages in %d posts, %d failed posts, %d dropped",
+            postedMessages,
+            posts,
+            failedPosts,
+            totalDropped
+        ));
+        stats.add(String.format(
+            "Latency: %dms last, %dms average, %dms max",
+            lastLatencyMillis,
+            posts == 0 ? 0 : totalLatencyMillis / posts,
+            maxLatencyMillis
+        ));
+        return stats;
+    }
+
+}
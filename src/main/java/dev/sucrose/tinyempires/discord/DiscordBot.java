@@ -80,15 +80,21 @@ public class DiscordBot extends ListenerAdapter implements Listener {
 
         bridgeChannel = discordServer.getTextChannelById(BRIDGE_CHANNEL_ID);
         prayerChannel = discordServer.getTextChannelById(PRAYER_CHANNEL_ID);
+        BridgeQueue.start(bridgeChannel);
 
         // success
         System.out.println(ChatColor.LIGHT_PURPLE + "Initialized Pixel Empires Discord Bot");
     }
 
+    /**
+     * Queues a server event for the bridge channel, posted ahead of chat
+     */
     public static void sendMessageInBridgeChat(String content) {
-        bridgeChannel
-                .sendMessage(CensorUtils.censorCurses(content))
-                .queue(response -> System.out.println("Successfully sent message to Discord"));
+        BridgeQueue.enqueueSystem(CensorUtils.censorCurses(content));
+    }
+
+    public static void sendChatMessageInBridgeChat(String content) {
+        BridgeQueue.enqueueChat(CensorUtils.censorCurses(content));
     }
 
     public static void sendPrayerMessage(UUID playerId, Location burnLocation, ItemStack burntItems) {
@@ -146,6 +152,7 @@ public class DiscordBot extends ListenerAdapter implements Listener {
     }
 
     public static void close() {
+        BridgeQueue.stop();
         bot.shutdown();
     }
 
@@ -353,11 +360,10 @@ public class DiscordBot extends ListenerAdapter implements Listener {
                         for (final Player p : players) {
                             final UUID pUUID = p.getUniqueId();
                             final TEPlayer teP = TEPlayer.getTEPlayer(pUUID);
-                            if (teP == null)
-                                throw new NullPointerException("Could not get TEPlayer for UUID " + pUUID);
+                            // players are only cached once they've joined
                             messageBuilder.append(String.format(
                                     "\n - [%s] %s",
-                                    teP.getEmpire() == null
+                                    teP == null || teP.getEmpire() == null
                                             ? "Unaffiliated"
                                             : teP.getEmpire().getName(),
                                     p.getName()
@@ -376,6 +382,7 @@ public class DiscordBot extends ListenerAdapter implements Listener {
                                 )
                         );
                         for (final Empire e : empires) {
+                            final int chunks = TEChunk.getEmpireChunkCount(e.getId());
                             messageBuilder.append(String.format(
                                     "\n - %s: %d member%s, %.1f coin%s, %d law%s, %d chunk%s",
                                     e.getName(),
@@ -385,8 +392,8 @@ public class DiscordBot extends ListenerAdapter implements Listener {
                                     e.getReserve() != 1f ? "s" : "",
                                     e.getLaws().size(),
                                     e.getLaws().size() != 1 ? "s" : "",
-                                    TEChunk.getEmpireChunks(e.getId()).size(),
-                                    TEChunk.getEmpireChunks(e.getId()).size() != 1 ? "s" : ""
+                                    chunks,
+                                    chunks != 1 ? "s" : ""
                             ));
                         }
 
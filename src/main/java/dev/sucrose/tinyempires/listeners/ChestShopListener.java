@@ -5,23 +5,23 @@ import dev.sucrose.tinyempires.models.ChunkType;
 import dev.sucrose.tinyempires.models.TEChest;
 import dev.sucrose.tinyempires.models.TEChunk;
 import dev.sucrose.tinyempires.models.TEPlayer;
+import dev.sucrose.tinyempires.utils.ChestShops;
 import dev.sucrose.tinyempires.utils.ErrorUtils;
 import org.bson.types.ObjectId;
 import org.bukkit.*;
 import org.bukkit.block.*;
-import org.bukkit.block.data.Directional;
 import org.bukkit.entity.HumanEntity;
 import org.bukkit.entity.Player;
 import org.bukkit.event.Event;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
-import org.bukkit.event.block.BlockBreakEvent;
-import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.block.*;
+import org.bukkit.event.entity.EntityExplodeEvent;
 import org.bukkit.event.inventory.*;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.PlayerInventory;
-import org.bukkit.util.Vector;
 
 import java.util.UUID;
 
@@ -102,15 +102,11 @@ public class ChestShopListener implements Listener {
             );
 
             final TEChunk teChunk = TEChunk.getChunk(player.getLocation().getChunk());
-            final TEPlayer chestOwner = TEPlayer.getTEPlayer(chestOwnerId);
-            if (chestOwner == null)
-                throw new NullPointerException("Could not get TEPlayer for chest owner " + chestOwnerId);
-
             if (teChunk != null
                     && !event.getPlayer().getUniqueId().equals(chestOwnerId)) {
                 event.getPlayer().sendMessage(ChatColor.RED + String.format(
                     "You cannot destroy someone else's chest in an empire chunk! (Chest owned by %s)",
-                    ChatColor.BOLD + chestOwner.getName() + ChatColor.RED
+                    ChatColor.BOLD + TEPlayer.getName(chestOwnerId) + ChatColor.RED
                 ));
                 event.setCancelled(true);
                 return;
@@ -135,14 +131,10 @@ public class ChestShopListener implements Listener {
                 if (chestOwnerId == null)
                     throw new NullPointerException("Could not get ID for chest coordinates");
 
-                final TEPlayer chestOwner = TEPlayer.getTEPlayer(chestOwnerId);
-                if (chestOwner == null)
-                    throw new NullPointerException("Could not get TEPlayer for chest owner " + chestOwnerId);
-
                 if (!chestOwnerId.equals(player.getUniqueId())) {
                     event.getPlayer().sendMessage(ChatColor.RED + String.format(
                         "You cannot destroy someone else's chest's sign! (Chest owned by %s)",
-                        ChatColor.BOLD + chestOwner.getName() + ChatColor.RED
+                        ChatColor.BOLD + TEPlayer.getName(chestOwnerId) + ChatColor.RED
                     ));
                     event.setCancelled(true);
                 }
@@ -150,6 +142,57 @@ public class ChestShopListener implements Listener {
         }
     }
 
+    // cached shop prices are dropped whenever a chest or sign near them changes
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onShopBlockPlace(BlockPlaceEvent event) {
+        ChestShops.invalidate(event.getBlockPlaced());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onShopBlockBreak(BlockBreakEvent event) {
+        ChestShops.invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onShopSignChange(SignChangeEvent event) {
+        ChestShops.invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onShopBlockBurn(BlockBurnEvent event) {
+        ChestShops.invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onShopPistonExtend(BlockPistonExtendEvent event) {
+        // both where moved blocks were and where they end up
+        for (final Block block : event.getBlocks()) {
+            ChestShops.invalidate(block);
+            ChestShops.invalidate(block.getRelative(event.getDirection()));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onShopPistonRetract(BlockPistonRetractEvent event) {
+        for (final Block block : event.getBlocks()) {
+            ChestShops.invalidate(block);
+            ChestShops.invalidate(block.getRelative(event.getDirection()));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onShopEntityExplode(EntityExplodeEvent event) {
+        for (final Block block : event.blockList())
+            ChestShops.invalidate(block);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onShopBlockExplode(BlockExplodeEvent event) {
+        for (final Block block : event.blockList())
+            ChestShops.invalidate(block);
+    }
+
     @EventHandler
     public void onItemMoveInInventory(InventoryInteractEvent event) {
         final Location inventoryLocation = event.getInventory().getLocation();
@@ -171,18 +214,32 @@ public class ChestShopListener implements Listener {
 
         if (chestOwnerId != null
                 && !chestOwnerId.equals(player.getUniqueId())) {
-            final TEPlayer tePlayer = TEPlayer.getTEPlayer(chestOwnerId);
-            if (tePlayer == null)
-                throw new NullPointerException("Could not get TEPlayer for UUID " + chestOwnerId);
-
             player.sendMessage(ChatColor.RED + String.format(
                 "You cannot modify the inventory of someone else's chest shop! (Owned by %s)",
-                ChatColor.BOLD + tePlayer.getName() + ChatColor.RED
+                ChatColor.BOLD + TEPlayer.getName(chestOwnerId) + ChatColor.RED
             ));
             event.setCancelled(true);
         }
     }
 
+    // owners outside empires may not be cached, load them before anything is bought
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onShopOpen(InventoryOpenEvent event) {
+        final Location location = event.getInventory().getLocation();
+        if (location == null
+                || location.getWorld() == null)
+            return;
+        final UUID chestOwnerId = TEChest.getChestCoordinatesToPlayer(
+            location.getWorld().getName(),
+            location.getBlockX(),
+            location.getBlockY(),
+            location.getBlockZ()
+        );
+        if (chestOwnerId != null
+                && !chestOwnerId.equals(event.getPlayer().getUniqueId()))
+            TEPlayer.load(chestOwnerId, owner -> {});
+    }
+
     @EventHandler
     public void onInventoryClick(InventoryClickEvent event) {
         final Player player = (Player) event.getWhoClicked();
@@ -209,97 +266,29 @@ public class ChestShopListener implements Listener {
                 || chunk.getType() != ChunkType.TRADING))
             return;
 
-        // fetch/check slot price for single and double chest cases
-        final BlockState blockState = location.getBlock().getState();
-        // return if clicked block wasn't a chest
-        if (!(blockState instanceof Chest))
-            return;
-
-        final Chest chest = (Chest) blockState;
-        final Vector directionVector = ((Directional) chest.getBlockData()).getFacing().getDirection();
-        double costPerSlot;
-        if (inventory.getHolder() instanceof DoubleChest) {
-            final DoubleChest doubleChest = (DoubleChest) inventory.getHolder();
-
-            final Chest leftChest = (Chest) doubleChest.getLeftSide();
-            if (leftChest == null) {
-                player.sendMessage(ChatColor.RED + "Could not get right side of chest while trying to purchase slot, " +
-                    "please a notify a developer of this and we will tend to this shortly.");
-                return;
-            }
-            final Block leftSignBlock = leftChest.getBlock().getLocation().add(directionVector).getBlock();
-
-            final Chest rightChest = (Chest) doubleChest.getRightSide();
-            if (rightChest == null) {
-                player.sendMessage(ChatColor.RED + "Could not get right side of chest while trying to purchase slot, " +
-                    "please a notify a developer of this and we will tend to this shortly.");
-                return;
-            }
-            final Block rightSignBlock = rightChest.getBlock().getLocation().add(directionVector).getBlock();
-
-            Sign rightSign = null;
-            if (rightSignBlock.getState() instanceof Sign)
-                rightSign = (Sign) rightSignBlock.getState();
-
-            Sign leftSign = null;
-            if (leftSignBlock.getState() instanceof Sign)
-                leftSign = (Sign) leftSignBlock.getState();
-
-            Double rightSignPrice = null;
-            Double leftSignPrice = null;
-            if (rightSign != null) {
-                try {
-                    rightSignPrice = Double.parseDouble(rightSign.getLine(3));
-                } catch (Exception ignore) {}
-            }
-
-            if (leftSign != null) {
-                try {
-                    leftSignPrice = Double.parseDouble(leftSign.getLine(3));
-                } catch (Exception ignore) {}
-            }
-
-            if (rightSignPrice != null
-                    && leftSignPrice != null
-                    && !rightSignPrice.equals(leftSignPrice)) {
-                player.sendMessage(ChatColor.RED + "Double-chest cannot have two signs with different prices! Please " +
-                    "contact the shop owner.");
-                return;
-            }
-
-            if (rightSignPrice == null
-                    && leftSignPrice == null)
-                return;
-
-            // there must be one valid price
-            costPerSlot = rightSignPrice == null
-                ? leftSignPrice
-                : rightSignPrice;
-        } else if (inventory.getHolder() instanceof Chest) {
-            // add chest direction vector to location to get would-be sign location
-            // Location#add mutates location but returns original
-            final Location signLocation = chest.getLocation().add(directionVector);
-            final BlockState sign = signLocation.getBlock().getState();
-
-            if (!(sign instanceof Sign))
-                return;
-
-            try {
-                costPerSlot = Double.parseDouble(((Sign) sign).getLine(3));
-            } catch (Exception ignore) {
-                return;
-            }
-        } else {
-            return;
-        }
-
-        // fetch and check if player is owner
+        // fetch and check if player is owner before resolving price
         final UUID chestOwnerId = TEChest.getChestCoordinatesToPlayer(
             world.getName(),
             location.getBlockX(),
             location.getBlockY(),
             location.getBlockZ()
         );
+        if (player.getUniqueId().equals(chestOwnerId))
+            return;
+
+        // fetch/check slot price for single and double chest cases
+        final ChestShops.Shop shop = ChestShops.getShop(location.getBlock(), inventory.getHolder());
+        // return if clicked block wasn't a chest or chest has no price
+        if (shop == null
+                || shop.getStatus() == ChestShops.Status.NOT_A_SHOP)
+            return;
+
+        if (shop.getStatus() == ChestShops.Status.CONFLICTING_PRICES) {
+            player.sendMessage(ChatColor.RED + "Double-chest cannot have two signs with different prices! Please " +
+                "contact the shop owner.");
+            return;
+        }
+        final double costPerSlot = shop.getPrice();
 
         if (chestOwnerId == null) {
             player.sendMessage(ChatColor.RED +
@@ -309,9 +298,6 @@ public class ChestShopListener implements Listener {
             return;
         }
 
-        if (chestOwnerId.equals(player.getUniqueId()))
-            return;
-
         // cancel event to prevent non-owners from putting in items
         event.setCancelled(true);
 
@@ -320,6 +306,12 @@ public class ChestShopListener implements Listener {
         final ItemStack itemsInSlot = inventory.getItem(clickedSlotIndex);
         if (itemsInSlot == null)
             return;
+        final TEPlayer owner = TEPlayer.getTEPlayer(chestOwnerId);
+        if (owner == null) {
+            TEPlayer.load(chestOwnerId, loaded -> {});
+            player.sendMessage(ChatColor.YELLOW + "Loading the shop owner, try again in a moment");
+            return;
+        }
         final TEPlayer tePlayer = TEPlayer.getTEPlayer(player.getUniqueId());
         if (tePlayer == null) {
             player.sendMessage(ErrorUtils.YOU_DO_NOT_EXIST_IN_THE_DATABASE);
@@ -346,9 +338,6 @@ public class ChestShopListener implements Listener {
         inventory.clear(clickedSlotIndex);
         player.getInventory().addItem(itemsInSlot);
         tePlayer.takeCoins(costPerSlot);
-        final TEPlayer owner = TEPlayer.getTEPlayer(chestOwnerId);
-        if (owner == null)
-            throw new NullPointerException("Could not get owner of chest shop (" + chestOwnerId + ")");
         owner.giveCoins(costPerSlot);
 
         // send success message to player
@@ -0,0 +1,58 @@
+package dev.sucrose.tinyempires.listeners;
+
+import dev.sucrose.tinyempires.models.WarEngine;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.*;
+
+/**
+ * Keeps the chunk occupancy index of the war engine up to date
+ */
+public class ChunkOccupancy implements Listener {
+
+    /**
+     * Indexes players already online when the plugin is enabled, e.g. across a reload
+     */
+    public static void seedOnlinePlayers() {
+        for (final Player player : Bukkit.getOnlinePlayers())
+            WarEngine.updateOccupant(player.getUniqueId(), player.getLocation());
+    }
+
+    /**
+     * Called by {@link MovementDispatcher} before the other chunk consumers so a contest started on the move already
+     * counts the player, moves cancelled by earlier stages never get here
+     */
+    public static void onChunkChanged(PlayerMoveEvent event, MovementDispatcher.Transition transition) {
+        final Location to = event.getTo();
+        if (to != null)
+            WarEngine.updateOccupant(event.getPlayer().getUniqueId(), to);
+    }
+
+    // teleports are not passed to move handlers
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(PlayerTeleportEvent event) {
+        final Location to = event.getTo();
+        if (to != null)
+            WarEngine.updateOccupant(event.getPlayer().getUniqueId(), to);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerRespawn(PlayerRespawnEvent event) {
+        WarEngine.updateOccupant(event.getPlayer().getUniqueId(), event.getRespawnLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        WarEngine.updateOccupant(event.getPlayer().getUniqueId(), event.getPlayer().getLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        WarEngine.removeOccupant(event.getPlayer().getUniqueId());
+    }
+
+}
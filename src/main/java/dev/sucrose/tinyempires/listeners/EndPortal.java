@@ -1,8 +1,10 @@
 package dev.sucrose.tinyempires.listeners;
 
+import dev.sucrose.tinyempires.models.RegionFlag;
 import dev.sucrose.tinyempires.models.TEPlayer;
 import dev.sucrose.tinyempires.utils.BoundUtils;
 import dev.sucrose.tinyempires.utils.ErrorUtils;
+import dev.sucrose.tinyempires.utils.SpecialTerritories;
 import org.bukkit.*;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
@@ -57,7 +59,8 @@ public class EndPortal implements Listener {
         Location loc = e.getLocation();
         // prevent entity spawning in nether castle
         if (loc.getWorld() != null
-                && BoundUtils.inBoundsOfPortalCastle(loc.getWorld().getName(), loc.getBlockX(), loc.getBlockZ())
+                && SpecialTerritories.hasFlag(loc.getWorld().getName(), loc.getBlockX(), loc.getBlockZ(),
+                    RegionFlag.NO_SPAWN)
                 && e.getEntityType() != EntityType.ENDER_SIGNAL) {
             System.out.println("Cancelling entity spawn");
             e.setCancelled(true);
@@ -65,32 +68,36 @@ public class EndPortal implements Listener {
     }
 
     public static final int PIT_TOP_Y = 41;
-    @EventHandler
-    public static void onPlayerMove(PlayerMoveEvent e) {
-        final Location loc = e.getTo();
+    /**
+     * "Jumped in" nether castle message, called by {@link MovementDispatcher} on entering the pit
+     */
+    public static void onPitEntered(PlayerMoveEvent e) {
         final Player player = e.getPlayer();
         final TEPlayer tePlayer = TEPlayer.getTEPlayer(player.getUniqueId());
-        // check if player is near nether castle
-        if (loc != null
-                && loc.getWorld() != null
-                && BoundUtils.inBoundsOfPit(loc.getWorld().getName(), loc.getBlockX(), loc.getBlockZ())) {
-            if (tePlayer == null) {
-                player.sendMessage(ErrorUtils.YOU_DO_NOT_EXIST_IN_THE_DATABASE);
-                return;
-            }
-
-            // "jumped in" nether castle message
-            if (!tePlayer.getJumpedInAdvancement()) {
-                player.sendMessage(ChatColor.GOLD + "" + ChatColor.ITALIC + "You feel an urge to jump in...");
-                tePlayer.setJumpInAdvancement(true);
-            }
+        if (tePlayer == null) {
+            player.sendMessage(ErrorUtils.YOU_DO_NOT_EXIST_IN_THE_DATABASE);
+            return;
+        }
 
-            // nether castle end portal pit
-            if (loc.getY() < PIT_TOP_Y)
-                e.getPlayer().teleport(theEnd.getSpawnLocation());
+        if (!tePlayer.getJumpedInAdvancement()) {
+            player.sendMessage(ChatColor.GOLD + "" + ChatColor.ITALIC + "You feel an urge to jump in...");
+            tePlayer.setJumpInAdvancement(true);
         }
     }
 
+    /**
+     * Nether castle end portal pit, called by {@link MovementDispatcher}
+     */
+    public static void onBlockChanged(PlayerMoveEvent e) {
+        final Location loc = e.getTo();
+        // height is checked first as it rules out almost every move
+        if (loc != null
+                && loc.getY() < PIT_TOP_Y
+                && loc.getWorld() != null
+                && BoundUtils.inBoundsOfPit(loc.getWorld().getName(), loc.getBlockX(), loc.getBlockZ()))
+            e.getPlayer().teleport(theEnd.getSpawnLocation());
+    }
+
     @EventHandler
     public void onBlockBreak(BlockBreakEvent event) {
         final Player player = event.getPlayer();
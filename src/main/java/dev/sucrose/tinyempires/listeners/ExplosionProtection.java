@@ -0,0 +1,227 @@
+package dev.sucrose.tinyempires.listeners;
+
+import dev.sucrose.tinyempires.TinyEmpires;
+import dev.sucrose.tinyempires.models.AccessMatrix;
+import dev.sucrose.tinyempires.models.Empire;
+import dev.sucrose.tinyempires.models.RegionFlag;
+import dev.sucrose.tinyempires.models.TEChunk;
+import dev.sucrose.tinyempires.utils.ChunkMap;
+import dev.sucrose.tinyempires.utils.LongHashMap;
+import dev.sucrose.tinyempires.utils.SpecialTerritories;
+import org.bson.types.ObjectId;
+import org.bukkit.Location;
+import org.bukkit.NamespacedKey;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.entity.EntityDamageByEntityEvent;
+import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.entity.EntitySpawnEvent;
+import org.bukkit.event.entity.ExplosionPrimeEvent;
+import org.bukkit.event.hanging.HangingBreakByEntityEvent;
+import org.bukkit.event.hanging.HangingBreakEvent;
+import org.bukkit.persistence.PersistentDataType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Removes the blocks an explosion may not destroy from its block list instead of cancelling it outright, so damage
+ * stops at territory borders. Blocks in special territory are always protected, TNT destroys blocks wherever the empire
+ * it was primed in may use explosions and creepers only destroy wilderness. Protection is decided once per chunk.
+ * Entities (players, item frames, paintings, armor stands) in protected chunks aren't hurt either, and explosions
+ * starting in no-build special territory are cancelled outright as nothing there may be damaged
+ */
+public class ExplosionProtection implements Listener {
+
+    // empire whose territory the TNT was primed in, absent if wilderness
+    private static final NamespacedKey IGNITER_EMPIRE = new NamespacedKey(TinyEmpires.getInstance(), "igniter-empire");
+
+    // per-chunk decisions
+    private static final int DESTROYABLE = 0;
+    private static final int PROTECTED = 1;
+    // special territory only covers part of the chunk, check each block
+    private static final int CHECK_BLOCKS = 2;
+
+    private static Empire getChunkEmpire(String world, int chunkX, int chunkZ) {
+        final TEChunk chunk = TEChunk.getChunk(world, chunkX, chunkZ);
+        return chunk == null ? null : chunk.getEmpire();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onTNTPrime(EntitySpawnEvent event) {
+        if (event.getEntityType() != EntityType.PRIMED_TNT)
+            return;
+
+        final Location location = event.getLocation();
+        if (location.getWorld() == null)
+            return;
+        final Empire empire = getChunkEmpire(
+            location.getWorld().getName(),
+            location.getBlockX() >> 4,
+            location.getBlockZ() >> 4
+        );
+        if (empire != null)
+            event.getEntity().getPersistentDataContainer().set(
+                IGNITER_EMPIRE,
+                PersistentDataType.STRING,
+                empire.getId().toHexString()
+            );
+    }
+
+    private static Empire getIgniterEmpire(Entity entity) {
+        final String id = entity.getPersistentDataContainer().get(IGNITER_EMPIRE, PersistentDataType.STRING);
+        return id == null || !ObjectId.isValid(id) ? null : Empire.getEmpire(new ObjectId(id));
+    }
+
+    private static boolean isNoBuildChunk(Location location) {
+        return location.getWorld() != null
+            && SpecialTerritories.chunkHasFlag(
+                location.getWorld().getName(),
+                location.getBlockX() >> 4,
+                location.getBlockZ() >> 4,
+                RegionFlag.NO_BUILD
+            );
+    }
+
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onExplosionPrime(ExplosionPrimeEvent event) {
+        // cancelled before anything, entities included, is damaged
+        if (isNoBuildChunk(event.getEntity().getLocation()))
+            event.setCancelled(true);
+    }
+
+    /**
+     * @param location Location of the entity hit
+     * @param source Exploding entity, null for block explosions
+     */
+    private static boolean isEntityProtected(Location location, Entity source) {
+        if (location.getWorld() == null)
+            return false;
+        final String world = location.getWorld().getName();
+        if (SpecialTerritories.hasFlag(world, location.getBlockX(), location.getBlockZ(), RegionFlag.NO_BUILD))
+            return true;
+        // as for blocks, only TNT and creepers respect empire territory
+        if (source == null
+                || (source.getType() != EntityType.PRIMED_TNT && source.getType() != EntityType.CREEPER))
+            return false;
+        return decide(
+            world,
+            location.getBlockX() >> 4,
+            location.getBlockZ() >> 4,
+            true,
+            source.getType() == EntityType.PRIMED_TNT ? getIgniterEmpire(source) : null
+        ) == PROTECTED;
+    }
+
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onExplosionDamage(EntityDamageEvent event) {
+        if (event.getCause() != EntityDamageEvent.DamageCause.ENTITY_EXPLOSION
+                && event.getCause() != EntityDamageEvent.DamageCause.BLOCK_EXPLOSION)
+            return;
+        final Entity source = event instanceof EntityDamageByEntityEvent
+            ? ((EntityDamageByEntityEvent) event).getDamager()
+            : null;
+        if (isEntityProtected(event.getEntity().getLocation(), source))
+            event.setCancelled(true);
+    }
+
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onExplosionHangingBreak(HangingBreakEvent event) {
+        if (event.getCause() != HangingBreakEvent.RemoveCause.EXPLOSION)
+            return;
+        final Entity source = event instanceof HangingBreakByEntityEvent
+            ? ((HangingBreakByEntityEvent) event).getRemover()
+            : null;
+        if (isEntityProtected(event.getEntity().getLocation(), source))
+            event.setCancelled(true);
+    }
+
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent event) {
+        final EntityType type = event.getEntityType();
+        // other explosions (fireballs, crystals, withers) only respect special territory as before
+        final boolean checkTerritory = type == EntityType.PRIMED_TNT || type == EntityType.CREEPER;
+        filterBlocks(
+            event.blockList(),
+            checkTerritory,
+            type == EntityType.PRIMED_TNT ? getIgniterEmpire(event.getEntity()) : null
+        );
+    }
+
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent event) {
+        // beds and respawn anchors act for the territory they're in
+        final Block block = event.getBlock();
+        if (isNoBuildChunk(block.getLocation())) {
+            event.setCancelled(true);
+            return;
+        }
+        filterBlocks(
+            event.blockList(),
+            true,
+            getChunkEmpire(block.getWorld().getName(), block.getX() >> 4, block.getZ() >> 4)
+        );
+    }
+
+    /**
+     * Removes protected blocks, all blocks of a chunk share one decision unless special territory only partly
+     * covers it
+     * @param checkTerritory Whether empire territory is protected from this explosion
+     * @param actor Empire the explosion acts for, null if none
+     */
+    private static void filterBlocks(List<Block> blocks, boolean checkTerritory, Empire actor) {
+        if (blocks.isEmpty())
+            return;
+        final String world = blocks.get(0).getWorld().getName();
+        final LongHashMap<Integer> decisions = new LongHashMap<>();
+        // rebuilt rather than removed from in place, which is quadratic for large cannons
+        final List<Block> destroyed = new ArrayList<>(blocks.size());
+        long lastChunk = 0;
+        int lastDecision = -1;
+        for (final Block block : blocks) {
+            final int chunkX = block.getX() >> 4;
+            final int chunkZ = block.getZ() >> 4;
+            final long chunk = ChunkMap.pack(chunkX, chunkZ);
+            // neighbouring blocks in the list are mostly in the same chunk
+            if (lastDecision == -1 || chunk != lastChunk) {
+                Integer decision = decisions.get(chunk);
+                if (decision == null) {
+                    decision = decide(world, chunkX, chunkZ, checkTerritory, actor);
+                    decisions.put(chunk, decision);
+                }
+                lastChunk = chunk;
+                lastDecision = decision;
+            }
+
+            if (lastDecision == DESTROYABLE
+                    || (lastDecision == CHECK_BLOCKS
+                        && !SpecialTerritories.hasFlag(world, block.getX(), block.getZ(), RegionFlag.NO_BUILD)))
+                destroyed.add(block);
+        }
+
+        if (destroyed.size() != blocks.size()) {
+            blocks.clear();
+            blocks.addAll(destroyed);
+        }
+    }
+
+    private static int decide(String world, int chunkX, int chunkZ, boolean checkTerritory, Empire actor) {
+        if (checkTerritory
+                && !AccessMatrix.canAccess(
+                    actor,
+                    getChunkEmpire(world, chunkX, chunkZ),
+                    AccessMatrix.Access.EXPLOSIONS
+                ))
+            return PROTECTED;
+        return SpecialTerritories.chunkHasFlag(world, chunkX, chunkZ, RegionFlag.NO_BUILD)
+            ? CHECK_BLOCKS
+            : DESTROYABLE;
+    }
+
+}
@@ -0,0 +1,429 @@
+package dev.sucrose.tinyempires.listeners;
+
+import dev.sucrose.tinyempires.TinyEmpires;
+import dev.sucrose.tinyempires.models.BoundsPlane;
+import dev.sucrose.tinyempires.models.TEChunk;
+import dev.sucrose.tinyempires.utils.SpecialTerritories;
+import org.bson.types.ObjectId;
+import org.bukkit.ChatColor;
+import org.bukkit.Location;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ * The only {@link PlayerMoveEvent} listener. Block, chunk, region and border transitions are computed once per move
+ * against the last position each player was dispatched at and passed to the consumers registered for them, head
+ * rotation is dropped before any lookup. Consumers are called in stage order (position, block, border, plane, region,
+ * chunk) then registration order, and dispatching stops once one cancels the move or teleports the player. Main
+ * thread only
+ */
+public class MovementDispatcher implements Listener {
+
+    @FunctionalInterface
+    public interface PositionChanged {
+        void onPositionChanged(PlayerMoveEvent event);
+    }
+
+    @FunctionalInterface
+    public interface BlockChanged {
+        void onBlockChanged(PlayerMoveEvent event);
+    }
+
+    @FunctionalInterface
+    public interface BorderCrossed {
+        void onBorderCrossed(PlayerMoveEvent event, Border border);
+    }
+
+    @FunctionalInterface
+    public interface PlaneEntered {
+        void onPlaneEntered(PlayerMoveEvent event);
+    }
+
+    @FunctionalInterface
+    public interface RegionEntered {
+        void onRegionEntered(PlayerMoveEvent event);
+    }
+
+    @FunctionalInterface
+    public interface ChunkChanged {
+        void onChunkChanged(PlayerMoveEvent event, Transition transition);
+    }
+
+    /**
+     * Edge of the overworld border a player walked into the margin of
+     */
+    public enum Border {
+        NORTH,
+        SOUTH,
+        EAST,
+        WEST
+    }
+
+    private enum Stage {
+        POSITION,
+        BLOCK,
+        BORDER,
+        PLANE,
+        REGION,
+        CHUNK
+    }
+
+    /**
+     * Chunk a player moved into, or whose owner changed since they last moved
+     */
+    public static class Transition {
+
+        private String world;
+        private int blockX;
+        private int blockY;
+        private int blockZ;
+        private int chunkX;
+        private int chunkZ;
+        private TEChunk fromChunk;
+        private TEChunk toChunk;
+        private ObjectId fromEmpireId;
+        private ObjectId toEmpireId;
+        private Border border;
+
+        public String getWorld() {
+            return world;
+        }
+
+        public int getChunkX() {
+            return chunkX;
+        }
+
+        public int getChunkZ() {
+            return chunkZ;
+        }
+
+        /**
+         * @return Chunk the player was last in, null if wilderness or the player just joined
+         */
+        public TEChunk getFromChunk() {
+            return fromChunk;
+        }
+
+        /**
+         * @return Chunk the player is moving into, null if wilderness
+         */
+        public TEChunk getToChunk() {
+            return toChunk;
+        }
+
+        /**
+         * @return Whether the player moved between the territory of different empires or wilderness
+         */
+        public boolean isOwnerChanged() {
+            return !Objects.equals(fromEmpireId, toEmpireId);
+        }
+
+    }
+
+    // last position dispatched for a player
+    private static class State {
+
+        private String world;
+        private int blockX;
+        private int blockY;
+        private int blockZ;
+        // unknown until the first dispatch after joining so the first move always changes chunk
+        private boolean chunkKnown = false;
+        private int chunkX;
+        private int chunkZ;
+        private TEChunk chunk;
+        private ObjectId empireId;
+
+    }
+
+    private static class Registration {
+
+        private final String name;
+        private final Stage stage;
+        // null to always fire in the stage
+        private final Predicate<Transition> condition;
+        private final BiConsumer<PlayerMoveEvent, Transition> callback;
+        private long calls = 0;
+        private long totalNanos = 0;
+        private long maxNanos = 0;
+
+        private Registration(String name,
+                             Stage stage,
+                             Predicate<Transition> condition,
+                             BiConsumer<PlayerMoveEvent, Transition> callback) {
+            this.name = name;
+            this.stage = stage;
+            this.condition = condition;
+            this.callback = callback;
+        }
+
+    }
+
+    private static final List<List<Registration>> stages = new ArrayList<>();
+    private static final Map<UUID, State> states = new HashMap<>();
+
+    static {
+        for (int i = 0; i < Stage.values().length; i++)
+            stages.add(new ArrayList<>());
+    }
+
+    // player being dispatched and whether they were teleported by a consumer
+    private static UUID dispatching;
+    private static boolean interrupted;
+
+    private static long moves = 0;
+    private static long rotations = 0;
+    private static long blockChanges = 0;
+    private static long chunkChanges = 0;
+
+    private static void register(String name,
+                                 Stage stage,
+                                 Predicate<Transition> condition,
+                                 BiConsumer<PlayerMoveEvent, Transition> callback) {
+        stages.get(stage.ordinal()).add(new Registration(name, stage, condition, callback));
+    }
+
+    /**
+     * Called for any change in position, including within a block
+     * @param name Name shown in /stats
+     */
+    public static void onPositionChanged(String name, PositionChanged consumer) {
+        register(name, Stage.POSITION, null, (event, transition) -> consumer.onPositionChanged(event));
+    }
+
+    public static void onBlockChanged(String name, BlockChanged consumer) {
+        register(name, Stage.BLOCK, null, (event, transition) -> consumer.onBlockChanged(event));
+    }
+
+    /**
+     * Called on every block change inside the margin of the overworld border
+     */
+    public static void onBorderCrossed(String name, BorderCrossed consumer) {
+        register(name, Stage.BORDER, null, (event, transition) -> consumer.onBorderCrossed(event, transition.border));
+    }
+
+    /**
+     * Called when a player moves into a block of the plane from outside it, in any world
+     */
+    public static void onPlaneEntered(String name, BoundsPlane plane, PlaneEntered consumer) {
+        register(
+            name,
+            Stage.PLANE,
+            transition -> plane.isInPlane(transition.blockX, transition.blockY, transition.blockZ),
+            (event, transition) -> consumer.onPlaneEntered(event)
+        );
+    }
+
+    /**
+     * Called when a player moves into the special territory region from outside it
+     * @param regionId Id of the region in config
+     */
+    public static void onRegionEntered(String name, String regionId, RegionEntered consumer) {
+        register(
+            name,
+            Stage.REGION,
+            transition -> SpecialTerritories.isInRegion(regionId, transition.world, transition.blockX,
+                transition.blockZ),
+            (event, transition) -> consumer.onRegionEntered(event)
+        );
+    }
+
+    /**
+     * Called when a player moves into another chunk or the owner of their chunk changed since they last moved
+     */
+    public static void onChunkChanged(String name, ChunkChanged consumer) {
+        register(name, Stage.CHUNK, null, consumer::onChunkChanged);
+    }
+
+    @EventHandler(ignoreCancelled = true)
+    public void onPlayerMove(PlayerMoveEvent event) {
+        moves++;
+        final Location from = event.getFrom();
+        final Location to = event.getTo();
+        if (to == null
+                || to.getWorld() == null)
+            return;
+        if (from.getX() == to.getX()
+                && from.getY() == to.getY()
+                && from.getZ() == to.getZ()
+                && from.getWorld() == to.getWorld()) {
+            rotations++;
+            return;
+        }
+
+        final UUID uuid = event.getPlayer().getUniqueId();
+        State state = states.get(uuid);
+        if (state == null) {
+            // first move since joining, regions and planes are entered relative to where the player spawned
+            state = new State();
+            state.world = from.getWorld() == null ? null : from.getWorld().getName();
+            state.blockX = from.getBlockX();
+            state.blockY = from.getBlockY();
+            state.blockZ = from.getBlockZ();
+            states.put(uuid, state);
+        }
+
+        final Transition transition = new Transition();
+        transition.world = to.getWorld().getName();
+        transition.blockX = to.getBlockX();
+        transition.blockY = to.getBlockY();
+        transition.blockZ = to.getBlockZ();
+        final boolean blockChanged = !transition.world.equals(state.world)
+            || transition.blockX != state.blockX
+            || transition.blockY != state.blockY
+            || transition.blockZ != state.blockZ;
+
+        dispatching = uuid;
+        interrupted = false;
+        try {
+            if (!dispatch(Stage.POSITION, event, transition, null)
+                    || !blockChanged)
+                return;
+
+            blockChanges++;
+            transition.chunkX = transition.blockX >> 4;
+            transition.chunkZ = transition.blockZ >> 4;
+            // looked up on every block change so chunks claimed or lost under a player are noticed
+            transition.toChunk = TEChunk.getChunk(transition.world, transition.chunkX, transition.chunkZ);
+            transition.toEmpireId = transition.toChunk == null ? null : transition.toChunk.getEmpire().getId();
+            transition.fromChunk = state.chunk;
+            transition.fromEmpireId = state.empireId;
+            final boolean chunkChanged = !state.chunkKnown
+                || !transition.world.equals(state.world)
+                || transition.chunkX != state.chunkX
+                || transition.chunkZ != state.chunkZ
+                || transition.isOwnerChanged();
+            transition.border = transition.world.equals("world") ? getBorder(to) : null;
+
+            if (!dispatch(Stage.BLOCK, event, transition, null)
+                    || (transition.border != null && !dispatch(Stage.BORDER, event, transition, null))
+                    || !dispatch(Stage.PLANE, event, transition, state)
+                    || !dispatch(Stage.REGION, event, transition, state))
+                return;
+            if (chunkChanged) {
+                chunkChanges++;
+                if (!dispatch(Stage.CHUNK, event, transition, null))
+                    return;
+            }
+
+            // only recorded once every consumer has seen the move so cancelled moves are re-dispatched
+            state.world = transition.world;
+            state.blockX = transition.blockX;
+            state.blockY = transition.blockY;
+            state.blockZ = transition.blockZ;
+            state.chunkKnown = true;
+            state.chunkX = transition.chunkX;
+            state.chunkZ = transition.chunkZ;
+            state.chunk = transition.toChunk;
+            state.empireId = transition.toEmpireId;
+        } finally {
+            dispatching = null;
+        }
+    }
+
+    /**
+     * @param state Last dispatched position of the player, conditions are only fired if it didn't match it
+     * @return False if a consumer cancelled the move or teleported the player
+     */
+    private static boolean dispatch(Stage stage, PlayerMoveEvent event, Transition transition, State state) {
+        for (final Registration registration : stages.get(stage.ordinal())) {
+            if (registration.condition != null) {
+                if (!registration.condition.test(transition)
+                        || (state != null && wasIn(registration.condition, state)))
+                    continue;
+            }
+
+            final long start = System.nanoTime();
+            try {
+                registration.callback.accept(event, transition);
+            } catch (RuntimeException err) {
+                // one failing consumer shouldn't stop the others from seeing moves
+                System.out.println(ChatColor.RED + String.format(
+                    "Movement consumer '%s' failed for %s",
+                    registration.name,
+                    event.getPlayer().getName()
+                ));
+                err.printStackTrace();
+            }
+            final long elapsed = System.nanoTime() - start;
+            registration.calls++;
+            registration.totalNanos += elapsed;
+            registration.maxNanos = Math.max(registration.maxNanos, elapsed);
+
+            if (event.isCancelled()
+                    || interrupted)
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean wasIn(Predicate<Transition> condition, State state) {
+        if (state.world == null)
+            return false;
+        final Transition last = new Transition();
+        last.world = state.world;
+        last.blockX = state.blockX;
+        last.blockY = state.blockY;
+        last.blockZ = state.blockZ;
+        return condition.test(last);
+    }
+
+    private static Border getBorder(Location location) {
+        final double x = location.getX();
+        final double z = location.getZ();
+        if (TinyEmpires.WORLD_BORDER_BOTTOM_Z - TinyEmpires.MARGIN <= z)
+            return Border.SOUTH;
+        if (TinyEmpires.WORLD_BORDER_TOP_Z + TinyEmpires.MARGIN >= z)
+            return Border.NORTH;
+        if (TinyEmpires.WORLD_BORDER_LEFT_X + TinyEmpires.MARGIN >= x)
+            return Border.WEST;
+        if (TinyEmpires.WORLD_BORDER_RIGHT_X - TinyEmpires.MARGIN <= x)
+            return Border.EAST;
+        return null;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(PlayerTeleportEvent event) {
+        // the rest of the move is stale once a consumer moves the player elsewhere
+        if (event.getPlayer().getUniqueId().equals(dispatching))
+            interrupted = true;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        states.remove(event.getPlayer().getUniqueId());
+    }
+
+    public static List<String> getStats() {
+        final List<String> stats = new ArrayList<>();
+        stats.add(String.format(
+            "Moves: %d, %d rotation only, %d block changes, %d chunk changes",
+            moves,
+            rotations,
+            blockChanges,
+            chunkChanges
+        ));
+        for (final List<Registration> registrations : stages) {
+            for (final Registration registration : registrations) {
+                stats.add(String.format(
+                    "%s (%s): %d calls, %.1fus average, %.2fms max",
+                    registration.name,
+                    registration.stage.name().toLowerCase(),
+                    registration.calls,
+                    registration.calls == 0 ? 0 : registration.totalNanos / 1e3 / registration.calls,
+                    registration.maxNanos / 1e6
+                ));
+            }
+        }
+        return stats;
+    }
+
+}
@@ -63,7 +63,7 @@ public class PlayerChat implements Listener {
             player.getDisplayName(),
             CensorUtils.censorCurses(StringUtils.sanitizeDiscordText(event.getMessage()))
         );
-        DiscordBot.sendMessageInBridgeChat(player.isOp() ? "**" + message + "**" : message);
+        DiscordBot.sendChatMessageInBridgeChat(player.isOp() ? "**" + message + "**" : message);
     }
 
 }
@@ -2,6 +2,7 @@ package dev.sucrose.tinyempires.listeners;
 
 import dev.sucrose.tinyempires.TinyEmpires;
 import dev.sucrose.tinyempires.commands.godsuite.Invisible;
+import dev.sucrose.tinyempires.models.Empire;
 import dev.sucrose.tinyempires.models.TEPlayer;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
@@ -34,10 +35,15 @@ public class PlayerJoin implements Listener {
         player.sendMessage(ChatColor.GREEN + "Welcome to the Pixel Empires server!");
         if (tePlayer == null) {
             final TEPlayer p = TEPlayer.createPlayer(player.getUniqueId(), player.getName());
+            p.setOnline(true);
             p.updatePlayerScoreboard();
             return;
         }
+        tePlayer.setOnline(true);
         tePlayer.updatePlayerScoreboard();
+        final Empire empire = tePlayer.getEmpire();
+        if (empire != null)
+            empire.addOnlineMember(player);
 
         // invisible players
         for (final UUID uuid : Invisible.getInvisiblePlayers()) {
@@ -1,6 +1,8 @@
 package dev.sucrose.tinyempires.listeners;
 
 import dev.sucrose.tinyempires.commands.empire.options.AutoClaimEmpireChunk;
+import dev.sucrose.tinyempires.models.TEPlayer;
+import dev.sucrose.tinyempires.utils.PlayerSidebar;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
@@ -17,6 +19,14 @@ public class PlayerLeave implements Listener {
 
         if (AutoClaimEmpireChunk.isAutoclaiming(uuid))
             AutoClaimEmpireChunk.removeAutoclaimer(uuid);
+        PlayerSidebar.remove(uuid);
+        final TEPlayer tePlayer = TEPlayer.getTEPlayer(uuid);
+        if (tePlayer == null)
+            return;
+        if (tePlayer.getEmpire() != null)
+            tePlayer.getEmpire().removeOnlineMember(uuid);
+        // non-members move to the offline player cache
+        tePlayer.setOnline(false);
     }
 
 }
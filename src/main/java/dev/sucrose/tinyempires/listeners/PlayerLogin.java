@@ -1,14 +1,54 @@
 package dev.sucrose.tinyempires.listeners;
 
+import com.mongodb.MongoException;
+import dev.sucrose.tinyempires.models.TEPlayer;
+import dev.sucrose.tinyempires.utils.CacheLoader;
+import org.bukkit.ChatColor;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerLoginEvent;
 
-//public class PlayerLogin implements Listener {
-//
-//    @EventHandler
-//    public static void onPlayerLogin(PlayerLoginEvent event) {
-//        event.getAddress()
-//    }
-//
-//}
+public class PlayerLogin implements Listener {
+
+    // off the main thread, so players outside empires are cached by the time they join
+    @EventHandler(priority = EventPriority.HIGHEST)
+    public void onAsyncPlayerPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED)
+            return;
+        try {
+            TEPlayer.prefetch(event.getUniqueId());
+        } catch (MongoException err) {
+            // joining without the document would create a new player over theirs
+            err.printStackTrace();
+            event.disallow(
+                AsyncPlayerPreLoginEvent.Result.KICK_OTHER,
+                ChatColor.YELLOW + "Could not load your player data, try again in a few seconds"
+            );
+        }
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerLogin(PlayerLoginEvent event) {
+        // keep players out until empires, players and chunks are cached
+        if (!CacheLoader.isReady())
+            event.disallow(
+                PlayerLoginEvent.Result.KICK_OTHER,
+                ChatColor.YELLOW + "The server is still starting up, try again in a few seconds"
+            );
+        else if (CacheLoader.isLoading())
+            // joining mid-reload would be wiped from the player cache when it's rebuilt
+            event.disallow(
+                PlayerLoginEvent.Result.KICK_OTHER,
+                ChatColor.YELLOW + "The server is reloading its caches, try again in a few seconds"
+            );
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLoginResult(PlayerLoginEvent event) {
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED)
+            TEPlayer.discardPrefetched(event.getPlayer().getUniqueId());
+    }
+
+}
@@ -1,54 +1,26 @@
 package dev.sucrose.tinyempires.listeners;
 
-import dev.sucrose.tinyempires.TinyEmpires;
 import dev.sucrose.tinyempires.commands.empire.options.AutoClaimEmpireChunk;
 import dev.sucrose.tinyempires.models.*;
 import dev.sucrose.tinyempires.utils.BoundUtils;
 import dev.sucrose.tinyempires.utils.ErrorUtils;
 import dev.sucrose.tinyempires.utils.StringUtils;
-import org.bson.types.ObjectId;
-import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
-import org.bukkit.Chunk;
 import org.bukkit.entity.Player;
-import org.bukkit.event.EventHandler;
-import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerMoveEvent;
 
-import java.util.*;
+import java.util.UUID;
 
-public class PlayerMove implements Listener {
+/**
+ * Titles, autoclaiming and war contesting when a player moves between chunks, called by {@link MovementDispatcher}
+ */
+public class PlayerMove {
 
-    private static final Map<UUID, LastChunkEntry> playerToLastChunk = new HashMap<>();
-    private static final Map<String, Integer> conquerTaskIds = new HashMap<>();
-    private static final Map<String, WarClaimChunkTask> conquerTasks = new HashMap<>();
-
-    @EventHandler
-    public void onPlayerMove(PlayerMoveEvent event) {
+    public static void onChunkChanged(PlayerMoveEvent event, MovementDispatcher.Transition transition) {
         final Player player = event.getPlayer();
         final UUID uuid = player.getUniqueId();
-        final Chunk gameChunk = player.getLocation().getChunk();
-        final TEChunk currentChunk = TEChunk.getChunk(gameChunk);
-        final LastChunkEntry lastChunkEntry = playerToLastChunk.get(uuid);
-
-        final ObjectId lastChunkEmpireId =
-            lastChunkEntry == null
-                ? null
-                : lastChunkEntry.getChunk() == null
-                ? null
-                : lastChunkEntry.getChunk().getEmpire().getId();
-        final ObjectId currentChunkEmpireId =
-            currentChunk == null
-                ? null
-                : currentChunk.getEmpire().getId();
-        final boolean empireIdsEqual = Objects.equals(lastChunkEmpireId, currentChunkEmpireId);
-        // return if last and current chunks are equal
-        if (lastChunkEntry != null
-                && lastChunkEntry.getWorld().equals(gameChunk.getWorld().getName())
-                && lastChunkEntry.getX() == gameChunk.getX()
-                && lastChunkEntry.getZ() == gameChunk.getZ()
-                && empireIdsEqual)
-            return;
+        final TEChunk currentChunk = transition.getToChunk();
+        final TEChunk lastChunk = transition.getFromChunk();
 
         final TEPlayer tePlayer = TEPlayer.getTEPlayer(uuid);
         if (tePlayer == null)
@@ -65,12 +37,16 @@ public class PlayerMove implements Listener {
                         TEChunk.CHUNK_COST,
                         tePlayer.getEmpire().getReserve()
                     ));
-                } else if (!BoundUtils.isChunkInBoundsOfSpecialTerritory(gameChunk)) {
+                } else if (!BoundUtils.isChunkInBoundsOfSpecialTerritory(
+                        transition.getWorld(),
+                        transition.getChunkX(),
+                        transition.getChunkZ())) {
+                    // the title for the claimed chunk is shown on the next move as its owner changed
                     AutoClaimEmpireChunk.claimChunkForEmpire(
                         player.getName(),
-                        gameChunk.getWorld().getName(),
-                        gameChunk.getX(),
-                        gameChunk.getZ(),
+                        transition.getWorld(),
+                        transition.getChunkX(),
+                        transition.getChunkZ(),
                         tePlayer.getEmpire()
                     );
                     return;
@@ -78,6 +54,22 @@ public class PlayerMove implements Listener {
             }
         }
 
+        // shown before war checks, which return early
+        if (transition.isOwnerChanged())
+            player.sendTitle(
+                currentChunk == null
+                    ? ChatColor.BOLD
+                        + "Wilderness"
+                    : ""
+                        + currentChunk.getEmpire().getChatColor()
+                        + ChatColor.BOLD
+                        + currentChunk.getEmpire().getName(),
+                "",
+                10,
+                70,
+                20
+            );
+
         // automatic war claiming if in war and war has started
         final Empire empire = tePlayer.getEmpire();
         if (empire != null
@@ -87,23 +79,22 @@ public class PlayerMove implements Listener {
             currentChunk.getEmpire().getId())) {
             final Empire enemy = empire.getAtWarWith();
             // send leaving message
-//            if (lastChunkEntry != null
-//                    && lastChunkEntry.getChunk() != null
-//                    && conquerTaskIds.containsKey(lastChunkEntry.getChunk().toString())) {
+//            if (lastChunk != null
+//                    && WarEngine.isContested(lastChunk)) {
 //                player.sendMessage(ChatColor.DARK_RED + String.format(
 //                    "Stopped contesting %s chunk at %d, %d in %s",
 //                    "" + enemy.getChatColor() + ChatColor.BOLD + enemy.getName() + ChatColor.DARK_RED,
-//                    lastChunkEntry.getChunk().getWorldX(),
-//                    lastChunkEntry.getChunk().getWorldZ(),
-//                    StringUtils.worldDirToName(gameChunk.getWorld().getName())
+//                    lastChunk.getWorldX(),
+//                    lastChunk.getWorldZ(),
+//                    StringUtils.worldDirToName(lastChunk.getWorld())
 //                ));
 //            }
 
-            if (!conquerTaskIds.containsKey(currentChunk.toString())) {
+            if (!WarEngine.isContested(currentChunk)) {
                 // can't conquer unless on perimeter of defender territory
                 if (currentChunk.isSurroundedByOppositeEmpireChunks()) {
-                    if (lastChunkEntry != null
-                            && lastChunkEntry.getChunk().isSurroundedByOppositeEmpireChunks())
+                    if (lastChunk != null
+                            && lastChunk.isSurroundedByOppositeEmpireChunks())
                         player.sendMessage(ChatColor.YELLOW + "You cannot contest chunks surrounded by enemy" +
                             " territory");
                     return;
@@ -125,51 +116,9 @@ public class PlayerMove implements Listener {
                     StringUtils.worldDirToName(currentChunk.getWorld())
                 ));
 
-                final WarClaimChunkTask task = new WarClaimChunkTask(currentChunk, empire, enemy);
-                conquerTaskIds.put(
-                    currentChunk.toString(),
-                    Bukkit.getScheduler().scheduleSyncRepeatingTask(
-                        TinyEmpires.getInstance(),
-                        task,
-                        0,
-                        20
-                    )
-                );
-                conquerTasks.put(currentChunk.toString(), task);
+                WarEngine.startContest(currentChunk, empire, enemy);
             }
         }
-
-        playerToLastChunk.put(
-            uuid,
-            new LastChunkEntry(
-                currentChunk,
-                gameChunk.getWorld().getName(),
-                gameChunk.getX(),
-                gameChunk.getZ()
-            )
-        );
-
-        if (!empireIdsEqual)
-            player.sendTitle(
-                currentChunk == null
-                    ? ChatColor.BOLD
-                        + "Wilderness"
-                    : ""
-                        + currentChunk.getEmpire().getChatColor()
-                        + ChatColor.BOLD
-                        + currentChunk.getEmpire().getName(),
-                "",
-                10,
-                70,
-                20
-            );
-    }
-
-    public static void cancelChunkWarClaimTask(TEChunk chunk) {
-        final String key = chunk.toString();
-        Bukkit.getScheduler().cancelTask(conquerTaskIds.get(key));
-        conquerTaskIds.remove(key);
-        conquerTasks.remove(chunk.toString());
     }
 
 }
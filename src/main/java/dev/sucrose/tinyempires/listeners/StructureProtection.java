@@ -1,7 +1,8 @@
 package dev.sucrose.tinyempires.listeners;
 
 import dev.sucrose.tinyempires.commands.arena.Yggdrasil;
-import dev.sucrose.tinyempires.utils.BoundUtils;
+import dev.sucrose.tinyempires.models.RegionFlag;
+import dev.sucrose.tinyempires.utils.SpecialTerritories;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.entity.Player;
@@ -9,10 +10,7 @@ import org.bukkit.event.Cancellable;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
-import org.bukkit.event.block.BlockExplodeEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
-import org.bukkit.event.entity.CreeperPowerEvent;
-import org.bukkit.event.entity.ExplosionPrimeEvent;
 
 /**
  * Bukkit event listener that prevents players from damaging map structures (arenas, Mt. Olympus, etc..)
@@ -25,7 +23,7 @@ public class StructureProtection implements Listener {
         final World world = location.getWorld();
         if (world == null)
             throw new NullPointerException("Unable to get player world when checking if in bounds of protected area");
-        if (BoundUtils.inBoundsOfSpecialChunk(world.getName(), x, z))
+        if (SpecialTerritories.hasFlag(world.getName(), x, z, RegionFlag.NO_BUILD))
             event.setCancelled(true);
     }
 
@@ -46,20 +44,4 @@ public class StructureProtection implements Listener {
         cancelIfInBounds(event, event.getBlock().getLocation());
     }
 
-    @EventHandler
-    public void onEntityExplosion(ExplosionPrimeEvent event) {
-        // prevent explosions from damaging special territory
-        final Location location = event.getEntity().getLocation();
-        if (BoundUtils.isChunkInBoundsOfSpecialTerritory(location.getChunk()))
-            event.setCancelled(true);
-    }
-
-    @EventHandler
-    public void onBlockExplosion(BlockExplodeEvent event) {
-        // prevent explosions from damaging special territory
-        final Location location = event.getBlock().getLocation();
-        if (BoundUtils.isChunkInBoundsOfSpecialTerritory(location.getChunk()))
-            event.setCancelled(true);
-    }
-
 }
@@ -1,24 +1,52 @@
 package dev.sucrose.tinyempires.listeners;
 
 import dev.sucrose.tinyempires.commands.empire.EmpireCommand;
+import dev.sucrose.tinyempires.models.Empire;
+import dev.sucrose.tinyempires.models.TEPlayer;
+import dev.sucrose.tinyempires.utils.PrefixTrie;
+import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.server.TabCompleteEvent;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 import java.util.stream.Collectors;
 
 public class TabComplete implements Listener {
 
-    private static final List<String> hiddenCommands = new ArrayList<>();
+    private static final int MAX_COMPLETIONS = 50;
+
+    private static final Set<String> hiddenCommands = new HashSet<>();
+    private static final PrefixTrie options = new PrefixTrie();
+    // options by what their first argument names
+    private static final Set<String> empireArgumentOptions = new HashSet<>(Arrays.asList(
+        "war", "join", "ally", "allyaccept", "allyreject", "unally"
+    ));
+    private static final Set<String> memberArgumentOptions = new HashSet<>(Arrays.asList(
+        "kick", "owner", "assign", "fine", "forgive"
+    ));
+    private static final Set<String> playerArgumentOptions = new HashSet<>(Arrays.asList(
+        "accept", "reject"
+    ));
+    private static final Set<String> lawArgumentOptions = new HashSet<>(Arrays.asList(
+        "law", "editlaw", "repeal", "renamelaw"
+    ));
+    private static final Set<String> positionArgumentOptions = new HashSet<>(Arrays.asList(
+        "perm", "delpos"
+    ));
 
     static {
+        for (final String option : EmpireCommand.getOptions())
+            options.insert(option);
+
         hiddenCommands.add("dynmap");
         hiddenCommands.add("/");
         hiddenCommands.add("close-bot");
         hiddenCommands.add("refreshcaches");
         hiddenCommands.add("dumpcaches");
+        hiddenCommands.add("redrawmap");
+        hiddenCommands.add("stats");
+        hiddenCommands.add("reloadterritories");
         hiddenCommands.add("olympus");
         hiddenCommands.add("silent");
         hiddenCommands.add("s");
@@ -39,25 +67,72 @@ public class TabComplete implements Listener {
                 .collect(Collectors.toList())
         );
 
+        // keep a trailing empty argument when the buffer ends in a space, it's the one being completed
         final String[] currentArgs = event
             .getBuffer()
             .replaceAll(" +", " ")
-            .trim()
-            .split(" ");
-        final String command = currentArgs[0];
-        if (command.equals("/e")
-                || command.equals("/empire")) {
-            if (currentArgs.length == 1) {
-                event.setCompletions(new ArrayList<>(EmpireCommand.getOptions()));
-            } else if (currentArgs.length == 2) {
-                event.setCompletions(
-                    (new ArrayList<>(EmpireCommand.getOptions()))
-                        .stream()
-                        .filter(option -> EmpireCommand.getOptions().contains(currentArgs[1]))
-                        .collect(Collectors.toList())
-                );
-            }
+            .split(" ", -1);
+        final String command = currentArgs[0].toLowerCase();
+        if (!command.equals("/e")
+                && !command.equals("/empire"))
+            return;
+
+        if (currentArgs.length == 2) {
+            event.setCompletions(options.complete(currentArgs[1], MAX_COMPLETIONS));
+        } else if (currentArgs.length == 3) {
+            final List<String> completions = completeArgument(
+                event,
+                currentArgs[1].toLowerCase(),
+                currentArgs[2]
+            );
+            if (completions != null)
+                event.setCompletions(completions);
+        } else if (currentArgs.length == 4
+                && currentArgs[1].equalsIgnoreCase("assign")) {
+            final Empire empire = getSenderEmpire(event);
+            event.setCompletions(
+                empire == null
+                    ? Collections.emptyList()
+                    : empire.completePositionNames(currentArgs[3], MAX_COMPLETIONS)
+            );
         }
     }
 
+    /**
+     * @return Completions for the first argument of the option, null to leave the default completions
+     */
+    private static List<String> completeArgument(TabCompleteEvent event, String option, String argument) {
+        if (empireArgumentOptions.contains(option))
+            return Empire.completeNames(argument, MAX_COMPLETIONS);
+        if (playerArgumentOptions.contains(option))
+            return TEPlayer.completeNames(argument, MAX_COMPLETIONS, player -> true);
+
+        final boolean member = memberArgumentOptions.contains(option);
+        final boolean law = lawArgumentOptions.contains(option);
+        final boolean position = positionArgumentOptions.contains(option);
+        if (!member && !law && !position)
+            return null;
+
+        final Empire empire = getSenderEmpire(event);
+        if (empire == null)
+            return Collections.emptyList();
+        if (member)
+            return TEPlayer.completeNames(
+                argument,
+                MAX_COMPLETIONS,
+                player -> player != null
+                    && player.getEmpire() == empire
+            );
+        if (law)
+            return empire.completeLawNames(argument, MAX_COMPLETIONS);
+        return empire.completePositionNames(argument, MAX_COMPLETIONS);
+    }
+
+    private static Empire getSenderEmpire(TabCompleteEvent event) {
+        if (!(event.getSender() instanceof Player))
+            return null;
+        final TEPlayer tePlayer = TEPlayer.getTEPlayer(((Player) event.getSender()).getUniqueId());
+        return tePlayer == null ? null : tePlayer.getEmpire();
+    }
+
 }
@@ -1,11 +1,12 @@
 package dev.sucrose.tinyempires.listeners;
 
+import dev.sucrose.tinyempires.models.AccessMatrix;
 import dev.sucrose.tinyempires.models.ChunkType;
-import dev.sucrose.tinyempires.models.Empire;
+import dev.sucrose.tinyempires.models.RegionFlag;
 import dev.sucrose.tinyempires.models.TEChunk;
 import dev.sucrose.tinyempires.models.TEPlayer;
-import dev.sucrose.tinyempires.utils.BoundUtils;
 import dev.sucrose.tinyempires.utils.ErrorUtils;
+import dev.sucrose.tinyempires.utils.SpecialTerritories;
 import org.bukkit.ChatColor;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
@@ -27,7 +28,6 @@ import org.bukkit.event.block.Action;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.event.entity.EntityDamageByEntityEvent;
-import org.bukkit.event.entity.EntityExplodeEvent;
 import org.bukkit.event.entity.EntitySpawnEvent;
 import org.bukkit.event.player.PlayerBucketEmptyEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
@@ -37,18 +37,8 @@ import org.bukkit.event.player.PlayerInteractEvent;
  */
 public class TerritoryProtection implements Listener {
 
-    private boolean playerInChunkOwnerOrAllyAndUnopped(TEPlayer player, TEChunk chunk) {
-        if (chunk == null)
-            return true;
-        final Empire owner = chunk.getEmpire();
-        if (owner == null)
-            throw new NullPointerException("Owner for chunk found as null");
-        final Empire playerEmpire = player.getEmpire();
-        // true if player is not in the same empire as the owner of
-        // the chunk and is not in an empire allying with them
-        return owner.getId().equals(playerEmpire == null ? null : playerEmpire.getId())
-            || (player.getEmpire() != null && owner.getAllies().contains(player.getEmpire().getId()));
-    }
+    private static final int INTERACT_AND_CONTAINER =
+        AccessMatrix.Access.INTERACT.getBit() | AccessMatrix.Access.CONTAINER.getBit();
 
     @EventHandler
     public void onPlayerBreakBlock(BlockBreakEvent event) {
@@ -65,7 +55,7 @@ public class TerritoryProtection implements Listener {
         if (player.isOp())
             return;
 
-        if (playerInChunkOwnerOrAllyAndUnopped(tePlayer, teChunk))
+        if (AccessMatrix.canAccess(tePlayer.getEmpire(), teChunk, AccessMatrix.Access.BUILD))
             return;
 
         // different empire, cancel event
@@ -93,7 +83,7 @@ public class TerritoryProtection implements Listener {
         }
 
         // return if no empire owns chunk
-        if (playerInChunkOwnerOrAllyAndUnopped(tePlayer, teChunk))
+        if (AccessMatrix.canAccess(tePlayer.getEmpire(), teChunk, AccessMatrix.Access.BUILD))
             return;
 
         // different empire, cancel event
@@ -131,8 +121,14 @@ public class TerritoryProtection implements Listener {
         final Chunk chunk = block.getLocation().getChunk();
         final TEChunk teChunk = TEChunk.getChunk(chunk);
 
-        // return if player not in empire
-        if (playerInChunkOwnerOrAllyAndUnopped(tePlayer, teChunk))
+        // return if player may use both containers and other blocks here before reading the block state
+        final int access = AccessMatrix.getAccess(tePlayer.getEmpire(), teChunk == null ? null : teChunk.getEmpire());
+        if ((access & INTERACT_AND_CONTAINER) == INTERACT_AND_CONTAINER)
+            return;
+        final AccessMatrix.Access required = block.getState() instanceof Container
+            ? AccessMatrix.Access.CONTAINER
+            : AccessMatrix.Access.INTERACT;
+        if ((access & required.getBit()) != 0)
             return;
 
         if (player.isOp()) {
@@ -221,14 +217,6 @@ public class TerritoryProtection implements Listener {
         }
     }
 
-    @EventHandler
-    public static void onCreeperExplode(EntityExplodeEvent event) {
-        // prevent creepers from exploding in empire chunks
-        if (event.getEntityType() == EntityType.CREEPER
-                && TEChunk.getChunk(event.getEntity().getLocation().getChunk()) != null)
-            event.setCancelled(true);
-    }
-
     @EventHandler
     public void onEntityDamage(EntityDamageByEntityEvent event) {
         if (!(event.getDamager() instanceof Player))
@@ -249,19 +237,11 @@ public class TerritoryProtection implements Listener {
         final Location location = event.getEntity().getLocation();
         final TEChunk teChunk = TEChunk.getChunk(location.getChunk());
         
-        if (playerInChunkOwnerOrAllyAndUnopped(tePlayer, teChunk))
+        if (AccessMatrix.canAccess(tePlayer.getEmpire(), teChunk, AccessMatrix.Access.INTERACT))
             return;
-        
-        if (teChunk != null
-                && !teChunk.getEmpire().getId().equals(
-                    tePlayer.getEmpire() == null
-                        ? null
-                        : tePlayer.getEmpire().getId()
-                    )
-        ) {
-            player.sendMessage(ChatColor.RED + "You cannot damage entities belonging to other empires!");
-            event.setCancelled(true);
-        }
+
+        player.sendMessage(ChatColor.RED + "You cannot damage entities belonging to other empires!");
+        event.setCancelled(true);
     }
 
     @EventHandler
@@ -270,9 +250,10 @@ public class TerritoryProtection implements Listener {
         // prevent monster (hostile mob) spawning in special chunks
         if (event.getEntity() instanceof Monster
                 && location.getWorld() != null
-                && BoundUtils.inBoundsOfSpecialChunk(location.getWorld().getName(),
+                && SpecialTerritories.hasFlag(location.getWorld().getName(),
                     location.getBlockX(),
-                    location.getBlockZ()
+                    location.getBlockZ(),
+                    RegionFlag.NO_MONSTERS
         )) {
             event.setCancelled(true);
             System.out.println("Cancelling mob spawn (TerritoryProtection:onMobSpawn)");
@@ -61,37 +61,27 @@ public class WorldBorder implements Listener {
         }
     }
 
-    @EventHandler
-    public static void playerMove(PlayerMoveEvent e) {
+    /**
+     * Wraps players around to the opposite edge of the overworld, called by {@link MovementDispatcher}
+     */
+    public static void onBorderCrossed(PlayerMoveEvent e, MovementDispatcher.Border border) {
         final Player player = e.getPlayer();
-        if (!player.getWorld().getName().equals("world"))
-            return;
-
         final Location playerLoc = player.getLocation();
-        final double playerX = playerLoc.getX();
-        final double playerZ = playerLoc.getZ();
-        if (TinyEmpires.WORLD_BORDER_BOTTOM_Z - TinyEmpires.MARGIN <= playerZ) {
-            playerLoc.setZ(TinyEmpires.WORLD_BORDER_TOP_Z + 5 + TinyEmpires.MARGIN);
-            circumnavigate(player, playerLoc);
-            return;
-        }
-
-        if (TinyEmpires.WORLD_BORDER_TOP_Z + TinyEmpires.MARGIN >= playerZ) {
-            playerLoc.setZ(TinyEmpires.WORLD_BORDER_BOTTOM_Z - 5 - TinyEmpires.MARGIN);
-            circumnavigate(player, playerLoc);
-            return;
-        }
-
-        if (TinyEmpires.WORLD_BORDER_LEFT_X + TinyEmpires.MARGIN >= playerX) {
-            playerLoc.setX(TinyEmpires.WORLD_BORDER_RIGHT_X - 5 - TinyEmpires.MARGIN);
-            circumnavigate(player, playerLoc);
-            return;
-        }
-
-        if (TinyEmpires.WORLD_BORDER_RIGHT_X - TinyEmpires.MARGIN <= playerX) {
-            playerLoc.setX(TinyEmpires.WORLD_BORDER_LEFT_X + 5 + TinyEmpires.MARGIN);
-            circumnavigate(player, playerLoc);
+        switch (border) {
+            case SOUTH:
+                playerLoc.setZ(TinyEmpires.WORLD_BORDER_TOP_Z + 5 + TinyEmpires.MARGIN);
+                break;
+            case NORTH:
+                playerLoc.setZ(TinyEmpires.WORLD_BORDER_BOTTOM_Z - 5 - TinyEmpires.MARGIN);
+                break;
+            case WEST:
+                playerLoc.setX(TinyEmpires.WORLD_BORDER_RIGHT_X - 5 - TinyEmpires.MARGIN);
+                break;
+            case EAST:
+                playerLoc.setX(TinyEmpires.WORLD_BORDER_LEFT_X + 5 + TinyEmpires.MARGIN);
+                break;
         }
+        circumnavigate(player, playerLoc);
     }
 
 }
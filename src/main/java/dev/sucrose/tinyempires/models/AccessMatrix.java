@@ -0,0 +1,127 @@
+package dev.sucrose.tinyempires.models;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * What members of one empire may do in another's territory, kept as a bitmask per (actor, territory) pair in a flat
+ * array indexed by a slot each empire is given on first use. Cells are computed lazily and the whole matrix is
+ * cleared on ally, war, membership and permission changes, so a protection check is a chunk lookup plus an array
+ * read. Main thread only
+ */
+public class AccessMatrix {
+
+    public enum Access {
+        BUILD,
+        // doors, buttons, redstone and other non-container blocks, entities
+        INTERACT,
+        CONTAINER,
+        EXPLOSIONS,
+        PISTONS;
+
+        private final int bit = 1 << ordinal();
+
+        public int getBit() {
+            return bit;
+        }
+    }
+
+    public static final int ALL = (1 << Access.values().length) - 1;
+    private static final int ALLY = Access.BUILD.getBit() | Access.INTERACT.getBit() | Access.CONTAINER.getBit();
+    private static final int ENEMY = Access.EXPLOSIONS.getBit() | Access.PISTONS.getBit();
+    // set once the cell has been computed since the last invalidation
+    private static final int COMPUTED = 1 << 7;
+
+    // slot 0 is players without an empire and wilderness-placed blocks
+    private static final int NO_EMPIRE = 0;
+    private static int capacity = 64;
+    private static byte[] matrix = new byte[capacity * capacity];
+    private static int nextSlot = 1;
+    private static final Deque<Integer> freeSlots = new ArrayDeque<>();
+
+    private static int slotOf(Empire empire) {
+        if (empire == null)
+            return NO_EMPIRE;
+        if (empire.accessSlot == NO_EMPIRE) {
+            empire.accessSlot = freeSlots.isEmpty() ? nextSlot++ : freeSlots.pop();
+            if (empire.accessSlot >= capacity) {
+                // cells are recomputed lazily so the grown matrix can start empty
+                capacity *= 2;
+                matrix = new byte[capacity * capacity];
+            }
+        }
+        return empire.accessSlot;
+    }
+
+    /**
+     * @param actor Empire of the player or of the chunk the piston or explosive is in, null if none
+     * @param territory Empire owning the chunk acted on, null if wilderness
+     * @return Bitmask of allowed {@link Access}es
+     */
+    public static int getAccess(Empire actor, Empire territory) {
+        if (territory == null)
+            return ALL;
+        // either slot may grow the matrix, so read the stride after both are assigned
+        final int actorSlot = slotOf(actor);
+        final int territorySlot = slotOf(territory);
+        final int cell = actorSlot * capacity + territorySlot;
+        int access = matrix[cell];
+        if ((access & COMPUTED) == 0) {
+            access = compute(actor, territory) | COMPUTED;
+            matrix[cell] = (byte) access;
+        }
+        return access & ALL;
+    }
+
+    public static boolean canAccess(Empire actor, Empire territory, Access access) {
+        return (getAccess(actor, territory) & access.getBit()) != 0;
+    }
+
+    /**
+     * @param chunk Chunk acted on, null if wilderness
+     */
+    public static boolean canAccess(Empire actor, TEChunk chunk, Access access) {
+        return chunk == null
+            || canAccess(actor, chunk.getEmpire(), access);
+    }
+
+    private static int compute(Empire actor, Empire territory) {
+        if (actor == null)
+            return 0;
+        if (actor.getId().equals(territory.getId()))
+            return ALL;
+        int access = 0;
+        if (territory.isAlliedWithEmpire(actor.getId()))
+            access |= ALLY;
+        if (actor.getAtWarWith() != null
+                && actor.getAtWarWith().getId().equals(territory.getId()))
+            access |= ENEMY;
+        return access;
+    }
+
+    public static void invalidate() {
+        Arrays.fill(matrix, (byte) 0);
+    }
+
+    /**
+     * Frees the slot of a deleted empire for reuse
+     */
+    static void release(Empire empire) {
+        if (empire.accessSlot == NO_EMPIRE)
+            return;
+        freeSlots.push(empire.accessSlot);
+        empire.accessSlot = NO_EMPIRE;
+        invalidate();
+    }
+
+    /**
+     * Forgets every slot when the empire cache is refilled with new instances
+     */
+    static void reset() {
+        nextSlot = 1;
+        freeSlots.clear();
+        invalidate();
+    }
+
+}
@@ -1,77 +1,68 @@
 package dev.sucrose.tinyempires.models;
 
-import dev.sucrose.tinyempires.listeners.PlayerMove;
 import dev.sucrose.tinyempires.utils.DrawEmpire;
-import dev.sucrose.tinyempires.utils.ErrorUtils;
 import dev.sucrose.tinyempires.utils.StringUtils;
-import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Chunk;
-import org.bukkit.Location;
-import org.bukkit.entity.HumanEntity;
 import org.bukkit.entity.Player;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
-public class WarClaimChunkTask implements Runnable {
+/**
+ * State of an attacker contesting a defender chunk, advanced once a second by {@link WarEngine}
+ */
+public class ChunkContest {
 
     private int timer = Empire.TIME_TO_CONQUER_CHUNK_SECONDS;
     private final TEChunk chunk;
     private final Empire defender;
     private final Empire attacker;
 
-    public WarClaimChunkTask(TEChunk chunk, Empire attacker, Empire defender) {
+    public ChunkContest(TEChunk chunk, Empire attacker, Empire defender) {
         this.chunk = chunk;
         this.attacker = attacker;
         this.defender = defender;
     }
 
-    private void broadcastPlayerList(List<TEPlayer> players, String message) {
-        for (final TEPlayer player : players) {
-            final Player p = Bukkit.getPlayer(player.getPlayerUUID());
-            if (p != null)
-                p.sendMessage(message);
-        }
+    private void broadcastPlayerList(List<Player> players, String message) {
+        for (final Player player : players)
+            player.sendMessage(message);
     }
 
-    private void broadcastToTwoPlayerLists(List<TEPlayer> players1, List<TEPlayer> players2, String message) {
+    private void broadcastToTwoPlayerLists(List<Player> players1, List<Player> players2, String message) {
         broadcastPlayerList(players1, message);
         broadcastPlayerList(players2, message);
     }
 
-    @Override
-    public void run() {
-        final List<TEPlayer> defenders = new ArrayList<>();
-        final List<TEPlayer> attackers = new ArrayList<>();
-        for (final Player player : Bukkit.getOnlinePlayers()) {
-            final Chunk pGameChunk = player.getLocation().getChunk();
-
-            // return if chunk is different
-            if (!pGameChunk.getWorld().getName().equals(chunk.getWorld())
-                    || pGameChunk.getX() != chunk.getX()
-                    || pGameChunk.getZ() != chunk.getZ())
-                continue;
-
-            final TEPlayer pTePlayer = TEPlayer.getTEPlayer(player.getUniqueId());
-            if (pTePlayer == null) {
-                player.sendMessage(ErrorUtils.YOU_DO_NOT_EXIST_IN_THE_DATABASE);
+    /**
+     * @param occupants Players currently in the contested chunk
+     * @return Whether the contest is over
+     */
+    public boolean tick(Collection<UUID> occupants) {
+        final List<Player> defenders = new ArrayList<>();
+        final List<Player> attackers = new ArrayList<>();
+        for (final UUID uuid : occupants) {
+            final TEPlayer pTePlayer = TEPlayer.getTEPlayer(uuid);
+            if (pTePlayer == null)
                 continue;
-            }
 
             final Empire playerEmpire = pTePlayer.getEmpire();
-            if (playerEmpire == null)
+            if (playerEmpire == null
+                    || playerEmpire.getAtWarWith() == null)
                 continue;
 
-            final Empire atWarWith = playerEmpire.getAtWarWith();
-            if (atWarWith == null)
+            // occupants are online so they're in their empire's online index
+            final Player player = playerEmpire.getOnlineMember(uuid);
+            if (player == null)
                 continue;
-
-            if (playerEmpire.getId() == defender.getId()) {
-                defenders.add(pTePlayer);
-            } else if (playerEmpire.getId() == attacker.getId()) {
-                attackers.add(pTePlayer);
+            if (playerEmpire.getId().equals(defender.getId())) {
+                defenders.add(player);
+            } else if (playerEmpire.getId().equals(attacker.getId())) {
+                attackers.add(player);
             }
         }
 
@@ -80,17 +71,16 @@ public class WarClaimChunkTask implements Runnable {
                 "Defender%s %s %s of %s contested the chunk, the claim attempt has been cancelled",
                 defenders.size() > 1 ? "s" : "",
                 ChatColor.BOLD + StringUtils.stringListToGrammaticalList(
-                    defenders.stream().map(TEPlayer::getName).collect(Collectors.toList()),
+                    defenders.stream().map(Player::getName).collect(Collectors.toList()),
                     ChatColor.YELLOW
                 ) + ChatColor.YELLOW,
                 defenders.size() > 1 ? "have" : "has",
                 "" + defender.getChatColor() + ChatColor.BOLD + defender.getName() + ChatColor.YELLOW
             ));
-            PlayerMove.cancelChunkWarClaimTask(chunk);
-            return;
+            return true;
         }
 
-        // no conflict left, cancel task
+        // no conflict left, end contest
         if (attackers.size() == 0) {
             defender.broadcastText(ChatColor.GREEN + String.format(
                 "Chunk at %d, %d in the %s has stopped being contested by the enemy",
@@ -104,8 +94,7 @@ public class WarClaimChunkTask implements Runnable {
                 chunk.getWorldZ(),
                 StringUtils.worldDirToName(chunk.getWorld())
             ));
-            PlayerMove.cancelChunkWarClaimTask(chunk);
-            return;
+            return true;
         }
 
         // attacker wins chunk if previous checks are passed and timer is up
@@ -116,7 +105,7 @@ public class WarClaimChunkTask implements Runnable {
                 chunk.getWorldX(),
                 chunk.getWorldZ(),
                 StringUtils.stringListToGrammaticalList(
-                    attackers.stream().map(TEPlayer::getName).collect(Collectors.toList()),
+                    attackers.stream().map(Player::getName).collect(Collectors.toList()),
                     ChatColor.GREEN
                 )
             ));
@@ -140,9 +129,8 @@ public class WarClaimChunkTask implements Runnable {
             }
 
             TEChest.removeChestMappingsInChunk(chunk);
-            PlayerMove.cancelChunkWarClaimTask(chunk);
             DrawEmpire.setEmpire(chunk.getWorld(), chunk.getX(), chunk.getZ(), attacker);
-            return;
+            return true;
         }
 
         broadcastPlayerList(attackers, ChatColor.GREEN + String.format(
@@ -151,6 +139,19 @@ public class WarClaimChunkTask implements Runnable {
             timer > 1 ? "s" : ""
         ));
         timer--;
+        return false;
+    }
+
+    public TEChunk getChunk() {
+        return chunk;
+    }
+
+    public Empire getAttacker() {
+        return attacker;
+    }
+
+    public Empire getDefender() {
+        return defender;
     }
 
 }
@@ -1,12 +1,16 @@
 package dev.sucrose.tinyempires.models;
 
 import com.mongodb.client.MongoCollection;
-import com.mongodb.client.result.InsertOneResult;
 import com.mongodb.lang.Nullable;
 import dev.sucrose.tinyempires.TinyEmpires;
 import dev.sucrose.tinyempires.discord.DiscordBot;
+import dev.sucrose.tinyempires.utils.CacheDump;
+import dev.sucrose.tinyempires.utils.DirtyTracker;
 import dev.sucrose.tinyempires.utils.DrawEmpire;
-import me.xdrop.fuzzywuzzy.FuzzySearch;
+import dev.sucrose.tinyempires.utils.FuzzyIndex;
+import dev.sucrose.tinyempires.utils.PlayerSidebar;
+import dev.sucrose.tinyempires.utils.PrefixTrie;
+import dev.sucrose.tinyempires.utils.WriteBehindQueue;
 import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.bukkit.Bukkit;
@@ -16,7 +20,6 @@ import org.bukkit.World;
 import org.bukkit.entity.Player;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class Empire {
 
@@ -24,7 +27,12 @@ public class Empire {
     public static final int TIME_TO_CONQUER_CHUNK_SECONDS = 5;
 
     private static final Map<ObjectId, Empire> empireCache = new HashMap<>();
+    // lowercase name -> empire
+    private static final Map<String, Empire> nameIndex = new HashMap<>();
+    private static final PrefixTrie nameTrie = new PrefixTrie();
+    private static final FuzzyIndex nameFuzzyIndex = new FuzzyIndex();
     private static final MongoCollection<Document> collection = TinyEmpires.getDatabase().getCollection("empires");
+    private static final DirtyTracker<ObjectId> dirtyTracker = new DirtyTracker<>();
     private static final Map<UUID, ObjectId> playerToEmpireJoinRequest = new HashMap<>();
     private static final Map<ObjectId, ObjectId> empireAllyRequests = new HashMap<>();
 
@@ -36,6 +44,8 @@ public class Empire {
     private UUID owner;
     private Location homeLocation;
     private final List<TEPlayer> members = new ArrayList<>();
+    // members currently on the server, kept up to date by PlayerJoin, PlayerLeave and membership changes
+    private final Map<UUID, Player> onlineMembers = new HashMap<>();
     private final Map<String, Position> positions = new HashMap<>();
     // name of law to law
     private final Map<String, Law> laws = new HashMap<>();
@@ -43,6 +53,8 @@ public class Empire {
     private final Map<String, Warp> warps = new HashMap<>();
     private final String discordRoleId;
     private final Set<ObjectId> allies = new HashSet<>();
+    private final PrefixTrie lawTrie = new PrefixTrie();
+    private final PrefixTrie positionTrie = new PrefixTrie();
 
     // Wars are only twenty minutes and can be stored in memory
     private Empire atWarWith = null;
@@ -50,30 +62,49 @@ public class Empire {
     private int timeLeftInWar;
     private boolean isWaitingForWar = false;
     private int timeLeftToWar;
+    // slot in AccessMatrix, 0 until first used
+    int accessSlot = 0;
 
-    static {
-        fillCache();
-    }
-
-    public static void writeCache() {
-        final List<Document> documents =
-            empireCache.values()
-                .stream()
-                .map(Empire::toDocument)
-                .collect(Collectors.toList());
-        collection.deleteMany(new Document());
-        collection.insertMany(documents);
+    /**
+     * Collects writes for empires changed since the last dump, or every cached empire if full
+     */
+    public static CacheDump prepareCacheDump(boolean full) {
+        final Set<ObjectId> dirty = dirtyTracker.drainDirty();
+        final Set<ObjectId> deleted = dirtyTracker.drainDeleted();
+        final CacheDump dump = new CacheDump("empires", collection);
+        for (final Empire empire : full ? empireCache.values() : getEmpires(dirty))
+            dump.upsert(new Document("_id", empire.getId()), empire.toDocument());
+        for (final ObjectId id : deleted)
+            dump.delete(new Document("_id", id));
+        dump.setOnFailure(() -> dirtyTracker.restore(dirty, deleted));
+        return dump;
+    }
+
+    private static List<Empire> getEmpires(Set<ObjectId> ids) {
+        final List<Empire> empires = new ArrayList<>();
+        for (final ObjectId id : ids) {
+            final Empire empire = empireCache.get(id);
+            if (empire != null)
+                empires.add(empire);
+        }
+        return empires;
     }
 
-    public static void fillCache() {
+    public static void fillCache(Iterable<Document> documents) {
         empireCache.clear();
-        for (final Document document : collection.find()) {
+        nameIndex.clear();
+        nameTrie.clear();
+        nameFuzzyIndex.clear();
+        dirtyTracker.clear();
+        AccessMatrix.reset();
+        for (final Document document : documents) {
             try {
                 final Empire empire = new Empire(document);
                 empireCache.put(
                     empire.getId(),
                     empire
                 );
+                indexName(empire);
             } catch (Exception err) {
                 System.out.println("Failed to parse empire document (" + document.toJson() + ")");
                 err.printStackTrace();
@@ -81,15 +112,19 @@ public class Empire {
         }
     }
 
-    // use synchronous callback to account for Discord role creation
+    // callback is run on the main thread once the Discord role has been created
     public static void createEmpire(String name, String homeWorld, double homeX, double homeY, double homeZ,
                                         TEPlayer tePlayer, EmpireCreationCallback callback) {
         final String uuidString = tePlayer.getPlayerUUID().toString();
         final String colorName = Color.values()[new Random().nextInt(Color.values().length - 1)].name();
 
         DiscordBot.createRoleAction(name, colorName)
-            .queue(role -> {
-                final Document document = new Document("name", name)
+            // role is created on a JDA thread, the caches are only touched on the main thread
+            .queue(role -> Bukkit.getScheduler().runTask(TinyEmpires.getInstance(), () -> {
+                // generate ID up front since the insert is deferred
+                final ObjectId id = new ObjectId();
+                final Document document = new Document("_id", id)
+                    .append("name", name)
                     .append("reserve", 0.0d)
                     .append("description", null)
                     .append("color", colorName)
@@ -108,21 +143,62 @@ public class Empire {
                     .append("discord_id", role.getId())
                     .append("allies", new ArrayList<>())
                     .append("warps", new Document());
-                final InsertOneResult result = collection.insertOne(document);
-                if (result.getInsertedId() == null)
-                    throw new NullPointerException("Unable to insert document");
-                final ObjectId id = result.getInsertedId().asObjectId().getValue();
+                WriteBehindQueue.insert(collection, document);
                 final Empire empire = new Empire(document);
                 empireCache.put(id, empire);
+                indexName(empire);
+                dirtyTracker.markDirty(id);
                 callback.run(id);
                 DiscordBot.giveUserEmpireDiscordRole(tePlayer, empire);
                 DiscordBot.giveUserEmpireOwnerRole(tePlayer);
-            });
+            }));
+    }
+
+    private static String toNameKey(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private static void indexName(Empire empire) {
+        nameIndex.put(toNameKey(empire.name), empire);
+        nameTrie.insert(empire.name);
+        nameFuzzyIndex.add(empire.name);
+    }
+
+    private static void unindexName(Empire empire) {
+        if (nameIndex.remove(toNameKey(empire.name), empire)) {
+            nameTrie.remove(empire.name);
+            nameFuzzyIndex.remove(empire.name);
+        }
+    }
+
+    /**
+     * @return Existing empire name closest to name, null if none is close
+     */
+    public static String suggestName(String name) {
+        return nameFuzzyIndex.suggest(name);
+    }
+
+    /**
+     * @return Up to limit empire names starting with prefix (case-insensitive), alphabetically
+     */
+    public static List<String> completeNames(String prefix, int limit) {
+        return nameTrie.complete(prefix, limit);
+    }
+
+    public List<String> completeLawNames(String prefix, int limit) {
+        return lawTrie.complete(prefix, limit);
+    }
+
+    public List<String> completePositionNames(String prefix, int limit) {
+        return positionTrie.complete(prefix, limit);
     }
 
     public void delete() {
-        collection.deleteOne(new Document("_id", id));
+        WriteBehindQueue.delete(collection, new Document("_id", id));
         empireCache.remove(id);
+        unindexName(this);
+        dirtyTracker.markDeleted(id);
+        AccessMatrix.release(this);
     }
 
     public Empire(Document document) {
@@ -153,17 +229,25 @@ public class Empire {
         final Document lawDocument = document.get("laws", Document.class);
         for (final String lawName : lawDocument.keySet())
             laws.put(lawName, new Law(lawDocument.get(lawName, Document.class)));
+        laws.keySet().forEach(lawTrie::insert);
 
         final Document memberDebtDocument = document.get("debt", Document.class);
         for (final Map.Entry<String, Object> entry : memberDebtDocument.entrySet())
             memberDebt.put(UUID.fromString(entry.getKey()), (Double) entry.getValue());
 
-        for (final String memberUUID : document.getList("members", String.class))
-            members.add(TEPlayer.getTEPlayer(UUID.fromString(memberUUID)));
+        for (final String memberUUID : document.getList("members", String.class)) {
+            final UUID uuid = UUID.fromString(memberUUID);
+            members.add(TEPlayer.getTEPlayer(uuid));
+            // only needed for empires loaded or created while players are online
+            final Player player = Bukkit.getPlayer(uuid);
+            if (player != null)
+                onlineMembers.put(uuid, player);
+        }
 
         final Document positionsDocument = document.get("positions", Document.class);
         for (final String positionName : positionsDocument.keySet())
             positions.put(positionName, new Position(positionsDocument.getList(positionName, String.class)));
+        positions.keySet().forEach(positionTrie::insert);
     }
 
     public Document toDocument() {
@@ -172,14 +256,33 @@ public class Empire {
             warpsDocument.put(key, value.toDocument())
         );
 
+        final Document lawsDocument = new Document();
+        laws.forEach((key, value) ->
+            lawsDocument.put(key, value.toDocument())
+        );
+
+        final Document debtDocument = new Document();
+        memberDebt.forEach((key, value) ->
+            debtDocument.put(key.toString(), value)
+        );
+
+        final Document positionsDocument = new Document();
+        positions.forEach((key, value) ->
+            positionsDocument.put(key, value.toList())
+        );
+
+        final List<String> memberUUIDs = new ArrayList<>();
+        for (final TEPlayer member : members)
+            memberUUIDs.add(member.getPlayerUUID().toString());
+
         return new Document("_id", id)
             .append("name", name)
             .append("reserve", reserve)
             .append("description", description)
-            .append("owner", owner)
-            .append("color", color)
+            .append("owner", owner.toString())
+            .append("color", color.name())
             .append("discord_id", discordRoleId)
-            .append("allies", allies)
+            .append("allies", new ArrayList<>(allies))
             .append("home",
                 homeLocation == null
                         || homeLocation.getWorld() == null
@@ -189,25 +292,18 @@ public class Empire {
                         .append("y", homeLocation.getY())
                         .append("z", homeLocation.getZ())
             )
-            .append("laws", laws.values().stream().map(Law::toDocument))
-            .append("debt", memberDebt)
+            .append("laws", lawsDocument)
+            .append("debt", debtDocument)
             .append("warps", warpsDocument)
-            .append("members", members.stream().map(p -> p.getPlayerUUID().toString()))
-            .append("positions",
-                positions.values()
-                    .stream()
-                    .map(Position::getPermissions)
-                    .map(perms -> perms.stream().map(Permission::name))
-            );
+            .append("members", memberUUIDs)
+            .append("positions", positionsDocument);
     }
 
+    /**
+     * @param name Empire name, case-insensitive
+     */
     public static Empire getEmpire(String name) {
-        // check cache for empire
-        for (Empire empire : empireCache.values()) {
-            if (empire.getName().equals(name))
-                return empire;
-        }
-        return null;
+        return name == null ? null : nameIndex.get(toNameKey(name));
     }
 
     public static Empire getEmpire(ObjectId id) {
@@ -221,14 +317,6 @@ public class Empire {
         return empireCache.values();
     }
 
-    public static Collection<String> getEmpireNames() {
-        HashSet<String> toReturn = new HashSet<>();
-        empireCache.values().forEach(empire -> {
-            toReturn.add(empire.name);
-        });
-        return toReturn;
-    }
-
     @Nullable
     public static ObjectId getAllyRequestForEmpire(ObjectId empire) {
         return empireAllyRequests.get(empire);
@@ -243,19 +331,22 @@ public class Empire {
     }
 
     public void updateMemberScoreboards() {
-        for (final TEPlayer player : members)
-            player.updatePlayerScoreboard();
+        // offline members get theirs drawn when they join
+        for (final UUID uuid : onlineMembers.keySet())
+            PlayerSidebar.markDirty(uuid);
     }
 
     public void setAtWarWith(Empire empire, boolean isAttacker) {
         atWarWith = empire;
         isAttackerInWar = isAttacker;
+        AccessMatrix.invalidate();
     }
 
     public void endWar() {
         isWaitingForWar = false;
         atWarWith = null;
         isAttackerInWar = null;
+        AccessMatrix.invalidate();
     }
 
     public Empire getAtWarWith() {
@@ -276,11 +367,8 @@ public class Empire {
     }
 
     public void broadcastText(String text) {
-        for (TEPlayer p : members) {
-            final Player player = Bukkit.getPlayer(p.getPlayerUUID());
-            if (player != null)
-                player.sendMessage(text);
-        }
+        for (final Player player : onlineMembers.values())
+            player.sendMessage(text);
     }
 
     public void addPlayerJoinRequest(TEPlayer player) {
@@ -290,36 +378,31 @@ public class Empire {
     public void acceptPlayerJoinRequest(TEPlayer player) {
         this.members.add(player);
         player.setEmpireId(id);
-        collection.updateOne(
+        final Player online = Bukkit.getPlayer(player.getPlayerUUID());
+        if (online != null)
+            onlineMembers.put(player.getPlayerUUID(), online);
+        markDirty();
+        WriteBehindQueue.addToSet(
+            collection,
             new Document("_id", id),
-            new Document(
-                "$addToSet",
-                new Document("members", player.getPlayerUUID().toString())
-            )
+            "members",
+            player.getPlayerUUID().toString()
         );
         DrawEmpire.updateEmpireChunkDescriptions(this);
     }
 
     public void addAlliedEmpire(ObjectId ally) {
         allies.add(ally);
-        collection.updateOne(
-            new Document("_id", id),
-            new Document(
-                "$addToSet",
-                new Document("allies", ally)
-            )
-        );
+        AccessMatrix.invalidate();
+        markDirty();
+        WriteBehindQueue.addToSet(collection, new Document("_id", id), "allies", ally);
     }
 
     public void removeAlliedEmpire(ObjectId ally) {
         allies.remove(ally);
-        collection.updateOne(
-            new Document("_id", id),
-            new Document(
-                "$pull",
-                new Document("allies", ally)
-            )
-        );
+        AccessMatrix.invalidate();
+        markDirty();
+        WriteBehindQueue.pull(collection, new Document("_id", id), "allies", ally);
     }
 
     public boolean isAlliedWithEmpire(ObjectId id) {
@@ -336,8 +419,13 @@ public class Empire {
         save(new Document("color", color.name()));
     }
 
+    private void markDirty() {
+        dirtyTracker.markDirty(id);
+    }
+
     private void save(Document document) {
-        collection.updateOne(new Document("_id", id), new Document("$set", document));
+        WriteBehindQueue.set(collection, new Document("_id", id), document);
+        markDirty();
         updateMemberScoreboards();
         DrawEmpire.updateEmpireChunkDescriptions(this);
     }
@@ -347,7 +435,9 @@ public class Empire {
     }
 
     public void setName(String name) {
+        unindexName(this);
         this.name = name;
+        indexName(this);
         DrawEmpire.updateEmpireChunkDescriptions(this);
         save(new Document("name", name));
     }
@@ -394,26 +484,42 @@ public class Empire {
                 break;
             }
         }
-        collection.updateOne(
+        onlineMembers.remove(player.getPlayerUUID());
+        markDirty();
+        WriteBehindQueue.pull(
+            collection,
             new Document("_id", id),
-            new Document(
-                "$pull",
-                new Document("members", player.getPlayerUUID().toString())
-            )
+            "members",
+            player.getPlayerUUID().toString()
         );
         updateMemberScoreboards();
         DrawEmpire.updateEmpireChunkDescriptions(this);
     }
 
     public boolean hasMemberOnline() {
-        for (final TEPlayer member : members) {
-            // check if player is online
-            final Player p = Bukkit.getPlayer(member.getPlayerUUID());
-            if (p != null) {
-                return true;
-            }
-        }
-        return false;
+        return !onlineMembers.isEmpty();
+    }
+
+    /**
+     * Adds a member who joined the server to the online index
+     */
+    public void addOnlineMember(Player player) {
+        onlineMembers.put(player.getUniqueId(), player);
+    }
+
+    public void removeOnlineMember(UUID uuid) {
+        onlineMembers.remove(uuid);
+    }
+
+    /**
+     * @return Online member with the UUID, null if offline or not a member
+     */
+    public Player getOnlineMember(UUID uuid) {
+        return onlineMembers.get(uuid);
+    }
+
+    public Collection<Player> getOnlineMembers() {
+        return Collections.unmodifiableCollection(onlineMembers.values());
     }
 
     public Position getPosition(String name) {
@@ -433,16 +539,9 @@ public class Empire {
 
     public void createPosition(String name) {
         positions.put(name, new Position());
-        collection.updateOne(
-            new Document("_id", id),
-            new Document(
-                "$set",
-                new Document(
-                    "positions." + name,
-                    new ArrayList<>()
-                )
-            )
-        );
+        positionTrie.insert(name);
+        markDirty();
+        WriteBehindQueue.set(collection, new Document("_id", id), "positions." + name, new ArrayList<>());
         updateMemberScoreboards();
     }
 
@@ -454,6 +553,8 @@ public class Empire {
      */
     public boolean togglePositionPermission(String name, Permission permission) {
         final Position position = positions.get(name);
+        AccessMatrix.invalidate();
+        markDirty();
         if (position.hasPermission(permission)) {
             position.revokePermission(permission);
             return false;
@@ -471,6 +572,8 @@ public class Empire {
             }
         }
         positions.remove(position);
+        positionTrie.remove(position);
+        AccessMatrix.invalidate();
         savePositions();
     }
 
@@ -506,16 +609,9 @@ public class Empire {
 
     private void putLaw(String name, Law law) {
         laws.put(name, law);
-        collection.updateOne(
-            new Document("_id", id),
-            new Document(
-                "$set",
-                new Document(
-                    "laws." + name,
-                    law.toDocument()
-                )
-            )
-        );
+        lawTrie.insert(name);
+        markDirty();
+        WriteBehindQueue.set(collection, new Document("_id", id), "laws." + name, law.toDocument());
     }
 
     public void editLaw(String name, List<String> pages) {
@@ -526,16 +622,15 @@ public class Empire {
         // move law in cache
         laws.put(newName, laws.get(originalName));
         laws.remove(originalName);
+        lawTrie.remove(originalName);
+        lawTrie.insert(newName);
+        markDirty();
         // rename embedded field in mongo
-        collection.updateOne(
+        WriteBehindQueue.rename(
+            collection,
             new Document("_id", id),
-            new Document(
-                "$rename",
-                new Document(
-                    "laws." + originalName,
-                    "laws." + newName
-                )
-            )
+            "laws." + originalName,
+            "laws." + newName
         );
     }
 
@@ -545,17 +640,13 @@ public class Empire {
 
     public void removeLaw(String name) {
         laws.remove(name);
-        collection.updateOne(
-            new Document("_id", id),
-            new Document("$unset", new Document("laws." + name, 1))
-        );
+        lawTrie.remove(name);
+        markDirty();
+        WriteBehindQueue.unset(collection, new Document("_id", id), "laws." + name);
     }
 
     public boolean isAnyMemberOnline() {
-        // check if any member is currently online
-        return members
-            .stream()
-            .anyMatch(p -> Bukkit.getPlayer(p.getPlayerUUID()) != null);
+        return !onlineMembers.isEmpty();
     }
 
     public void tax(Double amount, UUID taxer) {
@@ -569,14 +660,12 @@ public class Empire {
                 (debt != null ? debt : 0) + amount);
         });
 
+        markDirty();
         final Document document = new Document();
         for (final Map.Entry<UUID, Double> entry : memberDebt.entrySet())
             document.put(entry.getKey().toString(), entry.getValue());
 
-        collection.updateOne(
-            new Document("_id", id),
-            new Document("$set", new Document("debt", document))
-        );
+        WriteBehindQueue.set(collection, new Document("_id", id), "debt", document);
     }
 
     @Nullable
@@ -591,10 +680,8 @@ public class Empire {
     public void addDebt(UUID payer, double amount) {
         final double debt = (memberDebt.containsKey(payer) ? memberDebt.get(payer) : 0) + amount;
         memberDebt.put(payer, debt);
-        collection.updateOne(
-            new Document("_id", id),
-            new Document("$set", new Document("debt." + payer.toString(), debt))
-        );
+        markDirty();
+        WriteBehindQueue.set(collection, new Document("_id", id), "debt." + payer.toString(), debt);
     }
 
     public void removeDebt(UUID payer, double amount) {
@@ -606,10 +693,8 @@ public class Empire {
                 payer,
                 debt
             );
-        collection.updateOne(
-            new Document("_id", id),
-            new Document("$set", new Document("debt." + payer.toString(), debt))
-        );
+        markDirty();
+        WriteBehindQueue.set(collection, new Document("_id", id), "debt." + payer.toString(), debt);
     }
 
     public Location getHomeLocation() {
@@ -627,18 +712,15 @@ public class Empire {
             throw new NullPointerException("Fetched world as null from argument location");
 
         this.homeLocation = homeLocation;
-        collection.updateOne(
+        markDirty();
+        WriteBehindQueue.set(
+            collection,
             new Document("_id", id),
-            new Document(
-                "$set",
-                new Document(
-                    "home",
-                    new Document("world", homeLocation.getWorld().getName())
-                        .append("x", homeLocation.getX())
-                        .append("y", homeLocation.getY())
-                        .append("z", homeLocation.getZ())
-                )
-            )
+            "home",
+            new Document("world", homeLocation.getWorld().getName())
+                .append("x", homeLocation.getX())
+                .append("y", homeLocation.getY())
+                .append("z", homeLocation.getZ())
         );
     }
 
@@ -0,0 +1,23 @@
+package dev.sucrose.tinyempires.models;
+
+/**
+ * Protections a special territory region applies, named in config.yml by their lowercase hyphenated names
+ */
+public enum RegionFlag {
+    // chunks overlapping the region can't be claimed
+    NO_CLAIM,
+    // blocks can't be broken or placed and explosions are cancelled in overlapping chunks
+    NO_BUILD,
+    // hostile mobs don't spawn
+    NO_MONSTERS,
+    // nothing spawns except eyes of ender
+    NO_SPAWN;
+
+    public int getBit() {
+        return 1 << ordinal();
+    }
+
+    public static RegionFlag fromConfigName(String name) {
+        return valueOf(name.toUpperCase().replace('-', '_'));
+    }
+}
@@ -0,0 +1,186 @@
+package dev.sucrose.tinyempires.models;
+
+import dev.sucrose.tinyempires.utils.DrawEmpire;
+import dev.sucrose.tinyempires.utils.ErrorUtils;
+import dev.sucrose.tinyempires.utils.LongHashSet;
+import dev.sucrose.tinyempires.utils.RegionOutline;
+import org.dynmap.markers.AreaMarker;
+import org.dynmap.markers.PolyLineMarker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single area marker filling a connected region of an empire's chunks, bordered by a line marker per ring so the
+ * slits joining holes to the outer ring aren't drawn
+ */
+public class RegionMarker {
+
+    private static final double OPACITY = 0.4;
+    private static final double BORDER_OPACITY = 1.0;
+    private static final int BORDER_WEIGHT = 2;
+    // arbitrary y coordinate of border lines
+    private static final double BORDER_Y = 64;
+    private static int drawIndex = 0;
+    private final Empire empire;
+    private final String world;
+    // packed chunk coordinates
+    private final LongHashSet chunks = new LongHashSet();
+    private AreaMarker marker = null;
+    private final List<PolyLineMarker> borders = new ArrayList<>();
+
+    private static final Map<Color, int[]> chatColorToIntArray = new EnumMap<>(Color.class);
+
+    static {
+        chatColorToIntArray.put(Color.AQUA, new int[] { 23, 153, 181 });
+        chatColorToIntArray.put(Color.BLACK, new int[] { 0, 0, 0 });
+        chatColorToIntArray.put(Color.BLUE, new int[] { 0, 0, 255 });
+        chatColorToIntArray.put(Color.DARK_AQUA, new int[] {57, 82, 79 });
+        chatColorToIntArray.put(Color.DARK_BLUE, new int[] { 0, 0, 139 });
+        chatColorToIntArray.put(Color.DARK_GRAY, new int[] { 169, 169, 169 });
+        chatColorToIntArray.put(Color.DARK_GREEN, new int[] { 0, 100, 0 });
+        chatColorToIntArray.put(Color.DARK_PURPLE, new int[] { 128, 0, 128 });
+        chatColorToIntArray.put(Color.DARK_RED, new int[] { 139, 0, 0});
+        chatColorToIntArray.put(Color.GOLD, new int[] { 255, 223, 0 });
+        chatColorToIntArray.put(Color.GRAY, new int[] { 220, 220, 220 });
+        chatColorToIntArray.put(Color.GREEN, new int[] { 0, 255, 0 });
+        chatColorToIntArray.put(Color.LIGHT_PURPLE, new int[] { 177, 156, 217 });
+        chatColorToIntArray.put(Color.RED, new int[] { 255, 0, 0 });
+        chatColorToIntArray.put(Color.WHITE, new int[] { 255, 255, 255 });
+        chatColorToIntArray.put(Color.YELLOW, new int[] { 255, 255, 0 });
+    }
+
+    /**
+     * Renders popup description shared by all regions of an empire
+     */
+    public static String generateEmpireDescription(Empire empire) {
+        final int chunkCount = TEChunk.getEmpireChunkCount(empire.getId());
+        final TEPlayer owner = TEPlayer.getTEPlayer(empire.getOwner());
+        if (owner == null)
+            throw new NullPointerException(ErrorUtils.YOU_DO_NOT_EXIST_IN_THE_DATABASE);
+        return String.format(
+            "<div style=\"font-family:Verdana;line-height:1.5;\">"
+            + "<h2 style=\"margin: 2px 0px;\">%s</h2>"
+            + "%s<br />"
+            + "Owned by %s<br />"
+            + "Reserve: %.1f<br />"
+            + "%s member%s <br />"
+            + "%d chunk%s"
+            + "</div>",
+            empire.getName(),
+            empire.getDescription() == null ? "<i>No description</i>" : empire.getDescription(),
+            owner.getName(),
+            empire.getReserve(),
+            empire.getMembers().size(),
+            empire.getMembers().size() > 1 ? "s" : "",
+            chunkCount,
+            chunkCount != 1 ? "s" : ""
+        );
+    }
+
+    private static int chatColorToHexInt(Color color) {
+        int[] rgb = chatColorToIntArray.get(color);
+        String hexString = String.format("%02x%02x%02x", rgb[0], rgb[1], rgb[2]);
+        return Integer.valueOf(hexString, 16);
+    }
+
+    public RegionMarker(Empire empire, String world) {
+        this.empire = empire;
+        this.world = world;
+    }
+
+    public Empire getEmpire() {
+        return empire;
+    }
+
+    public String getWorld() {
+        return world;
+    }
+
+    public LongHashSet getChunks() {
+        return chunks;
+    }
+
+    /**
+     * Re-traces the outline after chunks were added or removed
+     * @param description Description to create the marker with if it wasn't drawn yet
+     */
+    public void redraw(String description) {
+        final RegionOutline.Outline outline = RegionOutline.trace(chunks);
+        final double[][] area = outline.getArea();
+        final boolean created = marker == null;
+        if (created) {
+            marker = DrawEmpire.getMarkerSet().createAreaMarker(
+                "region" + drawIndex++,
+                description,
+                true,
+                world,
+                area[0],
+                area[1],
+                false
+            );
+        } else {
+            marker.setCornerLocations(area[0], area[1]);
+        }
+
+        // reuse line markers where the number of rings didn't change
+        final List<double[][]> rings = outline.getRings();
+        for (int i = 0; i < rings.size(); i++) {
+            final double[][] ring = rings.get(i);
+            final double[] ys = new double[ring[0].length];
+            Arrays.fill(ys, BORDER_Y);
+            if (i < borders.size()) {
+                borders.get(i).setCornerLocations(ring[0], ys, ring[1]);
+                continue;
+            }
+            final PolyLineMarker border = DrawEmpire.getMarkerSet().createPolyLineMarker(
+                "regionborder" + drawIndex++,
+                "",
+                true,
+                world,
+                ring[0],
+                ys,
+                ring[1],
+                false
+            );
+            border.setDescription(marker.getDescription());
+            border.setLineStyle(BORDER_WEIGHT, BORDER_OPACITY, chatColorToHexInt(empire.getColor()));
+            borders.add(border);
+        }
+        while (borders.size() > rings.size())
+            borders.remove(borders.size() - 1).deleteMarker();
+        if (created)
+            updateColor();
+    }
+
+    public void erase() {
+        if (marker != null)
+            marker.deleteMarker();
+        marker = null;
+        for (final PolyLineMarker border : borders)
+            border.deleteMarker();
+        borders.clear();
+    }
+
+    public void updateColor() {
+        if (marker == null)
+            return;
+        final int colorAsInt = chatColorToHexInt(empire.getColor());
+        marker.setFillStyle(OPACITY, colorAsInt);
+        // the area's own outline would include the slits
+        marker.setLineStyle(0, 0, colorAsInt);
+        for (final PolyLineMarker border : borders)
+            border.setLineStyle(BORDER_WEIGHT, BORDER_OPACITY, colorAsInt);
+    }
+
+    public void setDescription(String description) {
+        if (marker != null)
+            marker.setDescription(description);
+        for (final PolyLineMarker border : borders)
+            border.setDescription(description);
+    }
+
+}
@@ -0,0 +1,65 @@
+package dev.sucrose.tinyempires.models;
+
+/**
+ * Rectangular region of the map with protections, bounds are inclusive block coordinates
+ */
+public class SpecialRegion {
+
+    private final String id;
+    private final String world;
+    private final int minX;
+    private final int maxX;
+    private final int minZ;
+    private final int maxZ;
+    private final int flags;
+
+    public SpecialRegion(String id, String world, int minX, int maxX, int minZ, int maxZ, int flags) {
+        this.id = id;
+        this.world = world;
+        this.minX = Math.min(minX, maxX);
+        this.maxX = Math.max(minX, maxX);
+        this.minZ = Math.min(minZ, maxZ);
+        this.maxZ = Math.max(minZ, maxZ);
+        this.flags = flags;
+    }
+
+    public boolean contains(int x, int z) {
+        return x >= minX
+            && x <= maxX
+            && z >= minZ
+            && z <= maxZ;
+    }
+
+    public boolean hasFlag(RegionFlag flag) {
+        return (flags & flag.getBit()) != 0;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getWorld() {
+        return world;
+    }
+
+    public int getMinX() {
+        return minX;
+    }
+
+    public int getMaxX() {
+        return maxX;
+    }
+
+    public int getMinZ() {
+        return minZ;
+    }
+
+    public int getMaxZ() {
+        return maxZ;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+}
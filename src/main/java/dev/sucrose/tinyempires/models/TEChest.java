@@ -2,17 +2,22 @@ package dev.sucrose.tinyempires.models;
 
 import com.mongodb.client.MongoCollection;
 import dev.sucrose.tinyempires.TinyEmpires;
-import dev.sucrose.tinyempires.utils.BoundUtils;
+import dev.sucrose.tinyempires.utils.CacheDump;
+import dev.sucrose.tinyempires.utils.ChunkMap;
+import dev.sucrose.tinyempires.utils.DirtyTracker;
+import dev.sucrose.tinyempires.utils.LongHashMap;
+import dev.sucrose.tinyempires.utils.WriteBehindQueue;
 import org.bson.Document;
-import org.bukkit.Chunk;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class TEChest {
 
-    final private static Map<String, UUID> chestToPlayerCache = new HashMap<>();
+    // chunk -> packed block position -> chest, so chunk-wide removal only touches the chunk's chests
+    final private static ChunkMap<LongHashMap<TEChest>> chestCache = new ChunkMap<>();
     private static final MongoCollection<Document> collection = TinyEmpires.getDatabase().getCollection("chests");
+    // chests compare by position so a chest re-created before a dump replaces the deletion
+    private static final DirtyTracker<TEChest> dirtyTracker = new DirtyTracker<>();
 
     private final UUID owner;
     private final String world;
@@ -20,93 +25,102 @@ public class TEChest {
     private final int y;
     private final int z;
 
-    static {
-        fillCache();
-    }
-
-    public static void writeCache() {
-        final List<Document> documents =
-            chestToPlayerCache.entrySet()
-                .stream()
-                .map(entry -> {
-                    final String[] words = entry.getKey().split(" ");
-                    final String world = words[0];
-                    final int x = Integer.parseInt(words[1]);
-                    final int y = Integer.parseInt(words[2]);
-                    final int z = Integer.parseInt(words[3]);
-                    return new Document("world", world)
-                        .append("x", x)
-                        .append("y", y)
-                        .append("z", z)
-                        .append("owner", entry.getValue().toString());
-                })
-                .collect(Collectors.toList());
-        collection.deleteMany(new Document());
-        collection.insertMany(documents);
-    }
-
-    public static void fillCache() {
-        chestToPlayerCache.clear();
-        for (final Document document : collection.find()) {
-            final TEChest chest = new TEChest(document);
-            chestToPlayerCache.put(
-                coordinatesToCacheKey(
-                    chest.getWorld(),
-                    chest.getX(),
-                    chest.getY(),
-                    chest.getZ()
-                ),
-                chest.getOwner()
-            );
+    /**
+     * Collects writes for chests changed since the last dump, or every cached chest if full
+     */
+    public static CacheDump prepareCacheDump(boolean full) {
+        final Set<TEChest> dirty = dirtyTracker.drainDirty();
+        final Set<TEChest> deleted = dirtyTracker.drainDeleted();
+        final CacheDump dump = new CacheDump("chests", collection);
+        final Collection<TEChest> chests;
+        if (full) {
+            chests = new ArrayList<>();
+            chestCache.forEachValue(bucket -> chests.addAll(bucket.values()));
+        } else {
+            chests = dirty;
         }
+        for (final TEChest chest : chests) {
+            // tracked instance may be stale if the chest was re-created, dump whoever owns it now
+            final UUID owner = getChestCoordinatesToPlayer(chest.world, chest.x, chest.y, chest.z);
+            if (owner != null)
+                dump.upsert(chest.toFilter(), chest.toFilter().append("owner", owner.toString()));
+        }
+        for (final TEChest chest : deleted)
+            dump.delete(chest.toFilter());
+        dump.setOnFailure(() -> dirtyTracker.restore(dirty, deleted));
+        return dump;
+    }
 
+    /**
+     * Packs block coordinates into a long, 26 bits each for x and z and 12 for y
+     */
+    public static long packBlock(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38)
+            | ((long) (z & 0x3FFFFFF) << 12)
+            | (y & 0xFFF);
     }
 
-    public static void removeChestMappingsInChunk(TEChunk chunk) {
-        for (final String coordinateString : chestToPlayerCache.keySet()) {
-            final String[] words = coordinateString.split(" ");
-            final String world = words[0];
-            final int x = Integer.parseInt(words[1]);
-            final int z = Integer.parseInt(words[3]);
-            // if world, x, and z are within chunk then remove mapping
-            if (BoundUtils.coordsInChunk(world, x, z, chunk)) {
-                // only need y if removing chest mapping
-                final int y = Integer.parseInt(words[2]);
-                removeChestToPlayerMapping(world, x, y, z);
-            }
+    public static void fillCache(Iterable<Document> documents) {
+        chestCache.clear();
+        dirtyTracker.clear();
+        for (final Document document : documents)
+            cacheChest(new TEChest(document));
+    }
+
+    private static void cacheChest(TEChest chest) {
+        LongHashMap<TEChest> bucket = chestCache.get(chest.world, chest.x >> 4, chest.z >> 4);
+        if (bucket == null) {
+            bucket = new LongHashMap<>();
+            chestCache.put(chest.world, chest.x >> 4, chest.z >> 4, bucket);
         }
+        bucket.put(packBlock(chest.x, chest.y, chest.z), chest);
     }
 
-    private static String coordinatesToCacheKey(String world, int x, int y, int z) {
-        return String.format("%s %d %d %d", world, x, y, z);
+    public static void removeChestMappingsInChunk(TEChunk chunk) {
+        final LongHashMap<TEChest> bucket = chestCache.remove(chunk.getWorld(), chunk.getX(), chunk.getZ());
+        if (bucket == null)
+            return;
+        bucket.forEachValue(dirtyTracker::markDeleted);
+        WriteBehindQueue.deleteMany(
+            collection,
+            new Document("world", chunk.getWorld())
+                .append("x", new Document("$gte", chunk.getWorldX()).append("$lt", chunk.getWorldX() + 16))
+                .append("z", new Document("$gte", chunk.getWorldZ()).append("$lt", chunk.getWorldZ() + 16))
+        );
     }
 
     public static UUID getChestCoordinatesToPlayer(String world, int x, int y, int z) {
-        final String cacheKey = coordinatesToCacheKey(world, x, y, z);
-        if (chestToPlayerCache.containsKey(cacheKey))
-            return chestToPlayerCache.get(cacheKey);
-        return null;
+        final LongHashMap<TEChest> bucket = chestCache.get(world, x >> 4, z >> 4);
+        if (bucket == null)
+            return null;
+        final TEChest chest = bucket.get(packBlock(x, y, z));
+        return chest == null ? null : chest.owner;
     }
 
     public static void createChestToPlayerMapping(String world, int x, int y, int z, UUID owner) {
-        collection.insertOne(
-            new Document("world", world)
-                .append("x", x)
-                .append("y", y)
-                .append("z", z)
-                .append("owner", owner.toString())
-        );
-        chestToPlayerCache.put(coordinatesToCacheKey(world, x, y, z), owner);
+        final TEChest chest = new TEChest(world, x, y, z, owner);
+        WriteBehindQueue.insert(collection, chest.toFilter().append("owner", owner.toString()));
+        cacheChest(chest);
+        dirtyTracker.markDirty(chest);
     }
 
     public static void removeChestToPlayerMapping(String world, int x, int y, int z) {
-        collection.deleteOne(
+        WriteBehindQueue.delete(
+            collection,
             new Document("world", world)
                 .append("x", x)
                 .append("y", y)
                 .append("z", z)
         );
-        chestToPlayerCache.remove(coordinatesToCacheKey(world, x, y, z));
+        final LongHashMap<TEChest> bucket = chestCache.get(world, x >> 4, z >> 4);
+        if (bucket == null)
+            return;
+        final TEChest chest = bucket.remove(packBlock(x, y, z));
+        if (chest == null)
+            return;
+        if (bucket.isEmpty())
+            chestCache.remove(world, x >> 4, z >> 4);
+        dirtyTracker.markDeleted(chest);
     }
 
     public TEChest(Document document) {
@@ -117,8 +131,24 @@ public class TEChest {
         owner = UUID.fromString(document.getString("owner"));
     }
 
+    private TEChest(String world, int x, int y, int z, UUID owner) {
+        this.world = world;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.owner = owner;
+    }
+
+    private Document toFilter() {
+        return new Document("world", world)
+            .append("x", x)
+            .append("y", y)
+            .append("z", z);
+    }
+
     public static void clearCache() {
-        chestToPlayerCache.clear();
+        chestCache.clear();
+        dirtyTracker.clear();
     }
 
     public String getWorld() {
@@ -141,4 +171,22 @@ public class TEChest {
         return owner;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof TEChest))
+            return false;
+        final TEChest chest = (TEChest) o;
+        return x == chest.x
+            && y == chest.y
+            && z == chest.z
+            && world.equals(chest.world);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(world, x, y, z);
+    }
+
 }
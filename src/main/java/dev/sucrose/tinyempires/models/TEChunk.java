@@ -1,23 +1,30 @@
 package dev.sucrose.tinyempires.models;
 
-import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import dev.sucrose.tinyempires.TinyEmpires;
+import dev.sucrose.tinyempires.utils.CacheDump;
+import dev.sucrose.tinyempires.utils.ChunkMap;
+import dev.sucrose.tinyempires.utils.DirtyTracker;
 import dev.sucrose.tinyempires.utils.DrawEmpire;
 import dev.sucrose.tinyempires.utils.StringUtils;
+import dev.sucrose.tinyempires.utils.WriteBehindQueue;
 import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.bukkit.ChatColor;
 import org.bukkit.Chunk;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class TEChunk {
 
-    final private static Map<String, TEChunk> chunkCache = new HashMap<>();
+    final private static ChunkMap<TEChunk> chunkCache = new ChunkMap<>();
+    // concurrent since chunk counts are also read from the discord bot thread
+    final private static Map<ObjectId, Set<TEChunk>> empireChunks = new ConcurrentHashMap<>();
 
-    private static final MongoCollection<Document> collection = TinyEmpires.getDatabase().getCollection("chunks");
+    // package-private for TerritoryBatch
+    static final MongoCollection<Document> collection = TinyEmpires.getDatabase().getCollection("chunks");
+    private static final DirtyTracker<TEChunk> dirtyTracker = new DirtyTracker<>();
 
     private final ObjectId id;
     private final String world;
@@ -26,93 +33,122 @@ public class TEChunk {
     private Empire empire;
     private ChunkType type;
 
-    static {
-        fillCache();
-    }
-
-    public static void writeCache() {
-        final List<Document> documents =
-            chunkCache.values()
-                .stream()
-                .map(TEChunk::toDocument)
-                .collect(Collectors.toList());
-        collection.deleteMany(new Document());
-        collection.insertMany(documents);
-    }
-
-    public static void fillCache() {
+    /**
+     * Collects writes for chunks changed since the last dump, or every cached chunk if full
+     */
+    public static CacheDump prepareCacheDump(boolean full) {
+        final Set<TEChunk> dirty = dirtyTracker.drainDirty();
+        final Set<TEChunk> deleted = dirtyTracker.drainDeleted();
+        final CacheDump dump = new CacheDump("chunks", collection);
+        for (final TEChunk chunk : full ? chunkCache.values() : dirty)
+            dump.upsert(new Document("_id", chunk.getId()), chunk.toDocument());
+        for (final TEChunk chunk : deleted)
+            dump.delete(new Document("_id", chunk.getId()));
+        dump.setOnFailure(() -> dirtyTracker.restore(dirty, deleted));
+        return dump;
+    }
+
+    public static void fillCache(Iterable<Document> documents) {
         chunkCache.clear();
-        for (final Document document : collection.find()) {
+        empireChunks.clear();
+        dirtyTracker.clear();
+        for (final Document document : documents) {
             final TEChunk chunk = new TEChunk(document);
             if (chunk.getWorld() == null
                     || chunk.getEmpire() == null)
                 continue;
-            chunkCache.put(chunkToKey(chunk.getWorld(), chunk.getX(), chunk.getZ()), chunk);
+            chunkCache.put(chunk.getWorld(), chunk.getX(), chunk.getZ(), chunk);
+            indexEmpireChunk(chunk);
         }
     }
 
-    private static String chunkToKey(String world, int x, int z) {
-        return world + ' ' + x + ' ' + z;
+    private static void indexEmpireChunk(TEChunk chunk) {
+        empireChunks
+            .computeIfAbsent(chunk.getEmpire().getId(), e -> ConcurrentHashMap.newKeySet())
+            .add(chunk);
+    }
+
+    private static void unindexEmpireChunk(TEChunk chunk) {
+        final Set<TEChunk> chunks = empireChunks.get(chunk.getEmpire().getId());
+        if (chunks == null)
+            return;
+        chunks.remove(chunk);
+        if (chunks.isEmpty())
+            empireChunks.remove(chunk.getEmpire().getId());
+    }
+
+    /**
+     * Adds a new chunk to the cache and indexes without queueing its insert
+     */
+    static void cacheChunk(TEChunk chunk) {
+        chunkCache.put(chunk.getWorld(), chunk.getX(), chunk.getZ(), chunk);
+        indexEmpireChunk(chunk);
+        dirtyTracker.markDirty(chunk);
+    }
+
+    /**
+     * Removes a chunk from the cache and indexes without queueing its delete
+     * @return Whether the chunk was cached
+     */
+    static boolean uncacheChunk(TEChunk chunk) {
+        if (chunkCache.get(chunk.getWorld(), chunk.getX(), chunk.getZ()) != chunk)
+            return false;
+        chunkCache.remove(chunk.getWorld(), chunk.getX(), chunk.getZ());
+        unindexEmpireChunk(chunk);
+        dirtyTracker.markDeleted(chunk);
+        return true;
     }
 
     public static double getCostOfNewEmpireChunk(Empire empire) {
-        final double numberOfChunks = TEChunk.getEmpireChunks(empire.getId()).size();
+        final double numberOfChunks = getEmpireChunkCount(empire.getId());
         return (double) Math.min(1, (numberOfChunks / 500) * 0.1);
     }
 
+    /**
+     * @return Snapshot of all cached chunks
+     */
     public static List<TEChunk> getChunks() {
-        final List<TEChunk> chunks = new ArrayList<>();
-        for (final Document document : collection.find())
-            chunks.add(new TEChunk(document));
-        return chunks;
+        return chunkCache.values();
     }
 
     public static void deleteChunks(ObjectId empire) {
-        final TEChunk[] chunks = chunkCache.values().toArray(new TEChunk[0]);
-        for (int i = chunks.length - 1; i >= 0; i--) {
-            final TEChunk chunk = chunks[i];
-            if (chunk.getEmpire().getId().equals(empire))
-                chunkCache.remove(chunkToKey(chunk.getWorld(), chunk.getX(), chunk.getZ()));
+        final Set<TEChunk> chunks = empireChunks.remove(empire);
+        if (chunks != null) {
+            for (final TEChunk chunk : chunks) {
+                chunkCache.remove(chunk.getWorld(), chunk.getX(), chunk.getZ());
+                dirtyTracker.markDeleted(chunk);
+            }
         }
-        collection.deleteMany(new Document("empire", empire));
+        WriteBehindQueue.deleteMany(collection, new Document("empire", empire));
     }
 
     public static void deleteChunk(TEChunk chunk) {
-        collection.deleteOne(
+        WriteBehindQueue.delete(
+            collection,
             new Document("world", chunk.getWorld())
                 .append("x", chunk.getX())
                 .append("z", chunk.getZ())
         );
-        chunkCache.remove(chunkToKey(chunk.getWorld(), chunk.getX(), chunk.getZ()));
+        if (chunkCache.remove(chunk.getWorld(), chunk.getX(), chunk.getZ()) != null)
+            unindexEmpireChunk(chunk);
+        dirtyTracker.markDeleted(chunk);
     }
 
+    /**
+     * @return Snapshot of chunks claimed by empire, safe to delete from while iterating
+     */
     public static List<TEChunk> getEmpireChunks(ObjectId id) {
-        final FindIterable<Document> documents = collection.find(new Document("empire", id));
-        final List<TEChunk> chunks = new ArrayList<>();
-        for (final Document document : documents)
-            chunks.add(new TEChunk(document));
-        return chunks;
+        final Set<TEChunk> chunks = empireChunks.get(id);
+        return chunks == null ? new ArrayList<>() : new ArrayList<>(chunks);
     }
 
-    public static TEChunk getChunk(String world, int x, int z) {
-        // check cache
-        final String cacheKey = chunkToKey(world, x, z);
-        final TEChunk cacheChunk = chunkCache.get(cacheKey);
-        if (cacheChunk != null) {
-            return cacheChunk;
-        }
+    public static int getEmpireChunkCount(ObjectId id) {
+        final Set<TEChunk> chunks = empireChunks.get(id);
+        return chunks == null ? 0 : chunks.size();
+    }
 
-        return null;
-        // if cache miss fetch from mongo
-//        final Document document = collection.find(
-//            new Document("world", world)
-//                .append("x", x)
-//                .append("z", z)
-//        ).first();
-//        if (document == null)
-//            return null;
-//        final TEChunk chunk = new TEChunk(document);
-//        chunkCache.put(cacheKey, chunk);
+    public static TEChunk getChunk(String world, int x, int z) {
+        return chunkCache.get(world, x, z);
     }
 
     public boolean equalsChunk(TEChunk chunk) {
@@ -125,7 +161,7 @@ public class TEChunk {
     }
 
     public static TEChunk getChunk(Chunk chunk) {
-        return getChunk(chunk.getWorld().getName(), chunk.getX(), chunk.getZ());
+        return chunkCache.get(chunk);
     }
 
     public static boolean chunkExists(String world, int x, int z) {
@@ -137,23 +173,32 @@ public class TEChunk {
         if (getChunk(world, x, z) != null)
             return;
 
-        final Document document = new Document("world", world)
+        final Document document = newChunkDocument(world, x, z, empire);
+        cacheChunk(new TEChunk(document));
+        WriteBehindQueue.insert(collection, document);
+    }
+
+    static Document newChunkDocument(String world, int x, int z, Empire empire) {
+        // generate ID up front since the insert is deferred
+        return new Document("_id", new ObjectId())
+            .append("world", world)
             .append("x", x)
             .append("z", z)
             .append("empire", empire.getId())
             .append("type", ChunkType.NONE.name());
-        chunkCache.put(chunkToKey(world, x, z), new TEChunk(document));
-        collection.insertOne(document);
     }
 
     public void delete() {
-        collection.deleteOne(
+        WriteBehindQueue.delete(
+            collection,
             new Document("world", world)
                 .append("x", x)
                 .append("z", z)
         );
         DrawEmpire.removeChunk(this, empire);
-        chunkCache.remove(chunkToKey(world, x, z));
+        if (chunkCache.remove(world, x, z) != null)
+            unindexEmpireChunk(this);
+        dirtyTracker.markDeleted(this);
     }
 
     public TEChunk(Document document) {
@@ -203,7 +248,8 @@ public class TEChunk {
     }
 
     private void save(Document document) {
-        collection.updateOne(new Document("_id", id), new Document("$set", document));
+        WriteBehindQueue.set(collection, new Document("_id", id), document);
+        dirtyTracker.markDirty(this);
     }
 
     public ObjectId getId() {
@@ -235,10 +281,20 @@ public class TEChunk {
     }
 
     public void setEmpire(Empire empire) {
-        this.empire = empire;
+        moveToEmpire(empire);
         save(new Document("empire", empire.getId()));
     }
 
+    /**
+     * Changes owner in the cache and indexes without queueing the update
+     */
+    void moveToEmpire(Empire empire) {
+        unindexEmpireChunk(this);
+        this.empire = empire;
+        indexEmpireChunk(this);
+        dirtyTracker.markDirty(this);
+    }
+
     private String chunkCoordinateToBlock(int x, int y, int z) {
         return String.format("%d %d %d", x, y, z);
     }
@@ -253,24 +309,20 @@ public class TEChunk {
     }
 
     public void remove() {
-        chunkCache.remove(chunkToKey(world, x, z));
-        collection.deleteOne(new Document("_id", id));
+        if (chunkCache.remove(world, x, z) != null)
+            unindexEmpireChunk(this);
+        dirtyTracker.markDeleted(this);
+        WriteBehindQueue.delete(collection, new Document("_id", id));
     }
 
     public static void clearCache() {
         chunkCache.clear();
+        empireChunks.clear();
+        dirtyTracker.clear();
     }
 
     public String toString() {
         return world + ' ' + x + ' ' + z;
     }
 
-    public String serialize() {
-        return world + ' ' + x + ' ' + z;
-    }
-
-    public static String serialize(String world, int x, int z) {
-        return world + ' ' + x + ' ' + z;
-    }
-
 }
@@ -1,27 +1,91 @@
 package dev.sucrose.tinyempires.models;
 
+import com.mongodb.MongoException;
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Collation;
+import com.mongodb.client.model.CollationStrength;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
 import dev.sucrose.tinyempires.TinyEmpires;
+import dev.sucrose.tinyempires.utils.CacheDump;
+import dev.sucrose.tinyempires.utils.DirtyTracker;
+import dev.sucrose.tinyempires.utils.FuzzyIndex;
+import dev.sucrose.tinyempires.utils.PlayerSidebar;
+import dev.sucrose.tinyempires.utils.PrefixTrie;
+import dev.sucrose.tinyempires.utils.WriteBehindQueue;
 import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
-import org.bukkit.scoreboard.*;
-
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.UUID;
-import java.util.stream.Collectors;
 
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Players are cached in two tiers. Online players and empire members are pinned and loaded with the other caches,
+ * everyone else is loaded on demand (prefetched while logging in or through {@link #load}) into a bounded cache that
+ * evicts the least recently used player. Evicted players are kept until their queued writes are flushed so they're
+ * never reloaded from a stale document
+ */
 public class TEPlayer {
 
-    final private static Map<UUID, TEPlayer> playerCache = new HashMap<>();
+    private static final int OFFLINE_CACHE_SIZE = 1000;
+
+    // online players and empire members, never evicted, read from Discord threads
+    private static final Map<UUID, TEPlayer> pinnedCache = new ConcurrentHashMap<>();
+    // everyone else, read from Discord threads
+    private static final Map<UUID, TEPlayer> offlineCache = new ConcurrentHashMap<>();
+    // offline cache in least recently used first order, main thread only
+    private static final LinkedHashMap<UUID, Boolean> offlineOrder = new LinkedHashMap<>(16, 0.75f, true);
+    // evicted players whose writes may not have been flushed yet
+    private static final Map<UUID, EvictedPlayer> evictedPlayers = new HashMap<>();
+    // documents fetched while players log in, taken on their first lookup
+    private static final Map<UUID, Document> prefetched = new ConcurrentHashMap<>();
+    // players being read from the database, evicted copies are kept until the reads are done
+    private static final Set<UUID> fetching = ConcurrentHashMap.newKeySet();
+    private static int nameLoadsInFlight = 0;
+    // lowercase name and Discord ID -> player, read from Discord threads
+    private static final Map<String, TEPlayer> nameIndex = new ConcurrentHashMap<>();
+    private static final Map<String, TEPlayer> discordIdIndex = new ConcurrentHashMap<>();
+    private static final PrefixTrie nameTrie = new PrefixTrie();
+    private static final FuzzyIndex nameFuzzyIndex = new FuzzyIndex();
 
     private static final MongoCollection<Document> collection = TinyEmpires.getDatabase().getCollection("players");
+    // case-insensitive name comparison, lookups by name must use it to hit the name index
+    private static final Collation NAME_COLLATION = Collation.builder()
+        .locale("en")
+        .collationStrength(CollationStrength.SECONDARY)
+        .build();
+    private static final DirtyTracker<UUID> dirtyTracker = new DirtyTracker<>();
+
+    private static long hits = 0;
+    private static long misses = 0;
+    private static long databaseLoads = 0;
+    private static final AtomicLong prefetches = new AtomicLong();
+    private static long evictions = 0;
+    private static long flushedEvictions = 0;
+
+    private static class EvictedPlayer {
+
+        private final TEPlayer player;
+        // write ticket covering every write of the player
+        private final long ticket;
+
+        private EvictedPlayer(TEPlayer player, long ticket) {
+            this.player = player;
+            this.ticket = ticket;
+        }
+
+    }
 
     private final UUID playerUUID;
+    private boolean online = false;
     private String name;
     private double balance;
     private ObjectId empire; // empire document ID
@@ -29,26 +93,286 @@ public class TEPlayer {
     private boolean jumpedInAdvancement;
     private String discordId;
 
-    static {
-        fillCache();
+    /**
+     * Collects writes for players changed since the last dump, or every cached player if full
+     */
+    public static CacheDump prepareCacheDump(boolean full) {
+        final Set<UUID> dirty = dirtyTracker.drainDirty();
+        final Set<UUID> deleted = dirtyTracker.drainDeleted();
+        final CacheDump dump = new CacheDump("players", collection);
+        final List<TEPlayer> players = new ArrayList<>(pinnedCache.values());
+        players.addAll(offlineCache.values());
+        for (final TEPlayer player : players) {
+            if (full
+                    || dirty.contains(player.getPlayerUUID()))
+                dump.upsert(new Document("uuid", player.getPlayerUUID().toString()), player.toDocument());
+        }
+        for (final UUID uuid : deleted)
+            dump.delete(new Document("uuid", uuid.toString()));
+        dump.setOnFailure(() -> dirtyTracker.restore(dirty, deleted));
+        return dump;
+    }
+
+    /**
+     * @param documents Documents of online players and empire members, fetched from players online when the fetch
+     *                  started
+     */
+    public static void fillCache(Iterable<Document> documents) {
+        // online players missing from the documents (e.g. joined since the fetch started) keep their cached copy
+        final List<TEPlayer> joined = new ArrayList<>();
+        for (final TEPlayer player : pinnedCache.values()) {
+            if (player.online)
+                joined.add(player);
+        }
+
+        pinnedCache.clear();
+        offlineCache.clear();
+        offlineOrder.clear();
+        evictedPlayers.clear();
+        nameIndex.clear();
+        nameTrie.clear();
+        nameFuzzyIndex.clear();
+        discordIdIndex.clear();
+        dirtyTracker.clear();
+        for (final Document document : documents) {
+            final TEPlayer player = new TEPlayer(document);
+            player.online = Bukkit.getPlayer(player.playerUUID) != null;
+            cachePlayer(player);
+        }
+        for (final TEPlayer player : joined) {
+            if (!pinnedCache.containsKey(player.playerUUID)
+                    && Bukkit.getPlayer(player.playerUUID) != null)
+                cachePlayer(player);
+        }
+    }
+
+    private static void cachePlayer(TEPlayer player) {
+        if (player.isPinned()) {
+            pinnedCache.put(player.playerUUID, player);
+        } else {
+            offlineCache.put(player.playerUUID, player);
+            offlineOrder.put(player.playerUUID, true);
+            trimOfflineCache();
+        }
+        indexName(player);
+        indexDiscordId(player);
     }
 
-    public static void writeCache() {
-        final List<Document> documents =
-            playerCache.values()
-                .stream()
-                .map(TEPlayer::toDocument)
-                .collect(Collectors.toList());
-        collection.deleteMany(new Document());
-        collection.insertMany(documents);
+    private boolean isPinned() {
+        return online
+            || empire != null;
     }
 
-    public static void fillCache() {
-        playerCache.clear();
-        for (final Document document : collection.find()) {
-            final TEPlayer player = new TEPlayer(document);
-            playerCache.put(player.getPlayerUUID(), player);
+    // moves the player between tiers after going on or offline or joining or leaving an empire, added to the new tier
+    // before being removed from the old so concurrent readers always find them
+    private void updateTier() {
+        if (isPinned()) {
+            if (offlineCache.containsKey(playerUUID)) {
+                pinnedCache.put(playerUUID, this);
+                offlineCache.remove(playerUUID);
+                offlineOrder.remove(playerUUID);
+            }
+        } else if (pinnedCache.containsKey(playerUUID)) {
+            offlineCache.put(playerUUID, this);
+            offlineOrder.put(playerUUID, true);
+            pinnedCache.remove(playerUUID);
+            trimOfflineCache();
+        }
+    }
+
+    private static void trimOfflineCache() {
+        final Iterator<UUID> iterator = offlineOrder.keySet().iterator();
+        while (offlineOrder.size() > OFFLINE_CACHE_SIZE) {
+            final UUID uuid = iterator.next();
+            iterator.remove();
+            evict(offlineCache.remove(uuid));
+        }
+    }
+
+    private static void evict(TEPlayer player) {
+        unindexName(player);
+        unindexDiscordId(player);
+        evictions++;
+        // every change was queued as it was made, queue the whole document too so it isn't left to the next dump
+        if (dirtyTracker.markClean(player.playerUUID)) {
+            WriteBehindQueue.set(collection, new Document("uuid", player.playerUUID.toString()), player.toDocument());
+            flushedEvictions++;
+        }
+        purgeEvictedPlayers();
+        evictedPlayers.put(player.playerUUID, new EvictedPlayer(player, WriteBehindQueue.getWriteTicket()));
+    }
+
+    private static void purgeEvictedPlayers() {
+        // a read by name could be for anyone
+        if (nameLoadsInFlight > 0)
+            return;
+        evictedPlayers.values().removeIf(evicted ->
+            WriteBehindQueue.isWritten(evicted.ticket)
+                && !fetching.contains(evicted.player.playerUUID)
+                && !prefetched.containsKey(evicted.player.playerUUID)
+        );
+    }
+
+    /**
+     * Caches a player who isn't cached from an evicted copy or a prefetched document
+     * @return Null if neither exist
+     */
+    private static TEPlayer restore(UUID uuid) {
+        final EvictedPlayer evicted = evictedPlayers.remove(uuid);
+        if (evicted != null) {
+            cachePlayer(evicted.player);
+            return evicted.player;
+        }
+        final Document document = prefetched.remove(uuid);
+        if (document == null)
+            return null;
+        final TEPlayer player = new TEPlayer(document);
+        cachePlayer(player);
+        return player;
+    }
+
+    /**
+     * Creates the indexes players are loaded on demand by, blocks so must not be called on the main thread
+     */
+    public static void createIndexes() {
+        collection.createIndex(Indexes.ascending("uuid"));
+        collection.createIndex(Indexes.ascending("name"), new IndexOptions().collation(NAME_COLLATION));
+    }
+
+    /**
+     * Fetches the document of a player logging in so it's cached by the time they join, called off the main thread
+     * @throws com.mongodb.MongoException If the document couldn't be fetched
+     */
+    public static void prefetch(UUID uuid) {
+        fetching.add(uuid);
+        try {
+            final Document document = collection.find(new Document("uuid", uuid.toString())).first();
+            if (document != null)
+                prefetched.put(uuid, document);
+            prefetches.incrementAndGet();
+        } finally {
+            fetching.remove(uuid);
+        }
+    }
+
+    /**
+     * Drops the prefetched document of a player whose login was denied
+     */
+    public static void discardPrefetched(UUID uuid) {
+        prefetched.remove(uuid);
+    }
+
+    /**
+     * Looks the player up and loads them from the database off the main thread if they aren't cached
+     * @param callback Run on the main thread with the player, null if they've never joined
+     */
+    public static void load(UUID uuid, Consumer<TEPlayer> callback) {
+        final TEPlayer cached = getTEPlayer(uuid);
+        if (cached != null) {
+            callback.accept(cached);
+            return;
         }
+        fetching.add(uuid);
+        fetch(collection.find(new Document("uuid", uuid.toString())), document -> {
+            fetching.remove(uuid);
+            callback.accept(cacheFetched(uuid, document));
+        });
+    }
+
+    /**
+     * @param name Player name, case-insensitive
+     * @param callback Run on the main thread with the player, null if no player has the name
+     */
+    public static void load(String name, Consumer<TEPlayer> callback) {
+        final TEPlayer cached = getTEPlayer(name);
+        if (cached != null) {
+            callback.accept(cached);
+            return;
+        }
+        nameLoadsInFlight++;
+        fetch(collection.find(Filters.eq("name", name)).collation(NAME_COLLATION), document -> {
+            nameLoadsInFlight--;
+            callback.accept(document == null
+                ? getTEPlayer(name)
+                : cacheFetched(UUID.fromString(document.getString("uuid")), document));
+        });
+    }
+
+    private static void fetch(FindIterable<Document> query, Consumer<Document> callback) {
+        Bukkit.getScheduler().runTaskAsynchronously(TinyEmpires.getInstance(), () -> {
+            Document document = null;
+            try {
+                document = query.first();
+            } catch (MongoException err) {
+                System.out.println(ChatColor.RED + "Failed to load player from the database");
+                err.printStackTrace();
+            }
+            final Document fetched = document;
+            Bukkit.getScheduler().runTask(TinyEmpires.getInstance(), () -> callback.accept(fetched));
+        });
+    }
+
+    // the cached or evicted copy wins over the fetched document if the player was loaded in the meantime
+    private static TEPlayer cacheFetched(UUID uuid, Document document) {
+        final TEPlayer cached = getTEPlayer(uuid);
+        if (cached != null
+                || document == null)
+            return cached;
+        databaseLoads++;
+        final TEPlayer player = new TEPlayer(document);
+        cachePlayer(player);
+        return player;
+    }
+
+    private static String toNameKey(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private static void indexName(TEPlayer player) {
+        if (player.name == null)
+            return;
+        nameIndex.put(toNameKey(player.name), player);
+        nameTrie.insert(player.name);
+        nameFuzzyIndex.add(player.name);
+    }
+
+    private static void unindexName(TEPlayer player) {
+        if (player.name != null
+                && nameIndex.remove(toNameKey(player.name), player)) {
+            nameTrie.remove(player.name);
+            nameFuzzyIndex.remove(player.name);
+        }
+    }
+
+    /**
+     * @return Known player name closest to name, null if none is close
+     */
+    public static String suggestName(String name) {
+        return nameFuzzyIndex.suggest(name);
+    }
+
+    /**
+     * @return Name of an online player closest to name, null if none is close
+     */
+    public static String suggestOnlineName(String name) {
+        return nameFuzzyIndex.suggest(name, n -> Bukkit.getPlayerExact(n) != null);
+    }
+
+    /**
+     * @return Up to limit names of players passing filter that start with prefix (case-insensitive), alphabetically
+     */
+    public static List<String> completeNames(String prefix, int limit, Predicate<TEPlayer> filter) {
+        return nameTrie.complete(prefix, limit, name -> filter.test(getTEPlayer(name)));
+    }
+
+    private static void indexDiscordId(TEPlayer player) {
+        if (player.discordId != null)
+            discordIdIndex.put(player.discordId, player);
+    }
+
+    private static void unindexDiscordId(TEPlayer player) {
+        if (player.discordId != null)
+            discordIdIndex.remove(player.discordId, player);
     }
 
     public static TEPlayer createPlayer(UUID uuid, String name) {
@@ -60,37 +384,90 @@ public class TEPlayer {
         document.put("position", null);
         document.put("jumped_in", false);
         document.put("discord_id", null);
-        collection.insertOne(document);
-        playerCache.put(uuid, new TEPlayer(document));
-        return getTEPlayer(uuid);
+        WriteBehindQueue.insert(collection, document);
+        final TEPlayer player = new TEPlayer(document);
+        prefetched.remove(uuid);
+        cachePlayer(player);
+        dirtyTracker.markDirty(uuid);
+        return player;
     }
 
+    /**
+     * @param name Player name, case-insensitive
+     */
     public static TEPlayer getTEPlayer(String name) {
-        for (final TEPlayer p : playerCache.values()) {
-            if (p.getName().equals(name))
-                return p;
-        }
-        return null;
+        return name == null ? null : nameIndex.get(toNameKey(name));
     }
 
     public static TEPlayer getTEPlayerFromDiscordId(String discordId) {
-        for (final TEPlayer p : playerCache.values()) {
-            if (p.getDiscordId() != null
-                    && p.getDiscordId().equals(discordId))
-                return p;
-        }
-        return null;
+        return discordId == null ? null : discordIdIndex.get(discordId);
     }
 
+    /**
+     * @return Cached player, null if they aren't cached (see {@link #load}) or have never joined
+     */
     public static TEPlayer getTEPlayer(UUID uuid) {
-        // check cache for player
-        if (playerCache.containsKey(uuid))
-            return playerCache.get(uuid);
-        return null;
+        if (uuid == null)
+            return null;
+        final TEPlayer pinned = pinnedCache.get(uuid);
+        if (pinned != null)
+            return pinned;
+        // Discord threads only read, least recently used order and counts are kept by the main thread
+        if (!Bukkit.isPrimaryThread())
+            return offlineCache.get(uuid);
+
+        final TEPlayer player = offlineCache.get(uuid);
+        if (player != null) {
+            hits++;
+            // access order, moves the player to the most recently used end
+            offlineOrder.get(uuid);
+            return player;
+        }
+        misses++;
+        return restore(uuid);
+    }
+
+    /**
+     * @return Name of the player, from the server's user cache if they aren't cached
+     */
+    public static String getName(UUID uuid) {
+        final TEPlayer player = getTEPlayer(uuid);
+        if (player != null)
+            return player.name;
+        final String name = Bukkit.getOfflinePlayer(uuid).getName();
+        return name == null ? uuid.toString() : name;
+    }
+
+    public static List<String> getStats() {
+        final List<String> stats = new ArrayList<>();
+        final long lookups = hits + misses;
+        stats.add(String.format(
+            "Cached: %d pinned, %d/%d offline, %d evicted awaiting writes",
+            pinnedCache.size(),
+            offlineCache.size(),
+            OFFLINE_CACHE_SIZE,
+            evictedPlayers.size()
+        ));
+        stats.add(String.format(
+            "Offline lookups: %d hits, %d misses (%.1f%% hit rate)",
+            hits,
+            misses,
+            lookups == 0 ? 0 : hits * 100d / lookups
+        ));
+        stats.add(String.format(
+            "Loaded: %d on demand, %d prefetched on login",
+            databaseLoads,
+            prefetches.get()
+        ));
+        stats.add(String.format(
+            "Evicted: %d, %d with unsaved changes flushed",
+            evictions,
+            flushedEvictions
+        ));
+        return stats;
     }
 
     public TEPlayer(Document document) {
-        System.out.println(document.toJson());
         this.playerUUID = UUID.fromString(document.getString("uuid"));
         this.name = document.getString("name");
         this.balance = document.getDouble("balance");
@@ -101,7 +478,7 @@ public class TEPlayer {
     }
 
     public Document toDocument() {
-        return new Document("uuid", playerUUID)
+        return new Document("uuid", playerUUID.toString())
             .append("name", name)
             .append("balance", balance)
             .append("empire", empire)
@@ -110,13 +487,6 @@ public class TEPlayer {
             .append("discord_id", discordId);
     }
 
-    private static final ScoreboardManager manager;
-    static {
-        manager = Bukkit.getScoreboardManager();
-        if (manager == null)
-            throw new NullPointerException("Bukkit#getScoreboardManager() returned null on initialization");
-    }
-
     private static String formatSecondsToTime(int seconds) {
         final int minutes = seconds / 60;
         final int secondsLeft = seconds % 60;
@@ -130,97 +500,92 @@ public class TEPlayer {
     }
 
     public void updatePlayerScoreboard() {
-        final Player player = Bukkit.getPlayer(playerUUID);
-        if (player == null)
-            return;
-
-        final Scoreboard scoreboard = manager.getNewScoreboard();
-
-        final Objective objective = scoreboard.registerNewObjective(
-            "title",
-            "dummy",
-            "" + ChatColor.YELLOW + ChatColor.BOLD + "Pixel Empires"
-        );
-        objective.setDisplaySlot(DisplaySlot.SIDEBAR);
+        PlayerSidebar.markDirty(playerUUID);
+    }
 
+    /**
+     * @return Sidebar entries from the bottom up
+     */
+    public List<String> getSidebarLines(Player player) {
+        final List<String> lines = new ArrayList<>();
         final TEChunk chunk = TEChunk.getChunk(player.getLocation().getChunk());
-        int line = 1;
 
         // website
-        objective.getScore(ChatColor.YELLOW + "www.pixelempiresmc.net").setScore(line++);
+        lines.add(ChatColor.YELLOW + "www.pixelempiresmc.net");
 
         // spacing
-        objective.getScore("").setScore(line++);
+        lines.add("");
 
         // chunk type
         if (chunk != null
                 && chunk.getType() != ChunkType.NONE)
-            objective.getScore("" +
+            lines.add("" +
                 (chunk.getType() == ChunkType.TEMPLE
                     ? ChatColor.GREEN
                     : ChatColor.GOLD)
                 + ChatColor.BOLD + chunk.getType().name()
-            ).setScore(line++);
+            );
 
         // location empire
-        objective.getScore(chunk == null ? ChatColor.GRAY + "Wilderness" :
-            chunk.getEmpire().getChatColor() + chunk.getEmpire().getName()).setScore(line++);
+        lines.add(chunk == null ? ChatColor.GRAY + "Wilderness" :
+            chunk.getEmpire().getChatColor() + chunk.getEmpire().getName());
 
         // location header
-        objective.getScore(ChatColor.BOLD + "Location").setScore(line++);
+        lines.add(ChatColor.BOLD + "Location");
 
         // spacing, color for uniqueness
-        objective.getScore(ChatColor.RED + "").setScore(line++);
+        lines.add(ChatColor.RED + "");
 
         // empire reserve
         if (empire != null) {
-            objective.getScore("Reserve: " + ChatColor.GREEN + String.format(
+            lines.add("Reserve: " + ChatColor.GREEN + String.format(
                 "%.1f coins",
                 getEmpire().getReserve()
-            )).setScore(line++);
-            objective.getScore("Position: " + (position == null ? ChatColor.GRAY + "Unassigned" :
-                ChatColor.GREEN + position)).setScore(line++);
+            ));
+            lines.add("Position: " + (position == null ? ChatColor.GRAY + "Unassigned" :
+                ChatColor.GREEN + position));
         }
 
         // player empire
         if (empire == null || getEmpire().getAtWarWith() == null) {
-            objective.getScore(empire == null ? ChatColor.GRAY + "Unaffiliated" :
-                "Name: " + getEmpire().getChatColor() + getEmpire().getName()).setScore(line++);
-            objective.getScore(ChatColor.BOLD + "Empire").setScore(line++);
+            lines.add(empire == null ? ChatColor.GRAY + "Unaffiliated" :
+                "Name: " + getEmpire().getChatColor() + getEmpire().getName());
+            lines.add(ChatColor.BOLD + "Empire");
         }
 
         if (empire != null) {
             final Empire empire = getEmpire();
             if (empire.isWaitingForWar()) {
                 final Empire atWarWith = empire.getAtWarWith();
-                objective.getScore(ChatColor.LIGHT_PURPLE + "").setScore(line++);
-                objective.getScore(atWarWith.getChatColor() + atWarWith.getName()).setScore(line++);
-                objective.getScore("" + ChatColor.YELLOW + ChatColor.BOLD +
+                lines.add(ChatColor.LIGHT_PURPLE + "");
+                lines.add(atWarWith.getChatColor() + atWarWith.getName());
+                lines.add("" + ChatColor.YELLOW + ChatColor.BOLD +
                     String.format("War in %s", formatSecondsToTime(empire.getTimeLeftToWar()))
-                ).setScore(line++);
+                );
             } else if (empire.getAtWarWith() != null) {
                 final Empire atWarWith = empire.getAtWarWith();
-                objective.getScore(ChatColor.LIGHT_PURPLE + "").setScore(line++);
-                objective.getScore(atWarWith.getChatColor() + atWarWith.getName()).setScore(line++);
-                objective.getScore("" + ChatColor.RED + ChatColor.BOLD +
+                lines.add(ChatColor.LIGHT_PURPLE + "");
+                lines.add(atWarWith.getChatColor() + atWarWith.getName());
+                lines.add("" + ChatColor.RED + ChatColor.BOLD +
                     String.format("War (%s)", formatSecondsToTime(empire.getTimeLeftInWar()))
-                ).setScore(line++);
+                );
             }
         }
 
         // spacing, color for uniqueness
-        objective.getScore("" + ChatColor.DARK_GREEN).setScore(line++);
+        lines.add("" + ChatColor.DARK_GREEN);
 
         // balance
-        objective.getScore("Balance: " + ChatColor.GREEN + String.format("%.1f coins", balance)).setScore(line++);
+        lines.add("Balance: " + ChatColor.GREEN + String.format("%.1f coins", balance));
 
         // spacing, color for uniqueness
-        objective.getScore("" + ChatColor.AQUA).setScore(line);
-        player.setScoreboard(scoreboard);
+        lines.add("" + ChatColor.AQUA);
+        return lines;
     }
 
     private void save(Document document) {
-        collection.updateOne(new Document("uuid", playerUUID.toString()), new Document("$set", document));
+        WriteBehindQueue.set(collection, new Document("uuid", playerUUID.toString()), document);
+        dirtyTracker.markDirty(playerUUID);
         updatePlayerScoreboard();
     }
 
@@ -229,7 +594,9 @@ public class TEPlayer {
     }
 
     public void setName(String name) {
+        unindexName(this);
         this.name = name;
+        indexName(this);
         save(new Document("name", name));
     }
 
@@ -265,7 +632,19 @@ public class TEPlayer {
 
     public void setEmpireId(ObjectId id) {
         this.empire = id;
+        AccessMatrix.invalidate();
         save(new Document("empire", id));
+        updateTier();
+    }
+
+    /**
+     * Called when the player joins or leaves the server
+     */
+    public void setOnline(boolean online) {
+        this.online = online;
+        // anything fetched before joining is older than this copy
+        prefetched.remove(playerUUID);
+        updateTier();
     }
 
     public void leaveEmpire() {
@@ -292,6 +671,7 @@ public class TEPlayer {
 
     public void setPositionName(String position) {
         this.position = position;
+        AccessMatrix.invalidate();
         save(new Document("position", position));
     }
 
@@ -313,7 +693,9 @@ public class TEPlayer {
     }
 
     public void setDiscordId(String discordId) {
+        unindexDiscordId(this);
         this.discordId = discordId;
+        indexDiscordId(this);
         save(new Document("discord_id", discordId));
     }
 
@@ -0,0 +1,191 @@
+package dev.sucrose.tinyempires.models;
+
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import dev.sucrose.tinyempires.utils.DrawEmpire;
+import dev.sucrose.tinyempires.utils.WriteBehindQueue;
+import org.bson.Document;
+import org.bukkit.ChatColor;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Claims, unclaims and ownership transfers staged and committed together. Committing updates the chunk cache and
+ * indexes in one pass, queues every write as one bulk write and leaves the map to redraw each affected region once on
+ * its next flush. Main thread only
+ */
+public class TerritoryBatch {
+
+    // batches this large are logged to console
+    private static final int LOGGED_BATCH_SIZE = 100;
+
+    private static class Claim {
+
+        private final String world;
+        private final int x;
+        private final int z;
+        private final Empire empire;
+
+        Claim(String world, int x, int z, Empire empire) {
+            this.world = world;
+            this.x = x;
+            this.z = z;
+            this.empire = empire;
+        }
+
+    }
+
+    private final List<Claim> claims = new ArrayList<>();
+    private final Map<TEChunk, Empire> transfers = new LinkedHashMap<>();
+    private final Set<TEChunk> unclaims = new LinkedHashSet<>();
+    private final List<Empire> dissolved = new ArrayList<>();
+    private boolean committed = false;
+    private long latencyNanos = 0;
+
+    // metrics across batches
+    private static long batches = 0;
+    private static long changedChunks = 0;
+    private static long lastLatencyNanos = 0;
+    private static long maxLatencyNanos = 0;
+    private static long totalLatencyNanos = 0;
+
+    /**
+     * Stages a claim, skipped on commit if the chunk has been claimed since
+     */
+    public TerritoryBatch claim(String world, int x, int z, Empire empire) {
+        claims.add(new Claim(world, x, z, empire));
+        return this;
+    }
+
+    public TerritoryBatch transfer(TEChunk chunk, Empire empire) {
+        transfers.put(chunk, empire);
+        return this;
+    }
+
+    public TerritoryBatch unclaim(TEChunk chunk) {
+        unclaims.add(chunk);
+        return this;
+    }
+
+    /**
+     * Stages unclaiming every chunk of an empire, deleted with a single write and erased from the map region by
+     * region instead of chunk by chunk
+     */
+    public TerritoryBatch unclaimAll(Empire empire) {
+        dissolved.add(empire);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return claims.isEmpty()
+            && transfers.isEmpty()
+            && unclaims.isEmpty()
+            && dissolved.isEmpty();
+    }
+
+    /**
+     * Applies every staged change, unclaims first then transfers then claims
+     * @return Number of chunks changed
+     */
+    public int commit() {
+        if (committed)
+            throw new IllegalStateException("Territory batch already committed");
+        committed = true;
+
+        final long start = System.nanoTime();
+        final List<WriteModel<Document>> writes = new ArrayList<>();
+        int changed = 0;
+        for (final Empire empire : dissolved) {
+            for (final TEChunk chunk : TEChunk.getEmpireChunks(empire.getId())) {
+                if (TEChunk.uncacheChunk(chunk))
+                    changed++;
+            }
+            writes.add(new DeleteManyModel<>(new Document("empire", empire.getId())));
+            DrawEmpire.removeEmpireChunks(empire.getId());
+        }
+
+        for (final TEChunk chunk : unclaims) {
+            if (!TEChunk.uncacheChunk(chunk))
+                continue;
+            writes.add(new DeleteOneModel<>(new Document("_id", chunk.getId())));
+            DrawEmpire.removeChunk(chunk, chunk.getEmpire());
+            changed++;
+        }
+
+        for (final Map.Entry<TEChunk, Empire> transfer : transfers.entrySet()) {
+            final TEChunk chunk = transfer.getKey();
+            final Empire empire = transfer.getValue();
+            // unclaimed since staged
+            if (TEChunk.getChunk(chunk.getWorld(), chunk.getX(), chunk.getZ()) != chunk)
+                continue;
+            chunk.moveToEmpire(empire);
+            writes.add(new UpdateOneModel<>(
+                new Document("_id", chunk.getId()),
+                new Document("$set", new Document("empire", empire.getId()))
+            ));
+            DrawEmpire.setEmpire(chunk.getWorld(), chunk.getX(), chunk.getZ(), empire);
+            changed++;
+        }
+
+        for (final Claim claim : claims) {
+            if (TEChunk.getChunk(claim.world, claim.x, claim.z) != null)
+                continue;
+            final Document document = TEChunk.newChunkDocument(claim.world, claim.x, claim.z, claim.empire);
+            TEChunk.cacheChunk(new TEChunk(document));
+            writes.add(new InsertOneModel<>(document));
+            DrawEmpire.drawChunk(claim.empire, claim.world, claim.x, claim.z);
+            changed++;
+        }
+
+        WriteBehindQueue.bulkWrite(TEChunk.collection, writes);
+        latencyNanos = System.nanoTime() - start;
+        record(changed, latencyNanos);
+        if (changed >= LOGGED_BATCH_SIZE)
+            System.out.println(ChatColor.GRAY + String.format(
+                "Committed territory batch of %d chunks (%d writes) in %.2fms",
+                changed,
+                writes.size(),
+                latencyNanos / 1e6
+            ));
+        return changed;
+    }
+
+    /**
+     * @return Time commit took, 0 before committing
+     */
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    private static void record(int changed, long latencyNanos) {
+        batches++;
+        changedChunks += changed;
+        lastLatencyNanos = latencyNanos;
+        maxLatencyNanos = Math.max(maxLatencyNanos, latencyNanos);
+        totalLatencyNanos += latencyNanos;
+    }
+
+    /**
+     * @return Batch counts and commit latency as lines for /stats
+     */
+    public static List<String> getStats() {
+        final List<String> stats = new ArrayList<>();
+        stats.add(String.format(
+            "Committed: %d batches, %d chunks changed",
+            batches,
+            changedChunks
+        ));
+        stats.add(String.format(
+            "Latency: %.2fms last, %.2fms average, %.2fms max",
+            lastLatencyNanos / 1e6,
+            batches == 0 ? 0 : totalLatencyNanos / 1e6 / batches,
+            maxLatencyNanos / 1e6
+        ));
+        return stats;
+    }
+
+}
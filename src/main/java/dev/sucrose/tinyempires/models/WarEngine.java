@@ -0,0 +1,133 @@
+package dev.sucrose.tinyempires.models;
+
+import dev.sucrose.tinyempires.TinyEmpires;
+import dev.sucrose.tinyempires.utils.ChunkMap;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.*;
+
+/**
+ * Drives every chunk contest from one ticker. Which players stand in which chunk is indexed from movement events so
+ * a contest only looks at the players inside its own chunk
+ */
+public class WarEngine {
+
+    private static final int CONTEST_TICK_INTERVAL_TICKS = 20;
+
+    private static class Occupancy {
+
+        private final String world;
+        private final int x;
+        private final int z;
+
+        Occupancy(String world, int x, int z) {
+            this.world = world;
+            this.x = x;
+            this.z = z;
+        }
+
+    }
+
+    private static final ChunkMap<Set<UUID>> occupants = new ChunkMap<>();
+    private static final Map<UUID, Occupancy> playerOccupancy = new HashMap<>();
+    private static final ChunkMap<ChunkContest> contests = new ChunkMap<>();
+    private static int tickTaskId = -1;
+
+    /**
+     * Moves the player to the chunk of location in the occupancy index
+     */
+    public static void updateOccupant(UUID uuid, Location location) {
+        final World world = location.getWorld();
+        if (world == null)
+            return;
+        final String worldName = world.getName();
+        final int x = location.getBlockX() >> 4;
+        final int z = location.getBlockZ() >> 4;
+
+        final Occupancy previous = playerOccupancy.get(uuid);
+        if (previous != null) {
+            if (previous.world.equals(worldName)
+                    && previous.x == x
+                    && previous.z == z)
+                return;
+            removeFromChunk(uuid, previous);
+        }
+
+        Set<UUID> chunkOccupants = occupants.get(worldName, x, z);
+        if (chunkOccupants == null) {
+            chunkOccupants = new HashSet<>();
+            occupants.put(worldName, x, z, chunkOccupants);
+        }
+        chunkOccupants.add(uuid);
+        playerOccupancy.put(uuid, new Occupancy(worldName, x, z));
+    }
+
+    public static void removeOccupant(UUID uuid) {
+        final Occupancy previous = playerOccupancy.remove(uuid);
+        if (previous != null)
+            removeFromChunk(uuid, previous);
+    }
+
+    private static void removeFromChunk(UUID uuid, Occupancy occupancy) {
+        final Set<UUID> chunkOccupants = occupants.get(occupancy.world, occupancy.x, occupancy.z);
+        if (chunkOccupants == null)
+            return;
+        chunkOccupants.remove(uuid);
+        if (chunkOccupants.isEmpty())
+            occupants.remove(occupancy.world, occupancy.x, occupancy.z);
+    }
+
+    /**
+     * @return Players in the chunk, empty if none
+     */
+    public static Set<UUID> getOccupants(String world, int x, int z) {
+        final Set<UUID> chunkOccupants = occupants.get(world, x, z);
+        return chunkOccupants == null ? Collections.emptySet() : chunkOccupants;
+    }
+
+    public static boolean isContested(TEChunk chunk) {
+        return contests.contains(chunk.getWorld(), chunk.getX(), chunk.getZ());
+    }
+
+    /**
+     * Starts a contest over the chunk and advances it immediately, no-op if the chunk is already contested
+     */
+    public static void startContest(TEChunk chunk, Empire attacker, Empire defender) {
+        if (isContested(chunk))
+            return;
+
+        final ChunkContest contest = new ChunkContest(chunk, attacker, defender);
+        if (contest.tick(getOccupants(chunk.getWorld(), chunk.getX(), chunk.getZ())))
+            return;
+
+        contests.put(chunk.getWorld(), chunk.getX(), chunk.getZ(), contest);
+        if (tickTaskId == -1)
+            tickTaskId = Bukkit.getScheduler().scheduleSyncRepeatingTask(
+                TinyEmpires.getInstance(),
+                WarEngine::tick,
+                CONTEST_TICK_INTERVAL_TICKS,
+                CONTEST_TICK_INTERVAL_TICKS
+            );
+    }
+
+    public static void endContest(TEChunk chunk) {
+        contests.remove(chunk.getWorld(), chunk.getX(), chunk.getZ());
+    }
+
+    private static void tick() {
+        // contests may conquer chunks and end themselves while iterating
+        for (final ChunkContest contest : contests.values()) {
+            final TEChunk chunk = contest.getChunk();
+            if (contest.tick(getOccupants(chunk.getWorld(), chunk.getX(), chunk.getZ())))
+                endContest(chunk);
+        }
+
+        if (contests.size() == 0) {
+            Bukkit.getScheduler().cancelTask(tickTaskId);
+            tickTaskId = -1;
+        }
+    }
+
+}
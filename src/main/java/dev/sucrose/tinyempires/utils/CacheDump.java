@@ -0,0 +1,82 @@
+package dev.sucrose.tinyempires.utils;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.*;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Upserts and deletes for one collection collected from a model cache on the main thread, queued on the
+ * {@link WriteBehindQueue} in the same tick so they're ordered with every other write
+ */
+public class CacheDump {
+
+    private final String name;
+    private final MongoCollection<Document> collection;
+    private final List<WriteModel<Document>> writes = new ArrayList<>();
+    private int upserts = 0;
+    private int deletes = 0;
+    private Runnable onFailure;
+    private final AtomicBoolean failed = new AtomicBoolean();
+
+    public CacheDump(String name, MongoCollection<Document> collection) {
+        this.name = name;
+        this.collection = collection;
+    }
+
+    public void upsert(Document filter, Document document) {
+        writes.add(new ReplaceOneModel<>(filter, document, new ReplaceOptions().upsert(true)));
+        upserts++;
+    }
+
+    public void delete(Document filter) {
+        writes.add(new DeleteOneModel<>(filter));
+        deletes++;
+    }
+
+    /**
+     * @param onFailure Run if writing fails, e.g. to mark the drained documents dirty again
+     */
+    public void setOnFailure(Runnable onFailure) {
+        this.onFailure = onFailure;
+    }
+
+    /**
+     * Queues the writes, must be called on the main thread in the tick the dump was prepared so writes queued before
+     * it are applied before it and writes queued after it after it
+     */
+    public void queue() {
+        WriteBehindQueue.bulkWrite(collection, writes, () -> {
+            if (failed.compareAndSet(false, true)
+                    && onFailure != null)
+                onFailure.run();
+        });
+    }
+
+    /**
+     * @return Whether any write was rejected or given up on
+     */
+    public boolean hasFailed() {
+        return failed.get();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getUpserts() {
+        return upserts;
+    }
+
+    public int getDeletes() {
+        return deletes;
+    }
+
+    public int size() {
+        return writes.size();
+    }
+
+}
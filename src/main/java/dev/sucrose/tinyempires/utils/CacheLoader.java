@@ -0,0 +1,211 @@
+package dev.sucrose.tinyempires.utils;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import dev.sucrose.tinyempires.TinyEmpires;
+import dev.sucrose.tinyempires.models.Empire;
+import dev.sucrose.tinyempires.models.TEChest;
+import dev.sucrose.tinyempires.models.TEChunk;
+import dev.sucrose.tinyempires.models.TEPlayer;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Boot pipeline for the model caches. Collections are fetched in parallel off the main thread once queued writes have
+ * been flushed, then the caches are built on the main thread in dependency order (players before empires before
+ * chunks) so cross-references resolve. Logins are blocked while loading, but changes online players make while the
+ * collections are being fetched are discarded when the caches are rebuilt
+ */
+public class CacheLoader {
+
+    private static final int CURSOR_BATCH_SIZE = 2000;
+
+    private static volatile boolean ready = false;
+    private static boolean loading = false;
+
+    private static class CollectionFetch {
+
+        private final String name;
+        private final CompletableFuture<List<Document>> documents;
+        private volatile long fetchMillis;
+
+        CollectionFetch(ExecutorService executor, long writeTicket, String name, Bson projection) {
+            this.name = name;
+            this.documents = CompletableFuture.supplyAsync(() -> {
+                // read what the queue has been told to write, not what it has written so far
+                if (!WriteBehindQueue.awaitWritten(writeTicket))
+                    System.out.println(ChatColor.DARK_RED + "Timed out flushing queued writes before fetching "
+                        + name + ", some recent changes may be missing");
+                return fetch(new Document(), projection);
+            }, executor);
+        }
+
+        /**
+         * Fetches the documents matching the filter once it's known, on the thread completing it
+         */
+        CollectionFetch(String name, Bson projection, CompletableFuture<Bson> filter) {
+            this.name = name;
+            this.documents = filter.thenApply(f -> fetch(f, projection));
+        }
+
+        private List<Document> fetch(Bson filter, Bson projection) {
+            final long start = System.nanoTime();
+            final List<Document> documents = new ArrayList<>();
+            TinyEmpires.getDatabase()
+                .getCollection(name)
+                .find(filter)
+                .projection(projection)
+                .batchSize(CURSOR_BATCH_SIZE)
+                .into(documents);
+            fetchMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            return documents;
+        }
+
+    }
+
+    /**
+     * @return Whether caches have been loaded at least once since startup
+     */
+    public static boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * @return Whether caches are being (re)loaded, main thread only
+     */
+    public static boolean isLoading() {
+        return loading;
+    }
+
+    /**
+     * (Re)loads every model cache, must be called from the main thread
+     * @param onLoaded Run on the main thread once caches are built, not run if loading fails
+     */
+    public static void load(Runnable onLoaded) {
+        if (loading)
+            throw new IllegalStateException("Caches are already being loaded");
+        loading = true;
+
+        final long writeTicket = WriteBehindQueue.getWriteTicket();
+        final long start = System.nanoTime();
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(5, runnable -> {
+            final Thread thread = new Thread(runnable, "TinyEmpires-CacheLoader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        final CollectionFetch empires = new CollectionFetch(
+            executor,
+            writeTicket,
+            "empires",
+            Projections.include("name", "reserve", "description", "color", "members", "positions", "laws", "debt",
+                "owner", "home", "discord_id", "allies", "warps")
+        );
+        // only online players and empire members are pinned in the player cache, the rest load on demand
+        final Set<String> onlinePlayers = new HashSet<>();
+        for (final Player player : Bukkit.getOnlinePlayers())
+            onlinePlayers.add(player.getUniqueId().toString());
+        final CollectionFetch players = new CollectionFetch(
+            "players",
+            Projections.fields(
+                Projections.include("uuid", "name", "balance", "empire", "position", "jumped_in", "discord_id"),
+                Projections.excludeId()
+            ),
+            empires.documents.thenApply(documents -> {
+                final Set<String> uuids = new HashSet<>(onlinePlayers);
+                for (final Document document : documents)
+                    uuids.addAll(document.getList("members", String.class));
+                return Filters.or(
+                    Filters.ne("empire", null),
+                    Filters.in("uuid", uuids)
+                );
+            })
+        );
+        final CollectionFetch chunks = new CollectionFetch(
+            executor,
+            writeTicket,
+            "chunks",
+            Projections.include("world", "x", "z", "empire", "type")
+        );
+        final CollectionFetch chests = new CollectionFetch(
+            executor,
+            writeTicket,
+            "chests",
+            Projections.fields(
+                Projections.include("world", "x", "y", "z", "owner"),
+                Projections.excludeId()
+            )
+        );
+        final CollectionFetch censors = new CollectionFetch(
+            executor,
+            writeTicket,
+            "censored_curses",
+            Projections.fields(
+                Projections.include("text"),
+                Projections.excludeId()
+            )
+        );
+        executor.shutdown();
+
+        CompletableFuture.allOf(
+            players.documents,
+            empires.documents,
+            chunks.documents,
+            chests.documents,
+            censors.documents
+        ).whenComplete((result, err) -> Bukkit.getScheduler().runTask(TinyEmpires.getInstance(), () -> {
+            loading = false;
+            if (err != null) {
+                System.out.println(ChatColor.DARK_RED + "Failed to fetch caches from Mongo, logins stay blocked " +
+                    "until they are loaded with /refreshcaches");
+                err.printStackTrace();
+                return;
+            }
+
+            final long fetchMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            // dependency order: empires resolve members, chunks resolve empires
+            build(players, TEPlayer::fillCache);
+            build(empires, Empire::fillCache);
+            build(chunks, TEChunk::fillCache);
+            build(chests, TEChest::fillCache);
+            build(censors, CensorUtils::fillCensors);
+            System.out.println(ChatColor.GREEN + String.format(
+                "Loaded caches in %dms (%dms fetching in parallel)",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                fetchMillis
+            ));
+
+            ready = true;
+            onLoaded.run();
+        }));
+    }
+
+    private static void build(CollectionFetch fetch, Consumer<List<Document>> fill) {
+        final List<Document> documents = fetch.documents.join();
+        final long start = System.nanoTime();
+        fill.accept(documents);
+        System.out.println(ChatColor.GREEN + String.format(
+            "Loaded %d %s documents (fetched in %dms, built in %dms)",
+            documents.size(),
+            fetch.name,
+            fetch.fetchMillis,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+        ));
+    }
+
+}
@@ -0,0 +1,146 @@
+package dev.sucrose.tinyempires.utils;
+
+import java.util.*;
+
+/**
+ * Aho-Corasick automaton over every censored word so a message is censored in one pass however many words there are.
+ * Matching ignores case and spaces between letters, immutable once compiled so it can be shared between threads
+ */
+public class CensorAutomaton {
+
+    private static final int ROOT = 0;
+
+    private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+    private final List<Integer> depths = new ArrayList<>();
+    // number of #s to replace a match ending in the state with, -1 if no word ends there
+    private final List<Integer> replacementLengths = new ArrayList<>();
+    private int[] fail;
+    // closest state on the fail chain a word ends in, -1 if none
+    private int[] outputLink;
+
+    private CensorAutomaton() {
+        addState(0);
+    }
+
+    public static CensorAutomaton compile(Collection<String> censors) {
+        final CensorAutomaton automaton = new CensorAutomaton();
+        for (final String censor : censors)
+            automaton.addWord(censor);
+        automaton.link();
+        return automaton;
+    }
+
+    private int addState(int depth) {
+        transitions.add(new HashMap<>());
+        depths.add(depth);
+        replacementLengths.add(-1);
+        return transitions.size() - 1;
+    }
+
+    private void addWord(String censor) {
+        int state = ROOT;
+        for (int i = 0; i < censor.length(); i++) {
+            final char c = censor.charAt(i);
+            if (c == ' ')
+                continue;
+            final Character key = Character.toLowerCase(c);
+            Integer next = transitions.get(state).get(key);
+            if (next == null) {
+                next = addState(depths.get(state) + 1);
+                transitions.get(state).put(key, next);
+            }
+            state = next;
+        }
+
+        if (state != ROOT
+                && replacementLengths.get(state) == -1)
+            replacementLengths.set(state, censor.length());
+    }
+
+    private void link() {
+        fail = new int[transitions.size()];
+        outputLink = new int[transitions.size()];
+        outputLink[ROOT] = -1;
+
+        // breadth first so fail targets, always shallower, are linked before their dependents
+        final Deque<Integer> queue = new ArrayDeque<>();
+        for (final int child : transitions.get(ROOT).values()) {
+            fail[child] = ROOT;
+            outputLink[child] = -1;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            final int state = queue.poll();
+            for (final Map.Entry<Character, Integer> transition : transitions.get(state).entrySet()) {
+                final int child = transition.getValue();
+                fail[child] = step(fail[state], transition.getKey());
+                outputLink[child] = replacementLengths.get(fail[child]) != -1
+                    ? fail[child]
+                    : outputLink[fail[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    private int step(int state, Character c) {
+        while (true) {
+            final Integer next = transitions.get(state).get(c);
+            if (next != null)
+                return next;
+            if (state == ROOT)
+                return ROOT;
+            state = fail[state];
+        }
+    }
+
+    /**
+     * Replaces censored words with #s, spaces inside a match are dropped with it
+     */
+    public String censor(String message) {
+        if (transitions.get(ROOT).isEmpty())
+            return message;
+
+        // index in message of each non-space character fed to the automaton
+        final int[] positions = new int[message.length()];
+        // start, end (both in positions) and replacement length of every match
+        List<int[]> matches = null;
+        int fed = 0;
+        int state = ROOT;
+        for (int i = 0; i < message.length(); i++) {
+            final char c = message.charAt(i);
+            if (c == ' ')
+                continue;
+            positions[fed] = i;
+            state = step(state, Character.toLowerCase(c));
+
+            int output = replacementLengths.get(state) != -1 ? state : outputLink[state];
+            while (output != -1) {
+                if (matches == null)
+                    matches = new ArrayList<>();
+                matches.add(new int[] { fed - depths.get(output) + 1, fed, replacementLengths.get(output) });
+                output = outputLink[output];
+            }
+            fed++;
+        }
+        if (matches == null)
+            return message;
+
+        // leftmost, then longest, matches win overlaps
+        matches.sort((a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(b[1], a[1]));
+        final StringBuilder censored = new StringBuilder(message.length());
+        int copied = 0;
+        int lastEnd = -1;
+        for (final int[] match : matches) {
+            if (match[0] <= lastEnd)
+                continue;
+            lastEnd = match[1];
+            censored.append(message, copied, positions[match[0]]);
+            for (int i = 0; i < match[2]; i++)
+                censored.append('#');
+            copied = positions[match[1]] + 1;
+        }
+        censored.append(message, copied, message.length());
+        return censored.toString();
+    }
+
+}
@@ -5,68 +5,52 @@ import dev.sucrose.tinyempires.TinyEmpires;
 import org.bson.Document;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class CensorUtils {
 
-    private static final List<String> censors = new ArrayList<>();
+    // chat and Discord threads read while commands mutate, the automaton is swapped whole on every change
+    private static final List<String> censors = new CopyOnWriteArrayList<>();
+    private static volatile CensorAutomaton automaton = CensorAutomaton.compile(Collections.emptyList());
     private static final MongoCollection<Document> collection =
         TinyEmpires.getDatabase().getCollection("censored_curses");
 
-    static {
-        fetchCensors();
-    }
-
     public static List<String> getCensors() {
         return censors;
     }
 
-    public static void addCensor(String censor) {
-        censors.add(censor);
-        collection.insertOne(new Document("text", censor));
-    }
-
-    public static void removeCensor(String censor) {
-        censors.remove(censor);
-        collection.deleteOne(new Document("text", censor));
+    private static void recompile() {
+        automaton = CensorAutomaton.compile(censors);
     }
 
-    public static void fetchCensors() {
-        collection.find().forEach(curseDoc -> censors.add(curseDoc.getString("text")));
+    public static synchronized void addCensor(String censor) {
+        censors.add(censor);
+        recompile();
+        WriteBehindQueue.insert(collection, new Document("text", censor));
     }
 
-    private static String curseToHashtags(String curse) {
-        final StringBuilder stringBuilder = new StringBuilder();
-        for (int i = 0; i < curse.length(); i++)
-            stringBuilder.append('#');
-        return stringBuilder.toString();
+    public static synchronized void removeCensor(String censor) {
+        censors.remove(censor);
+        recompile();
+        WriteBehindQueue.delete(collection, new Document("text", censor));
     }
 
-    private static String getCurseCensorRegex(String curse) {
-        final StringBuilder stringBuilder = new StringBuilder();
-        for (int i = 0; i < curse.length(); i++)
-            stringBuilder
-                .append("(")
-                .append(curse.charAt(i))
-                .append("|")
-                .append(String.valueOf(curse.charAt(i)).toUpperCase())
-                .append(")").append(
-                    i == curse.length() - 1
-                        ? ""
-                        : " *");
-        return stringBuilder.toString();
+    public static synchronized void fillCensors(Iterable<Document> documents) {
+        final List<String> filled = new ArrayList<>();
+        for (final Document document : documents)
+            filled.add(document.getString("text"));
+        censors.clear();
+        censors.addAll(filled);
+        recompile();
     }
 
+    /**
+     * Censors every censored word in one pass, safe to call from async chat threads
+     */
     public static String censorCurses(String message) {
-        String newMessage = message;
-        for (final String censor : censors) {
-            newMessage = newMessage
-                .replaceAll(
-                    getCurseCensorRegex(censor),
-                    curseToHashtags(censor)
-                );
-        }
-        return newMessage;
+        return automaton.censor(message);
     }
 
 }
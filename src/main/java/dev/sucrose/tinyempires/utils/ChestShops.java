@@ -0,0 +1,197 @@
+package dev.sucrose.tinyempires.utils;
+
+import dev.sucrose.tinyempires.models.TEChest;
+import org.bukkit.Tag;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.Chest;
+import org.bukkit.block.DoubleChest;
+import org.bukkit.block.Sign;
+import org.bukkit.block.data.Directional;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.util.Vector;
+
+/**
+ * Parsed price of every chest shop clicked since it last changed, so buying a slot is a single lookup instead of
+ * reading the chest and sign block states and parsing the sign each click (owners are already indexed by
+ * {@link TEChest}). Entries are resolved from the world on first use and invalidated by the block changes that could
+ * alter them: sign edits, placing and breaking, pistons and explosions. Signs can also drop without an event at their
+ * position (e.g. a standing sign losing the block below it to water), so the signs a price was read from are checked
+ * to still be there on every hit. Main thread only
+ */
+public class ChestShops {
+
+    public enum Status {
+        PRICED,
+        // no sign or no parseable price on it
+        NOT_A_SHOP,
+        // both signs of a double chest have prices and they differ
+        CONFLICTING_PRICES
+    }
+
+    public static class Shop {
+
+        private final Status status;
+        private final double price;
+        // signs the price was read from
+        private final Block[] signs;
+
+        private Shop(Status status, double price, Block... signs) {
+            this.status = status;
+            this.price = price;
+            this.signs = signs;
+        }
+
+        private boolean hasSigns() {
+            for (final Block sign : signs) {
+                if (!Tag.SIGNS.isTagged(sign.getType()))
+                    return false;
+            }
+            return true;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public double getPrice() {
+            return price;
+        }
+
+    }
+
+    // a sign or other half of a double chest is at most this many blocks (manhattan) from a chest it prices
+    private static final int INVALIDATION_RADIUS = 2;
+
+    // chunk -> packed block position -> shop, both halves of a double chest have an entry
+    private static final ChunkMap<LongHashMap<Shop>> shops = new ChunkMap<>();
+    private static final Shop NOT_A_SHOP = new Shop(Status.NOT_A_SHOP, 0);
+
+    /**
+     * @param chest Chest block clicked
+     * @param holder Holder of the chest's inventory, single or double chest
+     * @return Shop of the chest, resolved from the world if not cached
+     */
+    public static Shop getShop(Block chest, InventoryHolder holder) {
+        final String world = chest.getWorld().getName();
+        final LongHashMap<Shop> bucket = shops.get(world, chest.getX() >> 4, chest.getZ() >> 4);
+        if (bucket != null) {
+            final Shop shop = bucket.get(TEChest.packBlock(chest.getX(), chest.getY(), chest.getZ()));
+            if (shop != null
+                    && shop.hasSigns())
+                return shop;
+        }
+
+        final Shop shop = resolve(chest, holder);
+        if (shop == null)
+            return null;
+        if (holder instanceof DoubleChest) {
+            // either half resolves to the same shop
+            put(((Chest) ((DoubleChest) holder).getLeftSide()).getBlock(), shop);
+            put(((Chest) ((DoubleChest) holder).getRightSide()).getBlock(), shop);
+        } else {
+            put(chest, shop);
+        }
+        return shop;
+    }
+
+    private static void put(Block chest, Shop shop) {
+        final String world = chest.getWorld().getName();
+        LongHashMap<Shop> bucket = shops.get(world, chest.getX() >> 4, chest.getZ() >> 4);
+        if (bucket == null) {
+            bucket = new LongHashMap<>();
+            shops.put(world, chest.getX() >> 4, chest.getZ() >> 4, bucket);
+        }
+        bucket.put(TEChest.packBlock(chest.getX(), chest.getY(), chest.getZ()), shop);
+    }
+
+    /**
+     * Reads the price off the sign in front of the chest, or either sign for a double chest
+     * @return Null if the block is not a chest or the double chest is missing a side
+     */
+    private static Shop resolve(Block block, InventoryHolder holder) {
+        final BlockState blockState = block.getState();
+        if (!(blockState instanceof Chest))
+            return null;
+
+        final Chest chest = (Chest) blockState;
+        final Vector directionVector = ((Directional) chest.getBlockData()).getFacing().getDirection();
+        if (holder instanceof DoubleChest) {
+            final DoubleChest doubleChest = (DoubleChest) holder;
+            final Chest leftChest = (Chest) doubleChest.getLeftSide();
+            final Chest rightChest = (Chest) doubleChest.getRightSide();
+            if (leftChest == null
+                    || rightChest == null)
+                return null;
+
+            final Block leftSign = getSign(leftChest.getBlock(), directionVector);
+            final Block rightSign = getSign(rightChest.getBlock(), directionVector);
+            final Double leftSignPrice = getSignPrice(leftSign);
+            final Double rightSignPrice = getSignPrice(rightSign);
+            if (rightSignPrice != null
+                    && leftSignPrice != null
+                    && !rightSignPrice.equals(leftSignPrice))
+                return new Shop(Status.CONFLICTING_PRICES, 0, leftSign, rightSign);
+            if (rightSignPrice == null
+                    && leftSignPrice == null)
+                return NOT_A_SHOP;
+            // there must be one valid price
+            return rightSignPrice == null
+                ? new Shop(Status.PRICED, leftSignPrice, leftSign)
+                : new Shop(Status.PRICED, rightSignPrice, rightSign);
+        } else if (holder instanceof Chest) {
+            final Block sign = getSign(block, directionVector);
+            final Double price = getSignPrice(sign);
+            return price == null
+                ? NOT_A_SHOP
+                : new Shop(Status.PRICED, price, sign);
+        }
+        return NOT_A_SHOP;
+    }
+
+    /**
+     * @return Block the chest faces, where its sign would be
+     */
+    private static Block getSign(Block chest, Vector directionVector) {
+        // add chest direction vector to location to get would-be sign location
+        return chest.getLocation().add(directionVector).getBlock();
+    }
+
+    /**
+     * @return Price on the last line of the sign, null if the block isn't a sign or has no price
+     */
+    private static Double getSignPrice(Block block) {
+        final BlockState sign = block.getState();
+        if (!(sign instanceof Sign))
+            return null;
+        try {
+            return Double.parseDouble(((Sign) sign).getLine(3));
+        } catch (NumberFormatException ignore) {
+            return null;
+        }
+    }
+
+    /**
+     * Drops cached shops a change to the block could affect: chests it is a sign of or the other half of, and chests
+     * priced by a standing sign on top of it
+     */
+    public static void invalidate(Block block) {
+        invalidate(block.getWorld().getName(), block.getX(), block.getY(), block.getZ());
+        invalidate(block.getWorld().getName(), block.getX(), block.getY() + 1, block.getZ());
+    }
+
+    public static void invalidate(String world, int x, int y, int z) {
+        for (int dx = -INVALIDATION_RADIUS; dx <= INVALIDATION_RADIUS; dx++) {
+            final int reach = INVALIDATION_RADIUS - Math.abs(dx);
+            for (int dz = -reach; dz <= reach; dz++) {
+                final LongHashMap<Shop> bucket = shops.get(world, (x + dx) >> 4, (z + dz) >> 4);
+                if (bucket == null)
+                    continue;
+                bucket.remove(TEChest.packBlock(x + dx, y, z + dz));
+                if (bucket.isEmpty())
+                    shops.remove(world, (x + dx) >> 4, (z + dz) >> 4);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+package dev.sucrose.tinyempires.utils;
+
+import org.bukkit.Chunk;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Per-world map from chunk coordinates to values. Coordinates are packed into a single long so lookups hash no
+ * strings and allocate nothing (world names cache their own hash codes)
+ * @param <V> Value type
+ */
+public class ChunkMap<V> {
+
+    public interface ChunkConsumer<V> {
+        void accept(String world, int x, int z, V value);
+    }
+
+    private final Map<String, LongHashMap<V>> worlds = new HashMap<>();
+
+    public static long pack(int x, int z) {
+        return ((long) x << 32) | (z & 0xffffffffL);
+    }
+
+    public static int unpackX(long key) {
+        return (int) (key >> 32);
+    }
+
+    public static int unpackZ(long key) {
+        return (int) key;
+    }
+
+    public V get(String world, int x, int z) {
+        final LongHashMap<V> chunks = worlds.get(world);
+        return chunks == null ? null : chunks.get(pack(x, z));
+    }
+
+    public V get(Chunk chunk) {
+        return get(chunk.getWorld().getName(), chunk.getX(), chunk.getZ());
+    }
+
+    public boolean contains(String world, int x, int z) {
+        return get(world, x, z) != null;
+    }
+
+    public V put(String world, int x, int z, V value) {
+        return worlds
+            .computeIfAbsent(world, w -> new LongHashMap<>())
+            .put(pack(x, z), value);
+    }
+
+    public V remove(String world, int x, int z) {
+        final LongHashMap<V> chunks = worlds.get(world);
+        return chunks == null ? null : chunks.remove(pack(x, z));
+    }
+
+    public int size() {
+        int size = 0;
+        for (final LongHashMap<V> chunks : worlds.values())
+            size += chunks.size();
+        return size;
+    }
+
+    public void clear() {
+        worlds.clear();
+    }
+
+    public void forEach(ChunkConsumer<V> consumer) {
+        for (final Map.Entry<String, LongHashMap<V>> entry : worlds.entrySet()) {
+            final String world = entry.getKey();
+            entry.getValue().forEach((key, value) -> consumer.accept(world, unpackX(key), unpackZ(key), value));
+        }
+    }
+
+    public void forEachValue(Consumer<V> consumer) {
+        for (final LongHashMap<V> chunks : worlds.values())
+            chunks.forEachValue(consumer);
+    }
+
+    /**
+     * @return Snapshot of values across all worlds
+     */
+    public List<V> values() {
+        final List<V> values = new ArrayList<>();
+        for (final LongHashMap<V> chunks : worlds.values())
+            values.addAll(chunks.values());
+        return values;
+    }
+
+}
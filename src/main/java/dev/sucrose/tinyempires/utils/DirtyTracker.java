@@ -0,0 +1,70 @@
+package dev.sucrose.tinyempires.utils;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Tracks keys of cached documents changed or deleted since the last cache dump
+ * @param <K> Document key type
+ */
+public class DirtyTracker<K> {
+
+    private Set<K> dirty = new HashSet<>();
+    private Set<K> deleted = new HashSet<>();
+
+    public synchronized void markDirty(K key) {
+        deleted.remove(key);
+        dirty.add(key);
+    }
+
+    /**
+     * Stops tracking a key whose document was written out some other way
+     * @return Whether the key was dirty
+     */
+    public synchronized boolean markClean(K key) {
+        return dirty.remove(key);
+    }
+
+    public synchronized void markDeleted(K key) {
+        dirty.remove(key);
+        deleted.add(key);
+    }
+
+    /**
+     * @return Keys changed since last drain, tracking is reset afterwards
+     */
+    public synchronized Set<K> drainDirty() {
+        final Set<K> drained = dirty;
+        dirty = new HashSet<>();
+        return drained;
+    }
+
+    /**
+     * @return Keys deleted since last drain, tracking is reset afterwards
+     */
+    public synchronized Set<K> drainDeleted() {
+        final Set<K> drained = deleted;
+        deleted = new HashSet<>();
+        return drained;
+    }
+
+    /**
+     * Puts drained keys back after a failed dump, keys touched in the meantime keep their newer state
+     */
+    public synchronized void restore(Set<K> drainedDirty, Set<K> drainedDeleted) {
+        for (final K key : drainedDirty) {
+            if (!deleted.contains(key))
+                dirty.add(key);
+        }
+        for (final K key : drainedDeleted) {
+            if (!dirty.contains(key))
+                deleted.add(key);
+        }
+    }
+
+    public synchronized void clear() {
+        dirty.clear();
+        deleted.clear();
+    }
+
+}
@@ -6,22 +6,40 @@ import org.bson.types.ObjectId;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.ConsoleCommandSender;
+import org.bukkit.scheduler.BukkitRunnable;
 import org.dynmap.DynmapAPI;
 import org.dynmap.markers.*;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 public class DrawEmpire {
 
     private static final MarkerSet markerSet;
-    private static final Map<String, ChunkMarker> chunkMarkers = new HashMap<>();
-    private static final Map<ObjectId, List<String>> empireChunkMarkers = new HashMap<>();
+    private static final ChunkMap<RegionMarker> chunkRegions = new ChunkMap<>();
+    private static final Map<ObjectId, Set<RegionMarker>> empireRegions = new HashMap<>();
+    // regions whose chunks changed and need their outline re-traced, linked so the draw job can pop them cheaply
+    private static final Set<RegionMarker> pendingRedraws = new LinkedHashSet<>();
+    private static final ChunkMap<Marker> chunkIcons = new ChunkMap<>();
+
+    // marker updates are coalesced and flushed at most once per interval
+    private static final long MARKER_FLUSH_INTERVAL_TICKS = 10;
+    private static final Map<ObjectId, Empire> pendingDescriptions = new HashMap<>();
+    private static final Map<ObjectId, Empire> pendingColors = new HashMap<>();
+    private static final ChunkMap<ChunkType> pendingIcons = new ChunkMap<>();
+    private static int flushTaskId = -1;
+
+    private static final int[] NEIGHBOUR_DX = { 1, -1, 0, 0 };
+    private static final int[] NEIGHBOUR_DZ = { 0, 0, 1, -1 };
     private static final Map<ObjectId, Icon> empireHomeMarkers = new HashMap<>();
 
+    // full map draws are spread over ticks so startup and redraws don't freeze the server
+    private static final long DRAW_JOB_TICK_BUDGET_NANOS = 10_000_000;
+    private static final int DRAW_JOB_PROGRESS_INTERVAL_TICKS = 40;
+    private static MapDrawJob drawJob = null;
+
     static {
         markerSet = TinyEmpires.getDynmap()
             .getMarkerAPI()
@@ -113,21 +131,152 @@ public class DrawEmpire {
         }
     }
 
-    public static void draw() {
-        for (final TEChunk chunk : TEChunk.getChunks()) {
-            if (chunk.getEmpire() == null
-                    || chunk.getWorld() == null) {
-                System.out.println("Invalid world or empire for chunk: " + chunk);
-                continue;
+    private enum MapDrawStage {
+        CHUNKS,
+        OUTLINES,
+        HOMES
+    }
+
+    /**
+     * Resumable job drawing every cached chunk, region outline and home marker within a time budget per tick
+     */
+    private static class MapDrawJob extends BukkitRunnable {
+
+        private final CommandSender sender;
+        private final List<TEChunk> chunks = TEChunk.getChunks();
+        private final List<Empire> empires = new ArrayList<>(Empire.getEmpires());
+        private final Map<ObjectId, String> descriptions = new HashMap<>();
+        private final long start = System.currentTimeMillis();
+        private MapDrawStage stage = MapDrawStage.CHUNKS;
+        private int chunkIndex = 0;
+        private int outlinesDrawn = 0;
+        private int empireIndex = 0;
+        private int ticks = 0;
+
+        MapDrawJob(CommandSender sender) {
+            this.sender = sender;
+        }
+
+        @Override
+        public void run() {
+            final long deadline = System.nanoTime() + DRAW_JOB_TICK_BUDGET_NANOS;
+            while (System.nanoTime() < deadline) {
+                if (!step()) {
+                    finish();
+                    return;
+                }
             }
-            drawChunk(chunk.getEmpire(), chunk.getWorld(), chunk.getX(), chunk.getZ());
+            if (++ticks % DRAW_JOB_PROGRESS_INTERVAL_TICKS == 0)
+                report(ChatColor.YELLOW + String.format(
+                    "Drawing map: %d/%d chunks, %d region outlines, %d/%d homes",
+                    chunkIndex,
+                    chunks.size(),
+                    outlinesDrawn,
+                    empireIndex,
+                    empires.size()
+                ));
         }
-        for (final Empire empire : Empire.getEmpires()) {
-            final Location homeLocation = empire.getHomeLocation();
-            if (homeLocation == null)
-                return;
-            makeHomeMarkerIcon(empire);
+
+        /**
+         * @return Whether there is work left
+         */
+        private boolean step() {
+            switch (stage) {
+                case CHUNKS:
+                    if (chunkIndex == chunks.size()) {
+                        stage = MapDrawStage.OUTLINES;
+                        return true;
+                    }
+                    final TEChunk chunk = chunks.get(chunkIndex++);
+                    // skip chunks unclaimed since the snapshot
+                    if (chunk.getEmpire() == null
+                            || chunk.getWorld() == null
+                            || TEChunk.getChunk(chunk.getWorld(), chunk.getX(), chunk.getZ()) != chunk)
+                        return true;
+                    addChunk(chunk.getEmpire(), chunk.getWorld(), chunk.getX(), chunk.getZ());
+                    if (chunk.getType() != ChunkType.NONE)
+                        setMarkerType(chunk.getWorld(), chunk.getX(), chunk.getZ(), chunk.getType());
+                    return true;
+                case OUTLINES:
+                    if (pendingRedraws.isEmpty()) {
+                        stage = MapDrawStage.HOMES;
+                        return true;
+                    }
+                    final Iterator<RegionMarker> iterator = pendingRedraws.iterator();
+                    final RegionMarker region = iterator.next();
+                    iterator.remove();
+                    region.redraw(getEmpireDescription(descriptions, region.getEmpire()));
+                    outlinesDrawn++;
+                    return true;
+                case HOMES:
+                    if (empireIndex == empires.size())
+                        return false;
+                    final Empire empire = empires.get(empireIndex++);
+                    if (empire.getHomeLocation() != null
+                            && Empire.getEmpire(empire.getId()) == empire)
+                        makeHomeMarkerIcon(empire);
+                    return true;
+                default:
+                    return false;
+            }
         }
+
+        private void finish() {
+            cancel();
+            drawJob = null;
+            // descriptions, colors and icons queued while drawing
+            flushMarkerUpdates();
+            report(ChatColor.GREEN + String.format(
+                "Drew map: %d chunks in %d regions and %d homes in %dms over %d ticks",
+                chunks.size(),
+                outlinesDrawn,
+                empireHomeMarkers.size(),
+                System.currentTimeMillis() - start,
+                ticks + 1
+            ));
+        }
+
+        private void report(String message) {
+            System.out.println(message);
+            if (sender != null
+                    && !(sender instanceof ConsoleCommandSender))
+                sender.sendMessage(message);
+        }
+
+    }
+
+    /**
+     * Starts drawing every cached chunk and home over the next ticks
+     * @param sender Receives progress reports if not null
+     */
+    public static void draw(@Nullable CommandSender sender) {
+        if (drawJob != null)
+            drawJob.cancel();
+        drawJob = new MapDrawJob(sender);
+        drawJob.runTaskTimer(TinyEmpires.getInstance(), 0, 1);
+    }
+
+    /**
+     * Erases every empire marker and draws the map again from the cache
+     */
+    public static void redraw(@Nullable CommandSender sender) {
+        if (drawJob != null) {
+            drawJob.cancel();
+            drawJob = null;
+        }
+        for (final Set<RegionMarker> regions : empireRegions.values())
+            regions.forEach(RegionMarker::erase);
+        empireRegions.clear();
+        chunkRegions.clear();
+        pendingRedraws.clear();
+        chunkIcons.forEachValue(Marker::deleteMarker);
+        chunkIcons.clear();
+        pendingIcons.clear();
+        pendingDescriptions.clear();
+        pendingColors.clear();
+        empireHomeMarkers.values().forEach(Icon::delete);
+        empireHomeMarkers.clear();
+        draw(sender);
     }
 
     public static void makeHomeMarkerIcon(Empire empire) {
@@ -170,121 +319,264 @@ public class DrawEmpire {
         empireHomeMarkers.remove(empire);
     }
 
-    private static boolean chunkEmpiresDiffer(TEChunk chunk, int x, int z) {
-        final TEChunk chunk1 = TEChunk.getChunk(chunk.getWorld(), x, z);
-        return !chunk.getEmpire().getId().equals(chunk1 == null ? null : chunk1.getEmpire().getId());
+    public static void drawChunk(Empire empire, String world, int x, int z) {
+        addChunk(empire, world, x, z);
+        scheduleFlush();
     }
 
-    private static void eraseChunkBorderIfExists(String world, int x, int z, Direction direction) {
-        final ChunkMarker marker = getChunkMarker(world, x, z);
-        if (marker != null && marker.hasBorder(direction))
-            marker.removeBorder(direction);
+    public static void updateEmpireChunksDescription(Empire empire) {
+        pendingColors.put(empire.getId(), empire);
+        scheduleFlush();
     }
 
-    public static void drawChunk(Empire empire, String world, int x, int z) {
-        final ChunkMarker marker = new ChunkMarker(empire, world, x, z);
-        chunkMarkers.put(
-            TEChunk.serialize(world, x, z),
-            marker
-        );
+    public static void updateEmpireChunkDescriptions(Empire empire) {
+        pendingDescriptions.put(empire.getId(), empire);
+        scheduleFlush();
+    }
 
-        final TEChunk chunk = TEChunk.getChunk(world, x, z);
-        if (chunk == null)
-            throw new NullPointerException("Could not fetch TEChunk for chunk empire comparison");
+    public static void removeChunk(TEChunk chunk, Empire owner) {
+        final String world = chunk.getWorld();
+        final int x = chunk.getX();
+        final int z = chunk.getZ();
+        removeFromRegion(world, x, z);
+        setMarkerType(world, x, z, ChunkType.NONE);
+    }
 
-        if (chunkEmpiresDiffer(chunk, x + 1, z)) {
-            marker.makeBorder(Direction.RIGHT);
-        } else {
-            eraseChunkBorderIfExists(world, x + 1, z, Direction.LEFT);
+    /**
+     * Erases every region of an empire at once instead of removing its chunks one by one
+     */
+    public static void removeEmpireChunks(ObjectId empire) {
+        final Set<RegionMarker> regions = empireRegions.remove(empire);
+        if (regions == null)
+            return;
+        for (final RegionMarker region : regions) {
+            final String world = region.getWorld();
+            region.getChunks().forEach(chunk -> {
+                final int x = ChunkMap.unpackX(chunk);
+                final int z = ChunkMap.unpackZ(chunk);
+                chunkRegions.remove(world, x, z);
+                if (chunkIcons.contains(world, x, z))
+                    pendingIcons.put(world, x, z, ChunkType.NONE);
+            });
+            region.erase();
+            pendingRedraws.remove(region);
         }
+        pendingDescriptions.remove(empire);
+        pendingColors.remove(empire);
+        scheduleFlush();
+    }
 
-        if (chunkEmpiresDiffer(chunk, x - 1, z)) {
-            marker.makeBorder(Direction.LEFT);
-        } else {
-            eraseChunkBorderIfExists(world, x - 1, z, Direction.RIGHT);
+    public static void setMarkerType(String world, int x, int z, ChunkType type) {
+        pendingIcons.put(world, x, z, type);
+        scheduleFlush();
+    }
+
+    private static void scheduleFlush() {
+        if (flushTaskId != -1)
+            return;
+        flushTaskId = Bukkit.getScheduler().scheduleSyncDelayedTask(
+            TinyEmpires.getInstance(),
+            DrawEmpire::flushMarkerUpdates,
+            MARKER_FLUSH_INTERVAL_TICKS
+        );
+    }
+
+    /**
+     * Applies every outline, description, color and icon update queued since the last flush
+     */
+    private static void flushMarkerUpdates() {
+        if (flushTaskId != -1) {
+            Bukkit.getScheduler().cancelTask(flushTaskId);
+            flushTaskId = -1;
         }
 
-        if (chunkEmpiresDiffer(chunk, x, z + 1)) {
-            marker.makeBorder(Direction.DOWN);
-        } else {
-            eraseChunkBorderIfExists(world, x, z + 1, Direction.UP);
+        // descriptions are rendered once per empire and shared by all its regions
+        final Map<ObjectId, String> descriptions = new HashMap<>();
+        // a running draw job traces outlines itself within its time budget
+        if (drawJob == null) {
+            for (final RegionMarker region : pendingRedraws)
+                region.redraw(getEmpireDescription(descriptions, region.getEmpire()));
+            pendingRedraws.clear();
         }
 
-        if (chunkEmpiresDiffer(chunk, x, z - 1)) {
-            marker.makeBorder(Direction.UP);
-        } else {
-            eraseChunkBorderIfExists(world, x, z - 1, Direction.DOWN);
+        for (final Empire empire : pendingDescriptions.values()) {
+            final Set<RegionMarker> regions = empireRegions.get(empire.getId());
+            if (regions == null)
+                continue;
+            final String description = getEmpireDescription(descriptions, empire);
+            for (final RegionMarker region : regions)
+                region.setDescription(description);
+        }
+        pendingDescriptions.clear();
+
+        for (final Empire empire : pendingColors.values()) {
+            final Set<RegionMarker> regions = empireRegions.get(empire.getId());
+            if (regions == null)
+                continue;
+            for (final RegionMarker region : regions)
+                region.updateColor();
         }
+        pendingColors.clear();
 
-        putChunkMarker(empire, world, x, z, marker);
+        pendingIcons.forEach(DrawEmpire::drawIcon);
+        pendingIcons.clear();
     }
 
-    public static void updateEmpireChunksDescription(Empire empire) {
-        for (final String key : empireChunkMarkers.get(empire.getId()))
-            chunkMarkers.get(key).updateColor();
+    private static String getEmpireDescription(Map<ObjectId, String> descriptions, Empire empire) {
+        return descriptions.computeIfAbsent(empire.getId(), id -> RegionMarker.generateEmpireDescription(empire));
     }
 
-    public static void updateEmpireChunkDescriptions(Empire empire) {
-        final List<String> markerKeys = empireChunkMarkers.get(empire.getId());
-        if (markerKeys == null)
+    private static void drawIcon(String world, int x, int z, ChunkType type) {
+        final Marker icon = chunkIcons.remove(world, x, z);
+        if (icon != null)
+            icon.deleteMarker();
+        // leave marker deleted
+        if (type == ChunkType.NONE)
             return;
-        for (final String key : markerKeys)
-            chunkMarkers.get(key).updateDescription();
+        chunkIcons.put(world, x, z, markerSet.createMarker(
+            "__chunkMarker" + world + " " + x + " " + z,
+            type == ChunkType.TRADING ? "Trading" : "Temple",
+            world,
+            x * 16 + 8,
+            64,
+            z * 16 + 8,
+            getMarkerAPI().getMarkerIcon(type == ChunkType.TRADING ? "chest" : "temple"),
+            false
+        ));
     }
 
-    public static void removeChunk(TEChunk chunk, Empire owner) {
-        final String world = chunk.getWorld();
-        final int x = chunk.getX();
-        final int z = chunk.getZ();
-        final String key = TEChunk.serialize(world, x, z);
-        chunkMarkers.get(key).erase();
-        chunkMarkers.remove(key);
-        empireChunkMarkers.get(owner.getId()).remove(TEChunk.serialize(world, x, z));
-
-        // borders
-        // right
-        if (TEChunk.chunkExists(world, x + 1, z))
-            getChunkMarker(world, x + 1, z).makeBorder(Direction.LEFT);
+    private static void addChunk(Empire empire, String world, int x, int z) {
+        if (chunkRegions.contains(world, x, z))
+            removeFromRegion(world, x, z);
+
+        // claiming can join every adjacent region of the same empire
+        RegionMarker region = null;
+        for (int i = 0; i < NEIGHBOUR_DX.length; i++) {
+            final RegionMarker neighbour = chunkRegions.get(world, x + NEIGHBOUR_DX[i], z + NEIGHBOUR_DZ[i]);
+            if (neighbour == null
+                    || neighbour == region
+                    || !neighbour.getEmpire().getId().equals(empire.getId()))
+                continue;
+            region = region == null ? neighbour : mergeRegions(region, neighbour);
+        }
 
-        // left
-        if (TEChunk.chunkExists(world, x - 1, z))
-            getChunkMarker(world, x - 1, z).makeBorder(Direction.RIGHT);
+        if (region == null)
+            region = createRegion(empire, world);
+        region.getChunks().add(ChunkMap.pack(x, z));
+        chunkRegions.put(world, x, z, region);
+        pendingRedraws.add(region);
+        // chunk count in description changed
+        pendingDescriptions.put(empire.getId(), empire);
+    }
 
-        // below
-        if (TEChunk.chunkExists(world, x, z + 1))
-            getChunkMarker(world, x, z + 1).makeBorder(Direction.UP);
+    private static void removeFromRegion(String world, int x, int z) {
+        final RegionMarker region = chunkRegions.remove(world, x, z);
+        if (region == null)
+            return;
+        region.getChunks().remove(ChunkMap.pack(x, z));
+        pendingDescriptions.put(region.getEmpire().getId(), region.getEmpire());
+        if (region.getChunks().isEmpty()) {
+            deleteRegion(region);
+            return;
+        }
 
-        // above
-        if (TEChunk.chunkExists(world, x, z - 1))
-            getChunkMarker(world, x, z - 1).makeBorder(Direction.DOWN);
+        final List<Long> neighbours = new ArrayList<>(NEIGHBOUR_DX.length);
+        for (int i = 0; i < NEIGHBOUR_DX.length; i++) {
+            final int nx = x + NEIGHBOUR_DX[i];
+            final int nz = z + NEIGHBOUR_DZ[i];
+            if (chunkRegions.get(world, nx, nz) == region)
+                neighbours.add(ChunkMap.pack(nx, nz));
+        }
+        // a chunk with a single neighbour in its region can't be holding it together
+        if (neighbours.size() > 1)
+            splitRegion(region, neighbours);
+        pendingRedraws.add(region);
     }
 
-    private static ChunkMarker getChunkMarker(String world, int x, int z) {
-        return chunkMarkers.get(TEChunk.serialize(world, x, z));
+    private static RegionMarker createRegion(Empire empire, String world) {
+        final RegionMarker region = new RegionMarker(empire, world);
+        empireRegions
+            .computeIfAbsent(empire.getId(), e -> new HashSet<>())
+            .add(region);
+        return region;
     }
 
-    private static void putChunkMarker(Empire empire, String world, int x, int z, ChunkMarker marker) {
-        final String key = TEChunk.serialize(world, x, z);
-        chunkMarkers.put(key, marker);
-        if (empireChunkMarkers.containsKey(empire.getId())) {
-            empireChunkMarkers.get(empire.getId()).add(key);
+    private static void deleteRegion(RegionMarker region) {
+        region.erase();
+        pendingRedraws.remove(region);
+        final ObjectId empireId = region.getEmpire().getId();
+        final Set<RegionMarker> regions = empireRegions.get(empireId);
+        if (regions == null)
             return;
-        }
-        final List<String> chunkKeys = new ArrayList<>();
-        chunkKeys.add(key);
-        empireChunkMarkers.put(empire.getId(), chunkKeys);
+        regions.remove(region);
+        if (regions.isEmpty())
+            empireRegions.remove(empireId);
     }
 
-    private static void removeChunkMarker(Empire empire, String world, int x, int z) {
-        final String key = TEChunk.serialize(world, x, z);
-        chunkMarkers.remove(key);
-        empireChunkMarkers.get(empire.getId()).remove(key);
-        if (empireChunkMarkers.get(empire.getId()).size() == 0)
-            empireChunkMarkers.remove(empire.getId());
+    /**
+     * Moves the chunks of the smaller region into the larger one
+     * @return Region both are now part of
+     */
+    private static RegionMarker mergeRegions(RegionMarker region1, RegionMarker region2) {
+        final RegionMarker into = region1.getChunks().size() >= region2.getChunks().size() ? region1 : region2;
+        final RegionMarker from = into == region1 ? region2 : region1;
+        from.getChunks().forEach(chunk -> {
+            into.getChunks().add(chunk);
+            chunkRegions.put(into.getWorld(), ChunkMap.unpackX(chunk), ChunkMap.unpackZ(chunk), into);
+        });
+        deleteRegion(from);
+        pendingRedraws.add(into);
+        return into;
     }
 
-    public static void setMarkerType(String world, int x, int z, ChunkType type) {
-        chunkMarkers.get(TEChunk.serialize(world, x, z)).setIcon(type);
+    /**
+     * Splits region into its connected parts after a chunk was removed, the largest part keeps the marker
+     * @param neighbours Remaining chunks of the region adjacent to the removed chunk
+     */
+    private static void splitRegion(RegionMarker region, List<Long> neighbours) {
+        final LongHashSet chunks = region.getChunks();
+        final LongHashSet visited = new LongHashSet(chunks.size());
+        final List<LongHashSet> parts = new ArrayList<>();
+        for (final long neighbour : neighbours) {
+            if (visited.contains(neighbour))
+                continue;
+            final LongHashSet part = flood(chunks, neighbour, visited);
+            // everything reachable from the first neighbour, region is still connected
+            if (part.size() == chunks.size())
+                return;
+            parts.add(part);
+        }
+
+        parts.sort((a, b) -> b.size() - a.size());
+        for (int i = 1; i < parts.size(); i++) {
+            final RegionMarker split = createRegion(region.getEmpire(), region.getWorld());
+            parts.get(i).forEach(chunk -> {
+                chunks.remove(chunk);
+                split.getChunks().add(chunk);
+                chunkRegions.put(region.getWorld(), ChunkMap.unpackX(chunk), ChunkMap.unpackZ(chunk), split);
+            });
+            pendingRedraws.add(split);
+        }
+    }
+
+    private static LongHashSet flood(LongHashSet chunks, long start, LongHashSet visited) {
+        final LongHashSet part = new LongHashSet();
+        final Deque<Long> stack = new ArrayDeque<>();
+        stack.push(start);
+        visited.add(start);
+        while (!stack.isEmpty()) {
+            final long chunk = stack.pop();
+            part.add(chunk);
+            final int x = ChunkMap.unpackX(chunk);
+            final int z = ChunkMap.unpackZ(chunk);
+            for (int i = 0; i < NEIGHBOUR_DX.length; i++) {
+                final long neighbour = ChunkMap.pack(x + NEIGHBOUR_DX[i], z + NEIGHBOUR_DZ[i]);
+                if (chunks.contains(neighbour)
+                        && visited.add(neighbour))
+                    stack.push(neighbour);
+            }
+        }
+        return part;
     }
 
     public static MarkerSet getMarkerSet() {
@@ -296,42 +588,9 @@ public class DrawEmpire {
     }
 
     public static void setEmpire(String world, int x, int z, Empire empire) {
-        final ChunkMarker marker = getChunkMarker(world, x, z);
-        marker.deleteBorders();
-        marker.setEmpire(empire);
-
-        final TEChunk chunk = TEChunk.getChunk(world, x, z);
-        if (chunk == null)
-            throw new NullPointerException(String.format(
-                "ERROR: Chunk at %s %d, %d doesn't exist",
-                world,
-                x,
-                z
-            ));
-
-        if (chunkEmpiresDiffer(chunk, x + 1, z)) {
-            marker.makeBorder(Direction.RIGHT);
-        } else {
-            eraseChunkBorderIfExists(world, x + 1, z, Direction.LEFT);
-        }
-
-        if (chunkEmpiresDiffer(chunk, x - 1, z)) {
-            marker.makeBorder(Direction.LEFT);
-        } else {
-            eraseChunkBorderIfExists(world, x - 1, z, Direction.RIGHT);
-        }
-
-        if (chunkEmpiresDiffer(chunk, x, z + 1)) {
-            marker.makeBorder(Direction.DOWN);
-        } else {
-            eraseChunkBorderIfExists(world, x, z + 1, Direction.UP);
-        }
-
-        if (chunkEmpiresDiffer(chunk, x, z - 1)) {
-            marker.makeBorder(Direction.UP);
-        } else {
-            eraseChunkBorderIfExists(world, x, z - 1, Direction.DOWN);
-        }
+        removeFromRegion(world, x, z);
+        addChunk(empire, world, x, z);
+        scheduleFlush();
     }
 
 }
@@ -14,6 +14,16 @@ public class ErrorUtils {
     public final static String COULD_NOT_FETCH_WORLD = ChatColor.RED + "Could not fetch player world for chest " +
         "mapping. This is unexpected behavior. Please contact a developer and we will attend to it promptly.";
 
+    /**
+     * @param suggestion Closest existing name, see {@link FuzzyIndex}
+     * @return Sentence suggesting the name to append to a not found error, empty if there is no suggestion
+     */
+    public static String didYouMean(String suggestion) {
+        return suggestion == null
+            ? ""
+            : String.format(" Did you mean '%s'?", suggestion);
+    }
+
     public static String generatePermissionError(Permission permission) {
         return ChatColor.RED + String.format(
             "You do not have the %s permission required to run this command.",
@@ -0,0 +1,89 @@
+package dev.sucrose.tinyempires.utils;
+
+import me.xdrop.fuzzywuzzy.FuzzySearch;
+import me.xdrop.fuzzywuzzy.model.ExtractedResult;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Trigram index of names for "did you mean" suggestions. Only names sharing the most trigrams with the query are
+ * scored with fuzzywuzzy instead of every name
+ */
+public class FuzzyIndex {
+
+    // names scored per suggestion
+    private static final int MAX_CANDIDATES = 20;
+
+    // trigram -> names containing it
+    private final Map<String, Set<String>> postings = new HashMap<>();
+
+    /**
+     * Lowercase trigrams of the name padded at both ends so short names and prefixes still produce some
+     */
+    private static Set<String> trigrams(String name) {
+        final String padded = "  " + name.toLowerCase(Locale.ROOT) + " ";
+        final Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++)
+            trigrams.add(padded.substring(i, i + 3));
+        return trigrams;
+    }
+
+    public synchronized void add(String name) {
+        for (final String trigram : trigrams(name))
+            postings.computeIfAbsent(trigram, t -> new HashSet<>()).add(name);
+    }
+
+    public synchronized void remove(String name) {
+        for (final String trigram : trigrams(name)) {
+            final Set<String> names = postings.get(trigram);
+            if (names == null)
+                continue;
+            names.remove(name);
+            if (names.isEmpty())
+                postings.remove(trigram);
+        }
+    }
+
+    public synchronized void clear() {
+        postings.clear();
+    }
+
+    public String suggest(String query) {
+        return suggest(query, name -> true);
+    }
+
+    /**
+     * @return Closest name passing filter, null if no name shares a trigram with query
+     */
+    public String suggest(String query, Predicate<String> filter) {
+        final List<String> candidates = getCandidates(query, filter);
+        if (candidates.isEmpty())
+            return null;
+        final ExtractedResult best = FuzzySearch.extractOne(query, candidates);
+        return best == null ? null : best.getString();
+    }
+
+    private synchronized List<String> getCandidates(String query, Predicate<String> filter) {
+        final Map<String, Integer> shared = new HashMap<>();
+        for (final String trigram : trigrams(query)) {
+            final Set<String> names = postings.get(trigram);
+            if (names != null) {
+                for (final String name : names)
+                    shared.merge(name, 1, Integer::sum);
+            }
+        }
+
+        final List<Map.Entry<String, Integer>> ranked = new ArrayList<>(shared.entrySet());
+        ranked.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+        final List<String> candidates = new ArrayList<>();
+        for (final Map.Entry<String, Integer> entry : ranked) {
+            if (candidates.size() >= MAX_CANDIDATES)
+                break;
+            if (filter.test(entry.getKey()))
+                candidates.add(entry.getKey());
+        }
+        return candidates;
+    }
+
+}
@@ -0,0 +1,211 @@
+package dev.sucrose.tinyempires.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Open-addressing hash map from primitive longs to values so hot lookups neither box keys nor allocate. Uses linear
+ * probing with backward-shift deletion, null values are not allowed
+ * @param <V> Value type
+ */
+public class LongHashMap<V> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size = 0;
+    private int resizeThreshold;
+
+    public LongHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongHashMap(int expectedSize) {
+        allocate(tableSizeFor((int) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR)));
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int n = DEFAULT_CAPACITY;
+        while (n < capacity)
+            n <<= 1;
+        return n;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int hash(long key) {
+        // murmur3 finalizer so neighbouring chunk coordinates spread across the table
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private int indexOf(long key) {
+        int i = hash(key) & mask;
+        while (values[i] != null) {
+            if (keys[i] == key)
+                return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        final int i = indexOf(key);
+        return i == -1 ? null : (V) values[i];
+    }
+
+    public boolean containsKey(long key) {
+        return indexOf(key) != -1;
+    }
+
+    /**
+     * @return Previous value mapped to key or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null)
+            throw new NullPointerException("LongHashMap does not permit null values");
+
+        int i = hash(key) & mask;
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                final V previous = (V) values[i];
+                values[i] = value;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > resizeThreshold)
+            rehash(keys.length << 1);
+        return null;
+    }
+
+    /**
+     * @return Removed value or null if key was not mapped
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int i = indexOf(key);
+        if (i == -1)
+            return null;
+        final V removed = (V) values[i];
+
+        // shift following entries of the probe sequence back so lookups never hit a premature gap
+        int next = (i + 1) & mask;
+        while (values[next] != null) {
+            final int ideal = hash(keys[next]) & mask;
+            // move entry into the gap if its ideal slot isn't cyclically between the gap and its current slot
+            if (((next - ideal) & mask) >= ((next - i) & mask)) {
+                keys[i] = keys[next];
+                values[i] = values[next];
+                i = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[i] = null;
+        size--;
+        return removed;
+    }
+
+    private void rehash(int capacity) {
+        final long[] oldKeys = keys;
+        final Object[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == null)
+                continue;
+            int j = hash(oldKeys[i]) & mask;
+            while (values[j] != null)
+                j = (j + 1) & mask;
+            keys[j] = oldKeys[i];
+            values[j] = oldValues[i];
+            size++;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    public void forEachKey(LongConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null)
+                consumer.accept(keys[i]);
+        }
+    }
+
+    /**
+     * @return Snapshot of keys, safe to mutate the map while iterating it
+     */
+    public long[] keys() {
+        final long[] array = new long[size];
+        int j = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null)
+                array[j++] = keys[i];
+        }
+        return array;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<V> consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null)
+                consumer.accept(keys[i], (V) values[i]);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<V> consumer) {
+        for (final Object value : values) {
+            if (value != null)
+                consumer.accept((V) value);
+        }
+    }
+
+    /**
+     * @return Snapshot of values, safe to mutate the map while iterating it
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+        final List<V> list = new ArrayList<>(size);
+        for (final Object value : values) {
+            if (value != null)
+                list.add((V) value);
+        }
+        return list;
+    }
+
+}
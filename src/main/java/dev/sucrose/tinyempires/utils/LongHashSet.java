@@ -0,0 +1,61 @@
+package dev.sucrose.tinyempires.utils;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Set of primitive longs backed by {@link LongHashMap}
+ */
+public class LongHashSet {
+
+    private final LongHashMap<Boolean> map;
+
+    public LongHashSet() {
+        map = new LongHashMap<>();
+    }
+
+    public LongHashSet(int expectedSize) {
+        map = new LongHashMap<>(expectedSize);
+    }
+
+    /**
+     * @return Whether the value was not already in the set
+     */
+    public boolean add(long value) {
+        return map.put(value, Boolean.TRUE) == null;
+    }
+
+    /**
+     * @return Whether the value was in the set
+     */
+    public boolean remove(long value) {
+        return map.remove(value) != null;
+    }
+
+    public boolean contains(long value) {
+        return map.containsKey(value);
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    public void clear() {
+        map.clear();
+    }
+
+    public void forEach(LongConsumer consumer) {
+        map.forEachKey(consumer);
+    }
+
+    /**
+     * @return Snapshot of values, safe to mutate the set while iterating it
+     */
+    public long[] toArray() {
+        return map.keys();
+    }
+
+}
@@ -0,0 +1,119 @@
+package dev.sucrose.tinyempires.utils;
+
+import dev.sucrose.tinyempires.TinyEmpires;
+import dev.sucrose.tinyempires.models.TEPlayer;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.entity.Player;
+import org.bukkit.scoreboard.DisplaySlot;
+import org.bukkit.scoreboard.Objective;
+import org.bukkit.scoreboard.Scoreboard;
+import org.bukkit.scoreboard.ScoreboardManager;
+
+import java.util.*;
+
+/**
+ * Sidebar kept for the whole session of a player. Update requests only mark the player dirty, dirty sidebars are
+ * re-rendered once on the next tick and only entries that changed are sent
+ */
+public class PlayerSidebar {
+
+    private static final String TITLE = "" + ChatColor.YELLOW + ChatColor.BOLD + "Pixel Empires";
+
+    private static final ScoreboardManager manager;
+    static {
+        manager = Bukkit.getScoreboardManager();
+        if (manager == null)
+            throw new NullPointerException("Bukkit#getScoreboardManager() returned null on initialization");
+    }
+
+    private static final Map<UUID, PlayerSidebar> sidebars = new HashMap<>();
+    private static final Set<UUID> dirty = new HashSet<>();
+    private static int flushTaskId = -1;
+
+    private final Scoreboard scoreboard;
+    private final Objective objective;
+    // entry -> score currently shown
+    private final Map<String, Integer> rendered = new HashMap<>();
+
+    private PlayerSidebar() {
+        scoreboard = manager.getNewScoreboard();
+        objective = scoreboard.registerNewObjective("title", "dummy", TITLE);
+        objective.setDisplaySlot(DisplaySlot.SIDEBAR);
+    }
+
+    /**
+     * Requests a re-render of the sidebar of the player on the next tick, safe to call from any thread
+     */
+    public static synchronized void markDirty(UUID uuid) {
+        dirty.add(uuid);
+        if (flushTaskId != -1)
+            return;
+        flushTaskId = Bukkit.getScheduler().scheduleSyncDelayedTask(
+            TinyEmpires.getInstance(),
+            PlayerSidebar::flush
+        );
+    }
+
+    private static synchronized Set<UUID> drainDirty() {
+        flushTaskId = -1;
+        final Set<UUID> drained = new HashSet<>(dirty);
+        dirty.clear();
+        return drained;
+    }
+
+    /**
+     * Forgets the sidebar of a player who left
+     */
+    public static void remove(UUID uuid) {
+        sidebars.remove(uuid);
+    }
+
+    private static void flush() {
+        for (final UUID uuid : drainDirty()) {
+            final Player player = Bukkit.getPlayer(uuid);
+            if (player == null) {
+                sidebars.remove(uuid);
+                continue;
+            }
+
+            final TEPlayer tePlayer = TEPlayer.getTEPlayer(uuid);
+            if (tePlayer == null)
+                continue;
+
+            sidebars
+                .computeIfAbsent(uuid, u -> new PlayerSidebar())
+                .render(player, tePlayer.getSidebarLines(player));
+        }
+    }
+
+    /**
+     * @param lines Entries from the bottom of the sidebar up, must be unique
+     */
+    private void render(Player player, List<String> lines) {
+        final Map<String, Integer> next = new HashMap<>();
+        for (int i = 0; i < lines.size(); i++)
+            next.put(lines.get(i), i + 1);
+
+        // entries are the identity of a line so a changed line is a reset plus a new score
+        final Iterator<Map.Entry<String, Integer>> iterator = rendered.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final String entry = iterator.next().getKey();
+            if (!next.containsKey(entry)) {
+                scoreboard.resetScores(entry);
+                iterator.remove();
+            }
+        }
+
+        for (final Map.Entry<String, Integer> entry : next.entrySet()) {
+            final Integer score = entry.getValue();
+            if (!score.equals(rendered.put(entry.getKey(), score)))
+                objective.getScore(entry.getKey()).setScore(score);
+        }
+
+        // arenas swap in their own scoreboards
+        if (player.getScoreboard() != scoreboard)
+            player.setScoreboard(scoreboard);
+    }
+
+}
@@ -0,0 +1,99 @@
+package dev.sucrose.tinyempires.utils;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Case-insensitive prefix tree of strings for tab completion. Children are kept sorted so completions come out in
+ * alphabetical order and walking stops as soon as the limit is reached
+ */
+public class PrefixTrie {
+
+    private static class Node {
+
+        private final TreeMap<Character, Node> children = new TreeMap<>();
+        // original string ending at this node, null if none
+        private String value;
+
+    }
+
+    private final Node root = new Node();
+    private int size = 0;
+
+    private static char fold(char c) {
+        return Character.toLowerCase(c);
+    }
+
+    public synchronized void insert(String value) {
+        Node node = root;
+        for (int i = 0; i < value.length(); i++)
+            node = node.children.computeIfAbsent(fold(value.charAt(i)), c -> new Node());
+        if (node.value == null)
+            size++;
+        node.value = value;
+    }
+
+    public synchronized void remove(String value) {
+        // path from the root to prune empty nodes on the way back up
+        final Deque<Node> path = new ArrayDeque<>();
+        Node node = root;
+        for (int i = 0; i < value.length(); i++) {
+            path.push(node);
+            node = node.children.get(fold(value.charAt(i)));
+            if (node == null)
+                return;
+        }
+        if (node.value == null)
+            return;
+        node.value = null;
+        size--;
+
+        for (int i = value.length() - 1; i >= 0; i--) {
+            if (node.value != null
+                    || !node.children.isEmpty())
+                return;
+            node = path.pop();
+            node.children.remove(fold(value.charAt(i)));
+        }
+    }
+
+    public synchronized void clear() {
+        root.children.clear();
+        root.value = null;
+        size = 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public List<String> complete(String prefix, int limit) {
+        return complete(prefix, limit, value -> true);
+    }
+
+    /**
+     * @return Up to limit strings starting with prefix that pass filter, in alphabetical order
+     */
+    public synchronized List<String> complete(String prefix, int limit, Predicate<String> filter) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++)
+            node = node.children.get(fold(prefix.charAt(i)));
+
+        final List<String> completions = new ArrayList<>();
+        if (node != null)
+            collect(node, limit, filter, completions);
+        return completions;
+    }
+
+    private static void collect(Node node, int limit, Predicate<String> filter, List<String> completions) {
+        if (node.value != null
+                && filter.test(node.value))
+            completions.add(node.value);
+        for (final Node child : node.children.values()) {
+            if (completions.size() >= limit)
+                return;
+            collect(child, limit, filter, completions);
+        }
+    }
+
+}
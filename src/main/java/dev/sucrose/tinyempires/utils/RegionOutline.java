@@ -0,0 +1,202 @@
+package dev.sucrose.tinyempires.utils;
+
+import java.util.*;
+
+/**
+ * Traces the outline polygon of a set of chunks. Dynmap area markers only take a single ring of corners, so holes
+ * (and pieces only touching diagonally) are joined to the outer ring with zero-width slits, which leave the
+ * even-odd fill of the map untouched. The slits would show if the area's own outline was drawn, so the rings are
+ * also returned separately to be drawn as lines
+ */
+public class RegionOutline {
+
+    public static class Outline {
+
+        private final double[][] area;
+        private final List<double[][]> rings;
+
+        private Outline(double[][] area, List<double[][]> rings) {
+            this.area = area;
+            this.rings = rings;
+        }
+
+        /**
+         * @return Corner block x coordinates and corner block z coordinates of every ring bridged into one
+         */
+        public double[][] getArea() {
+            return area;
+        }
+
+        /**
+         * @return Corner block x and z coordinates of each ring, closed by repeating the first corner
+         */
+        public List<double[][]> getRings() {
+            return rings;
+        }
+
+    }
+
+    // +x, +z, -x, -z: each direction turns left into the next
+    private static final int[] DX = { 1, 0, -1, 0 };
+    private static final int[] DZ = { 0, 1, 0, -1 };
+
+    /**
+     * @param chunks Packed chunk coordinates, see {@link ChunkMap#pack(int, int)}
+     * @return Outline with the bridged area and each separate ring
+     */
+    public static Outline trace(LongHashSet chunks) {
+        // directed boundary edges with the chunks on their left, as bitmasks of outgoing directions per corner
+        final Map<Long, Integer> outgoing = new HashMap<>();
+        chunks.forEach(chunk -> {
+            final int x = ChunkMap.unpackX(chunk);
+            final int z = ChunkMap.unpackZ(chunk);
+            if (!chunks.contains(ChunkMap.pack(x, z - 1)))
+                addEdge(outgoing, x, z, 0);
+            if (!chunks.contains(ChunkMap.pack(x + 1, z)))
+                addEdge(outgoing, x + 1, z, 1);
+            if (!chunks.contains(ChunkMap.pack(x, z + 1)))
+                addEdge(outgoing, x + 1, z + 1, 2);
+            if (!chunks.contains(ChunkMap.pack(x - 1, z)))
+                addEdge(outgoing, x, z + 1, 3);
+        });
+
+        final List<List<Long>> loops = traceLoops(outgoing);
+        if (loops.isEmpty())
+            return new Outline(new double[][] { new double[0], new double[0] }, Collections.emptyList());
+
+        // the loop with the largest signed area is the outer ring, bridge everything else into it
+        List<Long> outer = loops.get(0);
+        long outerArea = signedArea(outer);
+        for (final List<Long> loop : loops) {
+            final long area = signedArea(loop);
+            if (area > outerArea) {
+                outer = loop;
+                outerArea = area;
+            }
+        }
+
+        List<Long> polygon = outer;
+        for (final List<Long> loop : loops) {
+            if (loop != outer)
+                polygon = bridge(polygon, loop);
+        }
+
+        final List<double[][]> rings = new ArrayList<>(loops.size());
+        for (final List<Long> loop : loops)
+            rings.add(toBlockCoordinates(loop, true));
+        return new Outline(toBlockCoordinates(polygon, false), rings);
+    }
+
+    private static double[][] toBlockCoordinates(List<Long> corners, boolean close) {
+        final int length = close ? corners.size() + 1 : corners.size();
+        final double[] xs = new double[length];
+        final double[] zs = new double[length];
+        for (int i = 0; i < length; i++) {
+            final long corner = corners.get(i % corners.size());
+            xs[i] = ChunkMap.unpackX(corner) * 16;
+            zs[i] = ChunkMap.unpackZ(corner) * 16;
+        }
+        return new double[][] { xs, zs };
+    }
+
+    private static void addEdge(Map<Long, Integer> outgoing, int x, int z, int direction) {
+        outgoing.merge(ChunkMap.pack(x, z), 1 << direction, (a, b) -> a | b);
+    }
+
+    /**
+     * At corners where two chunks only touch diagonally there are two outgoing edges; always taking the left one
+     * pairs every incoming edge with exactly one outgoing edge so loops never cross
+     */
+    private static int nextDirection(int outgoingMask, int incoming) {
+        for (final int turn : new int[] { 1, 0, 3 }) {
+            final int direction = (incoming + turn) & 3;
+            if ((outgoingMask & (1 << direction)) != 0)
+                return direction;
+        }
+        throw new IllegalStateException("Chunk outline is not closed");
+    }
+
+    /**
+     * @return Closed loops of corners (only where the direction changes)
+     */
+    private static List<List<Long>> traceLoops(Map<Long, Integer> outgoing) {
+        final Map<Long, Integer> remaining = new HashMap<>(outgoing);
+        final List<List<Long>> loops = new ArrayList<>();
+        while (!remaining.isEmpty()) {
+            final Map.Entry<Long, Integer> start = remaining.entrySet().iterator().next();
+            final long startCorner = start.getKey();
+            final int startDirection = Integer.numberOfTrailingZeros(start.getValue());
+
+            final List<Long> loop = new ArrayList<>();
+            long corner = startCorner;
+            int direction = startDirection;
+            int previousDirection = -1;
+            do {
+                final int mask = remaining.get(corner) & ~(1 << direction);
+                if (mask == 0) {
+                    remaining.remove(corner);
+                } else {
+                    remaining.put(corner, mask);
+                }
+                if (direction != previousDirection)
+                    loop.add(corner);
+                previousDirection = direction;
+
+                corner = ChunkMap.pack(
+                    ChunkMap.unpackX(corner) + DX[direction],
+                    ChunkMap.unpackZ(corner) + DZ[direction]
+                );
+                direction = nextDirection(outgoing.get(corner), direction);
+            } while (corner != startCorner
+                || direction != startDirection);
+
+            // start is only a corner if the loop turns there
+            if (previousDirection == startDirection)
+                loop.remove(0);
+            loops.add(loop);
+        }
+        return loops;
+    }
+
+    private static long signedArea(List<Long> loop) {
+        long area = 0;
+        for (int i = 0; i < loop.size(); i++) {
+            final long a = loop.get(i);
+            final long b = loop.get((i + 1) % loop.size());
+            area += (long) ChunkMap.unpackX(a) * ChunkMap.unpackZ(b)
+                - (long) ChunkMap.unpackX(b) * ChunkMap.unpackZ(a);
+        }
+        return area;
+    }
+
+    /**
+     * Splices loop into polygon through a slit between their closest corners
+     */
+    private static List<Long> bridge(List<Long> polygon, List<Long> loop) {
+        int polygonIndex = 0;
+        int loopIndex = 0;
+        long closest = Long.MAX_VALUE;
+        for (int i = 0; i < polygon.size(); i++) {
+            final int px = ChunkMap.unpackX(polygon.get(i));
+            final int pz = ChunkMap.unpackZ(polygon.get(i));
+            for (int j = 0; j < loop.size(); j++) {
+                final long dx = ChunkMap.unpackX(loop.get(j)) - px;
+                final long dz = ChunkMap.unpackZ(loop.get(j)) - pz;
+                final long distance = dx * dx + dz * dz;
+                if (distance < closest) {
+                    closest = distance;
+                    polygonIndex = i;
+                    loopIndex = j;
+                }
+            }
+        }
+
+        final List<Long> bridged = new ArrayList<>(polygon.size() + loop.size() + 2);
+        bridged.addAll(polygon.subList(0, polygonIndex + 1));
+        for (int j = 0; j <= loop.size(); j++)
+            bridged.add(loop.get((loopIndex + j) % loop.size()));
+        bridged.addAll(polygon.subList(polygonIndex, polygon.size()));
+        return bridged;
+    }
+
+}
@@ -0,0 +1,152 @@
+package dev.sucrose.tinyempires.utils;
+
+import dev.sucrose.tinyempires.models.RegionFlag;
+import dev.sucrose.tinyempires.models.SpecialRegion;
+import org.bukkit.ChatColor;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.*;
+
+/**
+ * Special territory regions loaded from the "special-territories" section of config.yml, indexed per chunk so point
+ * and chunk queries are a single lookup. The index is rebuilt whole on load and swapped in
+ */
+public class SpecialTerritories {
+
+    private static final String CONFIG_SECTION = "special-territories";
+
+    private static class Cell {
+
+        // union of the flags of every region overlapping the chunk
+        private int flags = 0;
+        private final List<SpecialRegion> regions = new ArrayList<>(1);
+
+    }
+
+    private static class Index {
+
+        private final ChunkMap<Cell> cells = new ChunkMap<>();
+        private final Map<String, SpecialRegion> regions = new LinkedHashMap<>();
+
+        private void add(SpecialRegion region) {
+            regions.put(region.getId(), region);
+            for (int x = region.getMinX() >> 4; x <= region.getMaxX() >> 4; x++) {
+                for (int z = region.getMinZ() >> 4; z <= region.getMaxZ() >> 4; z++) {
+                    Cell cell = cells.get(region.getWorld(), x, z);
+                    if (cell == null) {
+                        cell = new Cell();
+                        cells.put(region.getWorld(), x, z, cell);
+                    }
+                    cell.flags |= region.getFlags();
+                    cell.regions.add(region);
+                }
+            }
+        }
+
+    }
+
+    private static volatile Index index = new Index();
+
+    /**
+     * Replaces every region with the ones in config, entries that fail to parse are skipped
+     * @return Number of regions loaded
+     */
+    public static int load(ConfigurationSection config) {
+        final Index loaded = new Index();
+        final ConfigurationSection section = config.getConfigurationSection(CONFIG_SECTION);
+        if (section == null) {
+            System.out.println(ChatColor.RED + "No " + CONFIG_SECTION + " section in config, no regions loaded");
+            index = loaded;
+            return 0;
+        }
+
+        for (final String id : section.getKeys(false)) {
+            final ConfigurationSection regionSection = section.getConfigurationSection(id);
+            try {
+                if (regionSection == null)
+                    throw new IllegalArgumentException("not a section");
+                final String world = regionSection.getString("world");
+                if (world == null)
+                    throw new IllegalArgumentException("missing world");
+                for (final String key : new String[] { "min-x", "max-x", "min-z", "max-z" }) {
+                    if (!regionSection.isInt(key))
+                        throw new IllegalArgumentException("missing or non-integer " + key);
+                }
+
+                int flags = 0;
+                for (final String flag : regionSection.getStringList("flags"))
+                    flags |= RegionFlag.fromConfigName(flag).getBit();
+
+                loaded.add(new SpecialRegion(
+                    id,
+                    world,
+                    regionSection.getInt("min-x"),
+                    regionSection.getInt("max-x"),
+                    regionSection.getInt("min-z"),
+                    regionSection.getInt("max-z"),
+                    flags
+                ));
+            } catch (IllegalArgumentException err) {
+                System.out.println(ChatColor.RED + String.format(
+                    "Skipping special territory '%s': %s",
+                    id,
+                    err.getMessage()
+                ));
+            }
+        }
+
+        index = loaded;
+        return loaded.regions.size();
+    }
+
+    /**
+     * @return First region containing the block, null if none
+     */
+    public static SpecialRegion getRegion(String world, int x, int z) {
+        final Cell cell = index.cells.get(world, x >> 4, z >> 4);
+        if (cell == null)
+            return null;
+        for (final SpecialRegion region : cell.regions) {
+            if (region.contains(x, z))
+                return region;
+        }
+        return null;
+    }
+
+    public static boolean isInRegion(String id, String world, int x, int z) {
+        final SpecialRegion region = index.regions.get(id);
+        return region != null
+            && region.getWorld().equals(world)
+            && region.contains(x, z);
+    }
+
+    /**
+     * @return Whether a region containing the block has the flag
+     */
+    public static boolean hasFlag(String world, int x, int z, RegionFlag flag) {
+        final Cell cell = index.cells.get(world, x >> 4, z >> 4);
+        if (cell == null
+                || (cell.flags & flag.getBit()) == 0)
+            return false;
+        for (final SpecialRegion region : cell.regions) {
+            if (region.hasFlag(flag)
+                    && region.contains(x, z))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return Whether a region overlapping the chunk has the flag
+     */
+    public static boolean chunkHasFlag(String world, int chunkX, int chunkZ, RegionFlag flag) {
+        final Cell cell = index.cells.get(world, chunkX, chunkZ);
+        return cell != null
+            && (cell.flags & flag.getBit()) != 0;
+    }
+
+    public static Collection<SpecialRegion> getRegions() {
+        return Collections.unmodifiableCollection(index.regions.values());
+    }
+
+}
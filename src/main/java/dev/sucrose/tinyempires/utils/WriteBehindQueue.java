@@ -0,0 +1,598 @@
+package dev.sucrose.tinyempires.utils;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.*;
+import org.bson.Document;
+import org.bukkit.ChatColor;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind persistence layer so Mongo round trips never happen on the main server thread. Field-level mutations
+ * are queued, repeated writes to the same document and field are coalesced within a flush window and a dedicated
+ * I/O thread flushes them as ordered bulk writes per collection. Writes that fail are retried with backoff ahead of
+ * anything queued since, so every queued operation has to be safe to apply twice
+ */
+public class WriteBehindQueue {
+
+    private static final long FLUSH_INTERVAL_MILLIS = 500;
+    private static final int MAX_PENDING_WRITES = 10000;
+    private static final int MAX_BULK_WRITE_SIZE = 1000;
+    private static final long DRAIN_TIMEOUT_SECONDS = 30;
+    private static final long MIN_RETRY_DELAY_MILLIS = 1000;
+    private static final long MAX_RETRY_DELAY_MILLIS = 30000;
+
+    private static final String SET = "$set";
+    private static final String UNSET = "$unset";
+    private static final String ADD_TO_SET = "$addToSet";
+    private static final String PULL = "$pull";
+
+    private static final ReentrantLock lock = new ReentrantLock();
+    private static final Condition flushRequested = lock.newCondition();
+    private static final Condition notFull = lock.newCondition();
+    private static final Condition batchWritten = lock.newCondition();
+    // writes in submission order
+    private static List<PendingWrite> pending = new ArrayList<>();
+    // last update per document that later mutations can still be merged into, reset on every flush
+    private static final Map<String, PendingUpdate> openUpdates = new HashMap<>();
+    private static Thread flushThread;
+    private static boolean running = false;
+    // number of the batch being queued into and of the last batch written, see #getWriteTicket
+    private static long queuedBatch = 1;
+    private static volatile long writtenBatch = 0;
+    // delay before retrying failed writes, 0 after a successful flush, flush thread only
+    private static long retryDelayMillis = 0;
+    // writes given up on while draining or written through
+    private static int lostWrites = 0;
+
+    private abstract static class PendingWrite {
+
+        protected final MongoCollection<Document> collection;
+
+        PendingWrite(MongoCollection<Document> collection) {
+            this.collection = collection;
+        }
+
+        abstract WriteModel<Document> toWriteModel();
+
+        /**
+         * Called on the writing thread if the write was rejected or given up on
+         */
+        void onFailure() {}
+
+    }
+
+    private static class RawWrite extends PendingWrite {
+
+        private final WriteModel<Document> model;
+        private final Runnable onFailure;
+
+        RawWrite(MongoCollection<Document> collection, WriteModel<Document> model) {
+            this(collection, model, null);
+        }
+
+        RawWrite(MongoCollection<Document> collection, WriteModel<Document> model, Runnable onFailure) {
+            super(collection);
+            this.model = model;
+            this.onFailure = onFailure;
+        }
+
+        @Override
+        void onFailure() {
+            if (onFailure != null)
+                onFailure.run();
+        }
+
+        @Override
+        WriteModel<Document> toWriteModel() {
+            return model;
+        }
+
+    }
+
+    private static class FieldOperation {
+
+        private final String operator;
+        private Object value;
+
+        FieldOperation(String operator, Object value) {
+            this.operator = operator;
+            this.value = value;
+        }
+
+    }
+
+    private static class PendingUpdate extends PendingWrite {
+
+        private final Document filter;
+        private final Map<String, FieldOperation> operations = new LinkedHashMap<>();
+
+        PendingUpdate(MongoCollection<Document> collection, Document filter) {
+            super(collection);
+            this.filter = filter;
+        }
+
+        /**
+         * Merges field operation into update
+         * @return Whether the operation could be merged; if not it must be applied in a later update
+         */
+        boolean merge(String operator, String path, Object value) {
+            final FieldOperation existing = operations.get(path);
+            if (existing == null) {
+                // Mongo rejects updates touching both a field and one of its sub-fields
+                for (final String other : operations.keySet()) {
+                    if (pathsOverlap(other, path))
+                        return false;
+                }
+                operations.put(
+                    path,
+                    new FieldOperation(
+                        operator,
+                        operator.equals(ADD_TO_SET)
+                            ? new ArrayList<>(Collections.singletonList(value))
+                            : value
+                    )
+                );
+                return true;
+            }
+
+            switch (operator) {
+                case SET:
+                case UNSET:
+                    // overwrites whatever was queued before
+                    operations.put(path, new FieldOperation(operator, value));
+                    return true;
+                case ADD_TO_SET:
+                    if (!existing.operator.equals(ADD_TO_SET))
+                        return false;
+                    @SuppressWarnings("unchecked")
+                    final List<Object> values = (List<Object>) existing.value;
+                    if (!values.contains(value))
+                        values.add(value);
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        @Override
+        WriteModel<Document> toWriteModel() {
+            final Document update = new Document();
+            for (final Map.Entry<String, FieldOperation> entry : operations.entrySet()) {
+                final FieldOperation operation = entry.getValue();
+                Document fields = update.get(operation.operator, Document.class);
+                if (fields == null) {
+                    fields = new Document();
+                    update.put(operation.operator, fields);
+                }
+                fields.put(
+                    entry.getKey(),
+                    operation.operator.equals(ADD_TO_SET)
+                        ? new Document("$each", operation.value)
+                        : operation.value
+                );
+            }
+            return new UpdateOneModel<>(filter, update);
+        }
+
+    }
+
+    private static boolean pathsOverlap(String path1, String path2) {
+        return path1.startsWith(path2 + '.')
+            || path2.startsWith(path1 + '.');
+    }
+
+    private static String documentKey(MongoCollection<Document> collection, Document filter) {
+        return collection.getNamespace().getFullName() + filter.toJson();
+    }
+
+    public static void start() {
+        lock.lock();
+        try {
+            if (running)
+                return;
+            running = true;
+            flushThread = new Thread(WriteBehindQueue::runFlushLoop, "TinyEmpires-WriteBehind");
+            flushThread.setDaemon(true);
+            flushThread.start();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting queued writes and blocks until everything pending has been written. Writes submitted
+     * afterwards are applied synchronously
+     */
+    public static void drain() {
+        final Thread thread;
+        lock.lock();
+        try {
+            if (!running)
+                return;
+            running = false;
+            thread = flushThread;
+            flushRequested.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(DRAIN_TIMEOUT_SECONDS));
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            if (thread.isAlive())
+                System.out.println(ChatColor.DARK_RED + String.format(
+                    "Timed out draining write-behind queue, %d writes left unwritten",
+                    pending.size()
+                ));
+            if (lostWrites > 0)
+                System.out.println(ChatColor.DARK_RED + String.format(
+                    "%d queued writes could not be written and were lost",
+                    lostWrites
+                ));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Ticket that {@link #isWritten} once every write queued so far has been flushed
+     */
+    public static long getWriteTicket() {
+        lock.lock();
+        try {
+            // written through synchronously when not running
+            if (!running)
+                return 0;
+            // with nothing pending only the batch being written, if any, has to finish
+            return pending.isEmpty() ? queuedBatch - 1 : queuedBatch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static boolean isWritten(long ticket) {
+        return writtenBatch >= ticket;
+    }
+
+    /**
+     * Blocks until the ticket {@link #isWritten}, must not be called from the main thread
+     * @return Whether the writes were flushed before timing out
+     */
+    public static boolean awaitWritten(long ticket) {
+        long nanosLeft = TimeUnit.SECONDS.toNanos(DRAIN_TIMEOUT_SECONDS);
+        lock.lock();
+        try {
+            while (!isWritten(ticket)) {
+                // a drain writes everything left before the flush thread exits
+                if (!running
+                        && (flushThread == null || !flushThread.isAlive()))
+                    return true;
+                if (nanosLeft <= 0)
+                    return false;
+                try {
+                    nanosLeft = batchWritten.awaitNanos(nanosLeft);
+                } catch (InterruptedException err) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static int getPendingWriteCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static void set(MongoCollection<Document> collection, Document filter, String path, Object value) {
+        update(collection, filter, SET, path, value);
+    }
+
+    public static void set(MongoCollection<Document> collection, Document filter, Document fields) {
+        for (final Map.Entry<String, Object> entry : fields.entrySet())
+            update(collection, filter, SET, entry.getKey(), entry.getValue());
+    }
+
+    public static void unset(MongoCollection<Document> collection, Document filter, String path) {
+        update(collection, filter, UNSET, path, 1);
+    }
+
+    public static void addToSet(MongoCollection<Document> collection, Document filter, String path, Object value) {
+        update(collection, filter, ADD_TO_SET, path, value);
+    }
+
+    public static void pull(MongoCollection<Document> collection, Document filter, String path, Object value) {
+        update(collection, filter, PULL, path, value);
+    }
+
+    public static void rename(MongoCollection<Document> collection, Document filter, String from, String to) {
+        submitDocumentWrite(
+            collection,
+            filter,
+            new UpdateOneModel<>(filter, new Document("$rename", new Document(from, to)))
+        );
+    }
+
+    public static void insert(MongoCollection<Document> collection, Document document) {
+        submit(new RawWrite(collection, new InsertOneModel<>(document)));
+    }
+
+    public static void delete(MongoCollection<Document> collection, Document filter) {
+        submitDocumentWrite(collection, filter, new DeleteOneModel<>(filter));
+    }
+
+    public static void deleteMany(MongoCollection<Document> collection, Document filter) {
+        lock.lock();
+        try {
+            // any queued update could match the filter so don't merge anything into them afterwards
+            openUpdates.clear();
+        } finally {
+            lock.unlock();
+        }
+        submit(new RawWrite(collection, new DeleteManyModel<>(filter)));
+    }
+
+    /**
+     * Queues writes to be flushed together in order, like {@link #deleteMany} nothing queued earlier is merged into
+     * afterwards since the writes may touch any document
+     */
+    public static void bulkWrite(MongoCollection<Document> collection, List<WriteModel<Document>> models) {
+        bulkWrite(collection, models, null);
+    }
+
+    /**
+     * @param onFailure Run on the writing thread for every write that is rejected or given up on, null if none
+     */
+    public static void bulkWrite(MongoCollection<Document> collection, List<WriteModel<Document>> models,
+                                 Runnable onFailure) {
+        if (models.isEmpty())
+            return;
+        final List<PendingWrite> writes = new ArrayList<>(models.size());
+        for (final WriteModel<Document> model : models)
+            writes.add(new RawWrite(collection, model, onFailure));
+
+        lock.lock();
+        try {
+            if (running) {
+                openUpdates.clear();
+                for (final PendingWrite write : writes)
+                    append(write);
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        lose(write(writes));
+    }
+
+    private static void update(MongoCollection<Document> collection, Document filter, String operator, String path,
+                               Object value) {
+        final String key = documentKey(collection, filter);
+        lock.lock();
+        try {
+            if (running) {
+                final PendingUpdate open = openUpdates.get(key);
+                if (open != null
+                        && open.merge(operator, path, value))
+                    return;
+                final PendingUpdate update = new PendingUpdate(collection, filter);
+                update.merge(operator, path, value);
+                append(update);
+                openUpdates.put(key, update);
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // not running (before start or after drain), write through
+        final PendingUpdate update = new PendingUpdate(collection, filter);
+        update.merge(operator, path, value);
+        writeNow(update);
+    }
+
+    private static void submitDocumentWrite(MongoCollection<Document> collection, Document filter,
+                                            WriteModel<Document> model) {
+        lock.lock();
+        try {
+            // later updates to the document must be applied after this write
+            openUpdates.remove(documentKey(collection, filter));
+        } finally {
+            lock.unlock();
+        }
+        submit(new RawWrite(collection, model));
+    }
+
+    private static void submit(PendingWrite write) {
+        lock.lock();
+        try {
+            if (running) {
+                append(write);
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        writeNow(write);
+    }
+
+    // must hold lock
+    private static void append(PendingWrite write) {
+        // back-pressure: block producers until the flush thread catches up
+        while (running
+                && pending.size() >= MAX_PENDING_WRITES) {
+            flushRequested.signal();
+            notFull.awaitUninterruptibly();
+        }
+        pending.add(write);
+        if (pending.size() == 1
+                || pending.size() >= MAX_BULK_WRITE_SIZE)
+            flushRequested.signal();
+    }
+
+    private static void writeNow(PendingWrite write) {
+        lose(write(Collections.singletonList(write)));
+    }
+
+    private static void lose(List<PendingWrite> writes) {
+        if (writes.isEmpty())
+            return;
+        lock.lock();
+        try {
+            lostWrites += writes.size();
+        } finally {
+            lock.unlock();
+        }
+        for (final PendingWrite write : writes)
+            write.onFailure();
+    }
+
+    private static void runFlushLoop() {
+        while (true) {
+            final List<PendingWrite> batch;
+            final long batchNumber;
+            lock.lock();
+            try {
+                while (running
+                        && pending.isEmpty())
+                    flushRequested.awaitUninterruptibly();
+
+                // give writes to the same fields a window to coalesce
+                long nanosLeft = TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MILLIS);
+                while (running
+                        && nanosLeft > 0
+                        && pending.size() < MAX_BULK_WRITE_SIZE) {
+                    try {
+                        nanosLeft = flushRequested.awaitNanos(nanosLeft);
+                    } catch (InterruptedException ignore) {
+                        break;
+                    }
+                }
+
+                if (pending.isEmpty()) {
+                    if (!running)
+                        return;
+                    continue;
+                }
+
+                batch = pending;
+                batchNumber = queuedBatch++;
+                pending = new ArrayList<>();
+                openUpdates.clear();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            final List<PendingWrite> unwritten = write(batch);
+            boolean lost = false;
+            lock.lock();
+            try {
+                if (unwritten.isEmpty()) {
+                    retryDelayMillis = 0;
+                    writtenBatch = batchNumber;
+                    batchWritten.signalAll();
+                } else if (!running) {
+                    // draining, shutdown can't wait for the database to come back
+                    lost = true;
+                } else {
+                    // ahead of anything queued since, later mutations are never merged into them
+                    unwritten.addAll(pending);
+                    pending = unwritten;
+                    retryDelayMillis = retryDelayMillis == 0
+                        ? MIN_RETRY_DELAY_MILLIS
+                        : Math.min(retryDelayMillis * 2, MAX_RETRY_DELAY_MILLIS);
+                    System.out.println(ChatColor.DARK_RED + String.format(
+                        "Retrying %d queued writes in %dms",
+                        unwritten.size(),
+                        retryDelayMillis
+                    ));
+                    long nanosLeft = TimeUnit.MILLISECONDS.toNanos(retryDelayMillis);
+                    while (running
+                            && nanosLeft > 0) {
+                        try {
+                            nanosLeft = flushRequested.awaitNanos(nanosLeft);
+                        } catch (InterruptedException ignore) {
+                            break;
+                        }
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (lost)
+                lose(unwritten);
+        }
+    }
+
+    /**
+     * Writes in submission order per collection. A collection stops at its first failed bulk write so later writes
+     * never apply before earlier ones, writes the server rejects (e.g. a retried insert) are skipped
+     * @return Writes left unwritten, in submission order per collection
+     */
+    private static List<PendingWrite> write(List<PendingWrite> writes) {
+        // group by collection, keeping submission order within each collection
+        final Map<MongoCollection<Document>, List<PendingWrite>> writesByCollection = new LinkedHashMap<>();
+        for (final PendingWrite write : writes)
+            writesByCollection
+                .computeIfAbsent(write.collection, c -> new ArrayList<>())
+                .add(write);
+
+        final List<PendingWrite> unwritten = new ArrayList<>();
+        for (final Map.Entry<MongoCollection<Document>, List<PendingWrite>> entry : writesByCollection.entrySet()) {
+            final MongoCollection<Document> collection = entry.getKey();
+            final List<PendingWrite> collectionWrites = entry.getValue();
+            int i = 0;
+            while (i < collectionWrites.size()) {
+                final List<PendingWrite> batch =
+                    collectionWrites.subList(i, Math.min(i + MAX_BULK_WRITE_SIZE, collectionWrites.size()));
+                final List<WriteModel<Document>> models = new ArrayList<>(batch.size());
+                for (final PendingWrite write : batch)
+                    models.add(write.toWriteModel());
+                try {
+                    collection.bulkWrite(models, new BulkWriteOptions().ordered(true));
+                    i += batch.size();
+                } catch (MongoException err) {
+                    if (err instanceof MongoBulkWriteException
+                            && !((MongoBulkWriteException) err).getWriteErrors().isEmpty()) {
+                        // ordered, so writes before the rejected one were applied and none after it were tried
+                        final BulkWriteError error = ((MongoBulkWriteException) err).getWriteErrors().get(0);
+                        System.out.println(ChatColor.DARK_RED + String.format(
+                            "Skipped queued write rejected by collection %s: %s",
+                            collection.getNamespace().getCollectionName(),
+                            error.getMessage()
+                        ));
+                        batch.get(error.getIndex()).onFailure();
+                        i += error.getIndex() + 1;
+                        continue;
+                    }
+                    System.out.println(ChatColor.DARK_RED + "Failed to flush queued writes to collection "
+                        + collection.getNamespace().getCollectionName());
+                    err.printStackTrace();
+                    unwritten.addAll(collectionWrites.subList(i, collectionWrites.size()));
+                    break;
+                }
+            }
+        }
+        return unwritten;
+    }
+
+}